@@ -0,0 +1,179 @@
+package de.l3s.boilerpipe.demo;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+
+import de.l3s.boilerpipe.document.TextBlock;
+import de.l3s.boilerpipe.document.TextDocument;
+import de.l3s.boilerpipe.extractors.ArticleExtractor;
+import de.l3s.boilerpipe.labels.LabelAction;
+import de.l3s.boilerpipe.labels.MarkupPath;
+import de.l3s.boilerpipe.sax.BoilerpipeHTMLContentHandler;
+import de.l3s.boilerpipe.sax.BoilerpipeHTMLParser;
+import de.l3s.boilerpipe.sax.BoilerpipeSAXInput;
+import de.l3s.boilerpipe.sax.DefaultTagActionMap;
+import de.l3s.boilerpipe.sax.MarkupTagAction;
+import de.l3s.boilerpipe.sax.TagAction;
+import de.l3s.boilerpipe.sax.TagActionMap;
+
+/**
+ * Demonstrates that one markup-aware {@link TagActionMap} can be shared by
+ * handlers that parse in parallel.
+ *
+ * The HTML files of a directory are parsed once sequentially, and then many
+ * times by several threads at once. Each parallel result must equal the
+ * sequential one, including the markup labels and the labels of an action
+ * that keeps its per-parse state in the handler. The exit code is 1 if any
+ * result differs.
+ *
+ * Usage: ConcurrentParsingDemo directory [threads] [rounds]
+ */
+public class ConcurrentParsingDemo {
+
+    /**
+     * Labels blocks with the nesting depth of their lists. The depth is kept
+     * in the handler, as the action itself is shared.
+     */
+    static final class ListDepthAction implements TagAction {
+        private final LabelAction[] labels = new LabelAction[8];
+
+        ListDepthAction() {
+            for (int i = 0; i < labels.length; i++) {
+                labels[i] = new LabelAction("list-depth-" + (i + 1));
+            }
+        }
+
+        public boolean start(final BoilerpipeHTMLContentHandler instance,
+                final String localName, final String qName,
+                final Attributes atts) {
+            final Integer depth = (Integer) instance.getTagActionState(this);
+            final int d = depth == null ? 1 : depth + 1;
+            instance.setTagActionState(this, d);
+            instance.addLabelAction(labels[Math.min(d, labels.length) - 1]);
+            return true;
+        }
+
+        public boolean end(final BoilerpipeHTMLContentHandler instance,
+                final String localName, final String qName) {
+            final Integer depth = (Integer) instance.getTagActionState(this);
+            instance.setTagActionState(this, depth == null || depth <= 1 ? null
+                    : depth - 1);
+            return true;
+        }
+
+        public boolean changesTagLevel() {
+            return true;
+        }
+    }
+
+    static final class SharedMarkupMap extends TagActionMap {
+        private static final long serialVersionUID = 1L;
+
+        SharedMarkupMap() {
+            putAll(DefaultTagActionMap.INSTANCE);
+            for (String tag : new String[] { "DIV", "P", "LI", "TABLE", "TR",
+                    "TD", "BLOCKQUOTE", "H1", "H2", "H3" }) {
+                addTagAction(tag, new MarkupTagAction(true));
+            }
+            for (String tag : new String[] { "SPAN", "B", "I", "EM", "A" }) {
+                addTagAction(tag, new MarkupTagAction(false));
+            }
+            final ListDepthAction listDepth = new ListDepthAction();
+            addTagAction("UL", listDepth);
+            addTagAction("OL", listDepth);
+        }
+    }
+
+    public static void main(final String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: ConcurrentParsingDemo directory [threads] [rounds]");
+            System.exit(2);
+        }
+        final int threads = args.length > 1 ? Integer.parseInt(args[1])
+                : Runtime.getRuntime().availableProcessors();
+        final int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+
+        final File[] files = new File(args[0]).listFiles();
+        if (files == null) {
+            System.err.println("Not a directory: " + args[0]);
+            System.exit(2);
+        }
+        Arrays.sort(files);
+        final List<byte[]> pages = new ArrayList<byte[]>();
+        for (File f : files) {
+            if (f.isFile()) {
+                pages.add(Files.readAllBytes(f.toPath()));
+            }
+        }
+
+        final TagActionMap map = new SharedMarkupMap();
+        final String[] expected = new String[pages.size()];
+        for (int i = 0; i < expected.length; i++) {
+            expected[i] = describe(parse(pages.get(i), map));
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>();
+        for (int r = 0; r < rounds; r++) {
+            for (int i = 0; i < expected.length; i++) {
+                final int page = i;
+                futures.add(executor.submit(new Callable<Boolean>() {
+                    public Boolean call() throws Exception {
+                        return expected[page].equals(describe(parse(
+                                pages.get(page), map)));
+                    }
+                }));
+            }
+        }
+        int mismatches = 0;
+        for (Future<Boolean> f : futures) {
+            if (!f.get()) {
+                mismatches++;
+            }
+        }
+        executor.shutdown();
+
+        System.out.println(futures.size() + " parallel parses on " + threads
+                + " threads, " + mismatches + " differ from the sequential result");
+        if (mismatches > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static TextDocument parse(final byte[] page, final TagActionMap map)
+            throws Exception {
+        final BoilerpipeHTMLParser parser = new BoilerpipeHTMLParser(
+                new BoilerpipeHTMLContentHandler(map));
+        final TextDocument doc = new BoilerpipeSAXInput(new InputSource(
+                new ByteArrayInputStream(page))).getTextDocument(parser);
+        ArticleExtractor.INSTANCE.process(doc);
+        return doc;
+    }
+
+    private static String describe(final TextDocument doc) {
+        final StringBuilder sb = new StringBuilder();
+        sb.append(doc.getTitle()).append('\n');
+        for (TextBlock tb : doc.getTextBlocks()) {
+            sb.append(tb.isContent()).append(' ');
+            sb.append(tb.getLabels() == null ? "[]" : new TreeSet<String>(
+                    tb.getLabels()).toString());
+            for (MarkupPath path : tb.getMarkupPaths()) {
+                sb.append(' ').append(new TreeSet<String>(path.getLabels()));
+            }
+            sb.append('\n').append(tb.getText()).append('\n');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,24 @@
+package de.l3s.boilerpipe;
+
+import de.l3s.boilerpipe.document.ColumnarTextDocument;
+
+/**
+ * A filter that processes the columns of a {@link ColumnarTextDocument}. It may
+ * change content flags and labels, but not the blocks themselves.
+ *
+ * A regular {@link BoilerpipeFilter} can be run on a
+ * {@link ColumnarTextDocument} through
+ * {@link de.l3s.boilerpipe.filters.columnar.RowFilterAdapter}.
+ */
+public interface ColumnarFilter {
+    /**
+     * Processes the given document <code>doc</code>.
+     *
+     * @param doc
+     *            The {@link ColumnarTextDocument} that is to be processed.
+     * @return <code>true</code> if changes have been made to the document.
+     * @throws BoilerpipeProcessingException
+     */
+    boolean process(final ColumnarTextDocument doc)
+            throws BoilerpipeProcessingException;
+}
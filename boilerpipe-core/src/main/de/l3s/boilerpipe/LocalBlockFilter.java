@@ -0,0 +1,63 @@
+package de.l3s.boilerpipe;
+
+import java.util.List;
+
+import de.l3s.boilerpipe.document.TextBlock;
+import de.l3s.boilerpipe.document.TextDocument;
+
+/**
+ * A {@link BoilerpipeFilter} that decides about each block by looking only at
+ * that block and at most {@link #getRadius()} blocks on either side of it, and
+ * that only modifies the block it decides about (its content flag or labels).
+ * It must not add, remove or merge blocks.
+ *
+ * Such filters can be run block by block, interleaved with other local
+ * filters, in a single pass over the blocks (see
+ * {@link de.l3s.boilerpipe.extractors.ExtractorPipeline}).
+ * {@link #process(TextDocument)} must have the same effect as visiting all
+ * blocks in ascending order with a new {@link Visitor}.
+ *
+ * They can also run while the HTML is being parsed (see
+ * {@link de.l3s.boilerpipe.extractors.StreamingExtractor}). Then, the list
+ * passed to the visitor only contains the blocks parsed so far, and blocks
+ * more than {@link #getRadius()} positions before the visited one may no longer
+ * be available.
+ */
+public interface LocalBlockFilter extends BoilerpipeFilter {
+
+    /**
+     * Visits the blocks of one document, in ascending order.
+     */
+    interface Visitor {
+        /**
+         * Processes the block at the given position.
+         *
+         * @param blocks
+         *            The blocks of the document, at least up to
+         *            <code>index + getRadius()</code> unless the document
+         *            ends before.
+         * @param index
+         *            The position of the block.
+         * @return <code>true</code> if the block has been changed.
+         * @throws BoilerpipeProcessingException
+         */
+        boolean visit(final List<TextBlock> blocks, final int index)
+                throws BoilerpipeProcessingException;
+    }
+
+    /**
+     * Returns the number of neighbouring blocks on either side that are read
+     * when processing a block.
+     */
+    int getRadius();
+
+    /**
+     * Creates a visitor for the blocks of the given document. The visitor may
+     * keep state from block to block.
+     *
+     * @param doc
+     *            The document.
+     * @return The visitor.
+     */
+    Visitor newVisitor(final TextDocument doc);
+}
@@ -1,24 +1,22 @@
 package de.l3s.boilerpipe.classifier;
 
-import java.awt.image.BufferedImage;
-import java.io.File;
 import java.io.IOException;
+import java.net.URI;
 import java.util.*;
 
 import de.l3s.boilerpipe.BoilerpipeProcessingException;
-import de.l3s.boilerpipe.demo.WebpageClassifierDemo;
 import de.l3s.boilerpipe.document.Image;
 import de.l3s.boilerpipe.document.TextBlock;
 import de.l3s.boilerpipe.document.TextDocument;
 import de.l3s.boilerpipe.document.Video;
 import de.l3s.boilerpipe.extractors.*;
 
-import de.l3s.boilerpipe.sax.BoilerpipeSAXInput;
+import de.l3s.boilerpipe.sax.ExtractionSession;
 import de.l3s.boilerpipe.sax.HTMLDocument;
-import de.l3s.boilerpipe.sax.ImageExtractor;
-import de.l3s.boilerpipe.sax.VideoParser;
+import de.l3s.boilerpipe.sax.SAXEventTape;
+import de.l3s.boilerpipe.util.ImageDimensionCache;
+import de.l3s.boilerpipe.util.ImageDownloadScheduler;
 import de.l3s.boilerpipe.util.ImageDownloader;
-import javax.imageio.ImageIO;
 
 import static de.l3s.boilerpipe.classifier.Constants.*;
 import static de.l3s.boilerpipe.classifier.Regex.*;
@@ -30,6 +28,8 @@ import static de.l3s.boilerpipe.classifier.Regex.*;
 public class WebpageClassifier {
     private final Map<PageType, List<ExtractorType>> results = new HashMap<>();
     private final Map<ExtractorType, Metrics> metricsMap = new HashMap<>();
+    private String pageUrl;
+    private final ImageDimensionCache imageDimensionCache;
 
     private final List<Pair<ExtractorBase, ExtractorType>> extractors = Arrays.asList(
             new Pair<>(ArticleExtractor.INSTANCE, ExtractorType.ARTICLE),
@@ -39,35 +39,68 @@ public class WebpageClassifier {
             new Pair<>(LargestContentExtractor.INSTANCE, ExtractorType.LARGEST_CONTENT)
     );
 
-    private static final String IMAGE_PATH = "boilerpipe-core/src/main/resources/images";
+    // runs the extractors' common filter stages only once
+    private final ExtractorPlan plan = newPlan(extractors);
+
+    /**
+     * Creates a classifier that shares image dimensions with all other
+     * classifiers of this JVM.
+     */
+    public WebpageClassifier() {
+        this(ImageDimensionCache.getSharedInstance());
+    }
+
+    /**
+     * Creates a classifier that looks up image dimensions in the given cache,
+     * e.g. a persistent one that is shared by all pages of a crawl.
+     */
+    public WebpageClassifier(ImageDimensionCache imageDimensionCache) {
+        this.imageDimensionCache = imageDimensionCache;
+    }
 
     /**
      * Classifies a webpage given its URL
      */
     public Map<PageType, List<ExtractorType>> classify(String stringUrl, String rawHtml) throws Exception {
+        pageUrl = stringUrl;
+
         // Step 1: URL Pattern Analysis
         matchPattern(stringUrl);
 
-        // Extract videos
-        List<Video> videos = VideoParser.getInstance().extractVideos(rawHtml);
+        // parse the document once, all extractors replay the recorded events
+        SAXEventTape tape = SAXEventTape.record(new HTMLDocument(rawHtml).toInputSource());
+
+        // the extractors work on copy-on-write views of the same parsed document,
+        // and run the filter stages they have in common only once
+        TextDocument parsed = tape.toTextDocument();
+        List<TextDocument> extracted;
+        try {
+            extracted = plan.process(parsed);
+        } catch (BoilerpipeProcessingException e) {
+            System.err.println("Warning: Extractors failed: " + e.getMessage());
+            return results;
+        }
+
+        // relative image URLs refer to the page, or to its <base href>
+        URI baseUri = ImageDownloadScheduler.getBaseURI(stringUrl, tape.getFirstAttributeValue("BASE", "href"));
 
         // Step 2: Content Analysis with multiple extractors
-        for (Pair<ExtractorBase, ExtractorType> extractor : extractors) {
+        for (int i = 0; i < extractors.size(); i++) {
+            Pair<ExtractorBase, ExtractorType> extractor = extractors.get(i);
             try {
-                // parse the document
-                HTMLDocument htmlDocument = new HTMLDocument(rawHtml);
-                BoilerpipeSAXInput input = new BoilerpipeSAXInput((htmlDocument).toInputSource());
-                TextDocument doc = input.getTextDocument();
-                extractor.getFirst().process(doc);
-
-                // extract images after parse
-                List<Image> images = ImageExtractor.INSTANCE.process(doc, rawHtml);
-                
+                ExtractionSession.Result result = new ExtractionSession(extractor.getFirst(),
+                        ExtractionSession.Output.IMAGES, ExtractionSession.Output.VIDEOS)
+                        .processExtracted(extracted.get(i), tape);
+                TextDocument doc = result.getTextDocument();
+                List<Image> images = result.getImages();
+                List<Video> videos = result.getVideos();
+
+
                 // Filter images based on common file extensions
                 images.removeIf(image -> !hasCommonImageExtension(image.getSrc()));
 
-                // First, try to extract dimensions from URL parameters
-                List<Image> imagesToDownload = new ArrayList<>();
+                // First, try to extract dimensions from URL parameters and attributes
+                List<Image> imagesToProbe = new ArrayList<>();
                 for (Image image : images) {
                     int[] urlDimensions = extractDimensionsFromUrl(image.getSrc());
                     if (urlDimensions != null) {
@@ -75,16 +108,26 @@ public class WebpageClassifier {
                         image.setWidth(urlDimensions[0]);
                         image.setHeight(urlDimensions[1]);
                         image.setArea(urlDimensions[0] * urlDimensions[1]);
+                    } else if (image.getArea() > 0) {
+                        // width and height attributes are given
+                        int width = image.getWidthHint();
+                        if (width > 0) {
+                            // srcset width, with the aspect ratio of the attributes
+                            int height = (int) Math.round((double) width
+                                    * Integer.parseInt(image.getHeight()) / Integer.parseInt(image.getWidth()));
+                            image.setWidth(width);
+                            image.setHeight(height);
+                            image.setArea(width * height);
+                        }
                     } else {
-                        // Need to download this image to get dimensions
-                        imagesToDownload.add(image);
+                        // Need to read the image header to get dimensions
+                        imagesToProbe.add(image);
                     }
                 }
 
-                // Download only images that don't have URL dimensions
-                if (!imagesToDownload.isEmpty()) {
-                    List<File> downloadedImages = ImageDownloader.downloadImages(imagesToDownload, new File(IMAGE_PATH));
-                    updateImageDimensions(imagesToDownload, downloadedImages);
+                // Probe only images that don't have URL dimensions
+                if (!imagesToProbe.isEmpty()) {
+                    ImageDownloader.probeDimensions(imagesToProbe, baseUri, imageDimensionCache);
                 }
 
                 // Classify the webpage type based on the extractor and media elements
@@ -103,6 +146,14 @@ public class WebpageClassifier {
         return results;
     }
 
+    private static ExtractorPlan newPlan(List<Pair<ExtractorBase, ExtractorType>> extractors) {
+        List<ExtractorBase> list = new ArrayList<>();
+        for (Pair<ExtractorBase, ExtractorType> extractor : extractors) {
+            list.add(extractor.getFirst());
+        }
+        return new ExtractorPlan(list);
+    }
+
     /**
      * Classifies a webpage given its TextDocument and media elements
      */
@@ -410,47 +461,9 @@ public class WebpageClassifier {
         return null;
     }
 
-    /**
-     * Updates the dimensions of Image objects based on downloaded image files
-     * Note: This assumes images and downloadedFiles have 1:1 correspondence
-     *
-     * @param images The list of Image objects to update
-     * @param downloadedFiles The list of downloaded image files (must match images order)
-     */
-    private void updateImageDimensions(List<Image> images, List<File> downloadedFiles) {
-        // Process all images - if download failed, file will be null
-        for (int i = 0; i < images.size(); i++) {
-            Image image = images.get(i);
-            File file = (i < downloadedFiles.size()) ? downloadedFiles.get(i) : null;
-            
-            if (file != null && file.exists()) {
-                try {
-                    BufferedImage bufferedImage = ImageIO.read(file);
-                    if (bufferedImage != null) {
-                        int width = bufferedImage.getWidth();
-                        int height = bufferedImage.getHeight();
-                        // Update the image object with actual dimensions
-                        image.setWidth(width);
-                        image.setHeight(height);
-                        image.setArea(width * height);
-                        System.out.println("Updated dimensions: " + image.getSrc() + 
-                                         " -> " + width + "x" + height + " (area: " + image.getArea() + ")");
-                    } else {
-                        System.err.println("Failed to read image file: " + file.getPath());
-                    }
-                } catch (IOException e) {
-                    System.err.println("Error reading image file " + file.getPath() + ": " + e.getMessage());
-                }
-            } else {
-                System.out.println("No downloaded file for image: " + image.getSrc() + " (using default dimensions)");
-            }
-        }
-    }
-
-
     public Map<String, Map<ExtractorType, Metrics>> getMetrics(){
         Map<String, Map<ExtractorType, Metrics>> metrics = new HashMap<>();
-        metrics.put(WebpageClassifierDemo.TEST_URL, metricsMap);
+        metrics.put(pageUrl, metricsMap);
         return metrics;
     }
 }
\ No newline at end of file
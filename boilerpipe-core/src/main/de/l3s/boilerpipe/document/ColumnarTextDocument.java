@@ -0,0 +1,251 @@
+package de.l3s.boilerpipe.document;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A column-oriented form of a {@link TextDocument}: the features of its
+ * {@link TextBlock}s are held in parallel arrays, the content flags in a
+ * {@link BitSet}, and the labels in a {@link LabelIndex}. Filters that only
+ * look at these features and change content flags or labels can thus run over
+ * a few compact arrays instead of the block objects.
+ *
+ * The numeric columns are read-only. Structural changes such as merging blocks
+ * have to be made on the underlying {@link TextDocument}, followed by a call to
+ * {@link #reload()}. Changes to content flags and labels are written back to
+ * the blocks by {@link #getTextDocument()}.
+ *
+ * @see de.l3s.boilerpipe.ColumnarFilter
+ */
+public final class ColumnarTextDocument {
+    private final TextDocument doc;
+
+    private int size;
+    private int[] numWords;
+    private int[] numWordsInAnchorText;
+    private int[] numWordsInWrappedLines;
+    private int[] numWrappedLines;
+    private int[] numFullTextWords;
+    private int[] tagLevels;
+    private int[] offsetsBlocksStart;
+    private int[] offsetsBlocksEnd;
+    private float[] textDensities;
+    private float[] linkDensities;
+
+    private final BitSet content = new BitSet();
+    private final LabelIndex labels = new LabelIndex();
+    private boolean labelsModified = false;
+
+    /**
+     * Creates the columns for the given document.
+     *
+     * @param doc
+     *            The document.
+     */
+    public ColumnarTextDocument(final TextDocument doc) {
+        this.doc = doc;
+        reload();
+    }
+
+    /**
+     * Re-reads all columns from the blocks of the underlying document. This is
+     * necessary after the blocks have been changed directly, and discards any
+     * changes to content flags and labels that have not been written back.
+     */
+    public void reload() {
+        final List<TextBlock> blocks = doc.getTextBlocks();
+        size = blocks.size();
+        if (numWords == null || numWords.length < size) {
+            numWords = new int[size];
+            numWordsInAnchorText = new int[size];
+            numWordsInWrappedLines = new int[size];
+            numWrappedLines = new int[size];
+            numFullTextWords = new int[size];
+            tagLevels = new int[size];
+            offsetsBlocksStart = new int[size];
+            offsetsBlocksEnd = new int[size];
+            textDensities = new float[size];
+            linkDensities = new float[size];
+        }
+        content.clear();
+        labels.clear();
+        labelsModified = false;
+
+        int i = 0;
+        for (TextBlock tb : blocks) {
+            numWords[i] = tb.numWords;
+            numWordsInAnchorText[i] = tb.numWordsInAnchorText;
+            numWordsInWrappedLines[i] = tb.numWordsInWrappedLines;
+            numWrappedLines[i] = tb.numWrappedLines;
+            numFullTextWords[i] = tb.numFullTextWords;
+            tagLevels[i] = tb.getTagLevel();
+            offsetsBlocksStart[i] = tb.offsetBlocksStart;
+            offsetsBlocksEnd[i] = tb.offsetBlocksEnd;
+            textDensities[i] = tb.textDensity;
+            linkDensities[i] = tb.linkDensity;
+            if (tb.isContent) {
+                content.set(i);
+            }
+            labels.addAll(i, tb);
+            i++;
+        }
+    }
+
+    /**
+     * Writes changed content flags and labels back to the blocks and returns
+     * the underlying document.
+     *
+     * @return The document.
+     */
+    public TextDocument getTextDocument() {
+        final List<TextBlock> blocks = doc.getTextBlocks();
+        int i = 0;
+        for (TextBlock tb : blocks) {
+            tb.setIsContent(content.get(i));
+            i++;
+        }
+        if (labelsModified) {
+            for (Map.Entry<String, BitSet> e : labels.postings.entrySet()) {
+                final String label = e.getKey();
+                final BitSet bs = e.getValue();
+                i = 0;
+                for (TextBlock tb : blocks) {
+                    if (bs.get(i) != tb.hasLabel(label)) {
+                        if (bs.get(i)) {
+                            tb.addLabel(label);
+                        } else {
+                            tb.removeLabel(label);
+                        }
+                    }
+                    i++;
+                }
+            }
+            labelsModified = false;
+        }
+        return doc;
+    }
+
+    /**
+     * Returns the number of blocks.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Checks whether the given block is marked as content.
+     */
+    public boolean isContent(final int block) {
+        return content.get(block);
+    }
+
+    /**
+     * Marks the given block as content or not.
+     *
+     * @return <code>true</code> if the flag has changed.
+     */
+    public boolean setIsContent(final int block, final boolean isContent) {
+        if (content.get(block) == isContent) {
+            return false;
+        }
+        content.set(block, isContent);
+        return true;
+    }
+
+    /**
+     * Returns the content flags of all blocks. The returned instance may be
+     * modified.
+     */
+    public BitSet getContentBits() {
+        return content;
+    }
+
+    /**
+     * Checks whether the given block has the given label.
+     */
+    public boolean hasLabel(final int block, final String label) {
+        return labels.contains(block, label);
+    }
+
+    /**
+     * Adds a label to the given block.
+     */
+    public void addLabel(final int block, final String label) {
+        if (labels.add(block, label)) {
+            labelsModified = true;
+        }
+    }
+
+    /**
+     * Removes a label from the given block.
+     *
+     * @return <code>true</code> if the block had that label.
+     */
+    public boolean removeLabel(final int block, final String label) {
+        if (labels.remove(block, label)) {
+            labelsModified = true;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the blocks that have the given label, or <code>null</code> if
+     * no block has it. The returned instance must not be modified.
+     */
+    public BitSet getLabelBits(final String label) {
+        return labels.getBlocks(label);
+    }
+
+    /**
+     * Returns the label index of the blocks. It reflects changes made through
+     * {@link #addLabel(int, String)} and {@link #removeLabel(int, String)}.
+     */
+    public LabelIndex getLabelIndex() {
+        return labels;
+    }
+
+    // The following columns have (at least) {@link #size()} entries and must
+    // not be modified.
+
+    public int[] getNumWords() {
+        return numWords;
+    }
+
+    public int[] getNumWordsInAnchorText() {
+        return numWordsInAnchorText;
+    }
+
+    public int[] getNumWordsInWrappedLines() {
+        return numWordsInWrappedLines;
+    }
+
+    public int[] getNumWrappedLines() {
+        return numWrappedLines;
+    }
+
+    public int[] getNumFullTextWords() {
+        return numFullTextWords;
+    }
+
+    public int[] getTagLevels() {
+        return tagLevels;
+    }
+
+    public int[] getOffsetsBlocksStart() {
+        return offsetsBlocksStart;
+    }
+
+    public int[] getOffsetsBlocksEnd() {
+        return offsetsBlocksEnd;
+    }
+
+    public float[] getTextDensities() {
+        return textDensities;
+    }
+
+    public float[] getLinkDensities() {
+        return linkDensities;
+    }
+}
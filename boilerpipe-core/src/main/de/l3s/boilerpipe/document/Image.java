@@ -1,9 +1,16 @@
 package de.l3s.boilerpipe.document;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 /**
  * Represents an Image resource that is contained in the document.
  * 
  * Any of the attributes may be null, except for "src".
+ * 
+ * Responsive images may have further {@link Candidate}s, taken from
+ * <code>srcset</code> attributes or <code>&lt;picture&gt;</code> sources.
  *  
  * @author Christian Kohlschuetter
  */
@@ -13,8 +20,20 @@ public class Image implements Comparable<Image> {
 	private String height;
 	private final String alt;
 	private int area;
+	private final List<Candidate> candidates;
 
 	public Image(final String src, final String width, final String height, final String alt) {
+		this(src, width, height, alt, null);
+	}
+
+	/**
+	 * Creates an image with the given alternative sources.
+	 * 
+	 * @param candidates
+	 *            The candidates of the image, may be null
+	 */
+	public Image(final String src, final String width, final String height, final String alt,
+			final List<Candidate> candidates) {
 		if(src == null) {
 			throw new NullPointerException("src attribute must not be null");
 		}
@@ -23,6 +42,8 @@ public class Image implements Comparable<Image> {
 		this.width = nullTrim(width);
 		this.height = nullTrim(height);
 		this.alt = nullTrim(alt);
+		this.candidates = candidates == null ? Collections.<Candidate>emptyList()
+				: Collections.unmodifiableList(new ArrayList<Candidate>(candidates));
 		
 		if(width != null && height != null) {
 			int a;
@@ -53,6 +74,55 @@ public class Image implements Comparable<Image> {
 		return alt;
 	}
 
+	/**
+	 * Returns the candidates of a responsive image, in document order. The list
+	 * is empty if the image has no other source than "src".
+	 * 
+	 * @return
+	 */
+	public List<Candidate> getCandidates() {
+		return candidates;
+	}
+
+	/**
+	 * Returns the width of this image as announced by a <code>w</code>
+	 * descriptor, or -1 if there is none. If "src" is not among the described
+	 * candidates, the largest announced width is returned.
+	 * 
+	 * @return
+	 */
+	public int getWidthHint() {
+		int hint = -1;
+		for(Candidate c : candidates) {
+			if(c.width > 0) {
+				if(c.src.equals(src)) {
+					return c.width;
+				}
+				hint = Math.max(hint, c.width);
+			}
+		}
+		return hint;
+	}
+
+	/**
+	 * Returns the source that is cheapest to fetch in order to determine the
+	 * dimensions of this image, that is, the candidate with the smallest
+	 * <code>w</code> descriptor, or "src".
+	 * 
+	 * Its dimensions need to be scaled to {@link #getWidthHint()}.
+	 * 
+	 * @return
+	 */
+	public String getProbeSrc() {
+		Candidate cheapest = null;
+		for(Candidate c : candidates) {
+			if(c.width > 0 && (cheapest == null || c.width < cheapest.width)) {
+				cheapest = c;
+			}
+		}
+		return cheapest == null ? src : cheapest.src;
+	}
+
 	public void setWidth(int width) {
 		this.width = nullTrim(String.valueOf(width));
 	}
@@ -106,4 +176,64 @@ public class Image implements Comparable<Image> {
     public void setSource(String newSrc) {
 		this.src = newSrc;
     }
+
+	/**
+	 * An alternative source of an image, with its <code>srcset</code>
+	 * descriptor.
+	 */
+	public static final class Candidate {
+		private final String src;
+		private final int width;
+		private final float density;
+
+		/**
+		 * Creates a candidate.
+		 * 
+		 * @param src
+		 *            The source URL
+		 * @param width
+		 *            The width given by a <code>w</code> descriptor, or -1
+		 * @param density
+		 *            The pixel density given by an <code>x</code> descriptor
+		 *            (1 if there is no descriptor), or -1
+		 */
+		public Candidate(final String src, final int width, final float density) {
+			if(src == null) {
+				throw new NullPointerException("src must not be null");
+			}
+			this.src = src;
+			this.width = width;
+			this.density = density;
+		}
+
+		public String getSrc() {
+			return src;
+		}
+
+		/**
+		 * Returns the width given by a <code>w</code> descriptor, or -1.
+		 * 
+		 * @return
+		 */
+		public int getWidth() {
+			return width;
+		}
+
+		/**
+		 * Returns the pixel density given by an <code>x</code> descriptor, or
+		 * -1.
+		 * 
+		 * @return
+		 */
+		public float getDensity() {
+			return density;
+		}
+
+		public String toString() {
+			if(width > 0) {
+				return src + " " + width + "w";
+			}
+			return src + " " + density + "x";
+		}
+	}
 }
@@ -0,0 +1,238 @@
+package de.l3s.boilerpipe.document;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * A set of non-negative integers, stored as a sorted list of disjoint
+ * intervals. This is used for the text elements of a {@link TextBlock}, which
+ * are almost always contiguous runs.
+ *
+ * Adding integers in ascending order and uniting two sets take time linear in
+ * the number of intervals; membership tests are a binary search.
+ */
+public final class IntervalSet {
+    private static final int[] EMPTY = new int[0];
+
+    // start and (exclusive) end of each interval; intervals are sorted and
+    // neither overlap nor touch each other
+    private int[] bounds = EMPTY;
+    private int size = 0;
+
+    /**
+     * Creates an empty set.
+     */
+    public IntervalSet() {
+    }
+
+    /**
+     * Creates a copy of the given set.
+     */
+    public IntervalSet(final IntervalSet other) {
+        bounds = other.size == 0 ? EMPTY : Arrays.copyOf(other.bounds, other.size);
+        size = other.size;
+    }
+
+    /**
+     * Creates a set containing the bits that are set in the given
+     * {@link BitSet}.
+     */
+    public static IntervalSet valueOf(final BitSet bs) {
+        final IntervalSet set = new IntervalSet();
+        int i = bs.nextSetBit(0);
+        while (i >= 0) {
+            final int end = bs.nextClearBit(i);
+            set.append(i, end);
+            i = bs.nextSetBit(end);
+        }
+        return set;
+    }
+
+    /**
+     * Adds the given integer.
+     */
+    public void add(final int index) {
+        add(index, index + 1);
+    }
+
+    /**
+     * Adds the integers from <code>from</code> (inclusive) to <code>to</code>
+     * (exclusive).
+     */
+    public void add(final int from, final int to) {
+        if (from >= to) {
+            return;
+        }
+        if (size == 0 || from > bounds[size - 1]) {
+            append(from, to);
+        } else if (from >= bounds[size - 2]) {
+            bounds[size - 1] = Math.max(bounds[size - 1], to);
+        } else {
+            union(new int[] { from, to }, 2);
+        }
+    }
+
+    /**
+     * Adds all integers of the given set.
+     *
+     * @return <code>true</code> if this set has changed.
+     */
+    public boolean addAll(final IntervalSet other) {
+        if (other.size == 0) {
+            return false;
+        }
+        if (size == 0) {
+            bounds = Arrays.copyOf(other.bounds, other.size);
+            size = other.size;
+            return true;
+        }
+        return union(other.bounds, other.size);
+    }
+
+    private void append(final int from, final int to) {
+        if (size == bounds.length) {
+            bounds = Arrays.copyOf(bounds, Math.max(4, size * 2));
+        }
+        bounds[size++] = from;
+        bounds[size++] = to;
+    }
+
+    private boolean union(final int[] b, final int nb) {
+        final int[] a = bounds;
+        final int na = size;
+        final int[] merged = new int[na + nb];
+        int i = 0, j = 0, k = 0;
+        while (i < na || j < nb) {
+            final int start, end;
+            if (j == nb || (i < na && a[i] <= b[j])) {
+                start = a[i];
+                end = a[i + 1];
+                i += 2;
+            } else {
+                start = b[j];
+                end = b[j + 1];
+                j += 2;
+            }
+            if (k > 0 && start <= merged[k - 1]) {
+                merged[k - 1] = Math.max(merged[k - 1], end);
+            } else {
+                merged[k++] = start;
+                merged[k++] = end;
+            }
+        }
+        if (k == na && equalBounds(a, merged, k)) {
+            return false;
+        }
+        bounds = merged;
+        size = k;
+        return true;
+    }
+
+    private static boolean equalBounds(final int[] a, final int[] b, final int n) {
+        for (int i = 0; i < n; i++) {
+            if (a[i] != b[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether the given integer is in this set.
+     */
+    public boolean contains(final int index) {
+        int lo = 0;
+        int hi = size / 2 - 1;
+        while (lo <= hi) {
+            final int mid = (lo + hi) >>> 1;
+            if (index < bounds[2 * mid]) {
+                hi = mid - 1;
+            } else if (index >= bounds[2 * mid + 1]) {
+                lo = mid + 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the number of integers in this set.
+     */
+    public int cardinality() {
+        int n = 0;
+        for (int i = 0; i < size; i += 2) {
+            n += bounds[i + 1] - bounds[i];
+        }
+        return n;
+    }
+
+    /**
+     * Returns the number of intervals.
+     */
+    public int numIntervals() {
+        return size / 2;
+    }
+
+    /**
+     * Returns the first integer of the given interval.
+     */
+    public int getStart(final int interval) {
+        return bounds[2 * interval];
+    }
+
+    /**
+     * Returns the integer after the last one of the given interval.
+     */
+    public int getEnd(final int interval) {
+        return bounds[2 * interval + 1];
+    }
+
+    /**
+     * Returns a {@link BitSet} containing the integers of this set.
+     */
+    public BitSet toBitSet() {
+        final BitSet bs = new BitSet(size == 0 ? 0 : bounds[size - 1]);
+        for (int i = 0; i < size; i += 2) {
+            bs.set(bounds[i], bounds[i + 1]);
+        }
+        return bs;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (!(o instanceof IntervalSet)) {
+            return false;
+        }
+        final IntervalSet other = (IntervalSet) o;
+        return size == other.size && equalBounds(bounds, other.bounds, size);
+    }
+
+    @Override
+    public int hashCode() {
+        int h = 1;
+        for (int i = 0; i < size; i++) {
+            h = 31 * h + bounds[i];
+        }
+        return h;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i < size; i += 2) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(bounds[i]);
+            if (bounds[i + 1] - bounds[i] > 1) {
+                sb.append('-').append(bounds[i + 1] - 1);
+            }
+        }
+        return sb.append('}').toString();
+    }
+}
@@ -0,0 +1,103 @@
+package de.l3s.boilerpipe.document;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import de.l3s.boilerpipe.labels.LabelRegistry;
+
+/**
+ * Maps each label of a {@link TextDocument} to the positions of the blocks
+ * that carry it.
+ *
+ * The index is a snapshot: it is not updated when the blocks of the document
+ * change.
+ */
+public final class LabelIndex {
+    final Map<String, BitSet> postings = new HashMap<String, BitSet>();
+
+    LabelIndex() {
+    }
+
+    /**
+     * Creates the index for the current blocks of the given document.
+     *
+     * @param doc
+     *            The document.
+     */
+    public LabelIndex(final TextDocument doc) {
+        int i = 0;
+        for (TextBlock tb : doc.getTextBlocks()) {
+            addAll(i++, tb);
+        }
+    }
+
+    void addAll(final int block, final TextBlock tb) {
+        // read the field directly, the getter would copy shared labels
+        if (tb.labels != null) {
+            for (String label : tb.labels) {
+                add(block, label);
+            }
+        }
+    }
+
+    boolean add(final int block, final String label) {
+        BitSet bs = postings.get(label);
+        if (bs == null) {
+            bs = new BitSet();
+            postings.put(label, bs);
+        } else if (bs.get(block)) {
+            return false;
+        }
+        bs.set(block);
+        return true;
+    }
+
+    boolean remove(final int block, final String label) {
+        final BitSet bs = postings.get(label);
+        if (bs == null || !bs.get(block)) {
+            return false;
+        }
+        bs.clear(block);
+        return true;
+    }
+
+    void clear() {
+        postings.clear();
+    }
+
+    /**
+     * Returns the positions of the blocks that have the given label, or
+     * <code>null</code> if no block has it. The returned instance must not be
+     * modified.
+     */
+    public BitSet getBlocks(final String label) {
+        return postings.get(label);
+    }
+
+    /**
+     * Returns the positions of the blocks that have the label with the given
+     * id, or <code>null</code> if no block has it. The returned instance must
+     * not be modified.
+     */
+    public BitSet getBlocks(final int labelId) {
+        return postings.get(LabelRegistry.INSTANCE.getLabel(labelId));
+    }
+
+    /**
+     * Checks whether the block at the given position has the given label.
+     */
+    public boolean contains(final int block, final String label) {
+        final BitSet bs = postings.get(label);
+        return bs != null && bs.get(block);
+    }
+
+    /**
+     * Returns the labels in this index.
+     */
+    public Set<String> getLabels() {
+        return Collections.unmodifiableSet(postings.keySet());
+    }
+}
@@ -17,11 +17,18 @@
  */
 package de.l3s.boilerpipe.document;
 
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.BitSet;
-import java.util.HashSet;
+import java.util.Collections;
+import java.util.List;
 import java.util.Set;
 
 import de.l3s.boilerpipe.labels.DefaultLabels;
+import de.l3s.boilerpipe.labels.LabelRegistry;
+import de.l3s.boilerpipe.labels.LabelSet;
+import de.l3s.boilerpipe.labels.MarkupPath;
 
 /**
  * Describes a block of text.
@@ -33,8 +40,11 @@ import de.l3s.boilerpipe.labels.DefaultLabels;
  */
 public class TextBlock implements Cloneable {
     boolean isContent = false;
+    // a String, or a MergedText until the text is first requested
     private CharSequence text;
-    Set<String> labels = null;
+    LabelSet labels = null;
+    // never modified in place, so it can be shared by views and clones
+    private MarkupPath[] markupPaths = null;
 
     int offsetBlocksStart;
     int offsetBlocksEnd;
@@ -46,25 +56,39 @@ public class TextBlock implements Cloneable {
     float textDensity;
     float linkDensity;
 
-    BitSet containedTextElements;
+    IntervalSet containedTextElements;
 
-    private int numFullTextWords = 0;
+    int numFullTextWords = 0;
 	private int tagLevel;
 
-    private static final BitSet EMPTY_BITSET = new BitSet();
-    public static final TextBlock EMPTY_START = new TextBlock("", EMPTY_BITSET,
-            0, 0, 0, 0, -1);
-    public static final TextBlock EMPTY_END = new TextBlock("", EMPTY_BITSET,
-            0, 0, 0, 0, Integer.MAX_VALUE);
+    // fields whose instances are shared with other blocks, see #view()
+    private static final int SHARED_LABELS = 1;
+    private static final int SHARED_ELEMENTS = 2;
+    private int shared = 0;
+
+    public static final TextBlock EMPTY_START = new TextBlock("",
+            new IntervalSet(), 0, 0, 0, 0, -1);
+    public static final TextBlock EMPTY_END = new TextBlock("",
+            new IntervalSet(), 0, 0, 0, 0, Integer.MAX_VALUE);
 
     public TextBlock(final String text) {
-        this(text, null, 0,0,0,0,0);
+        this(text, (IntervalSet) null, 0,0,0,0,0);
     }
     
     public TextBlock(final String text, final BitSet containedTextElements,
             final int numWords, final int numWordsInAnchorText,
             final int numWordsInWrappedLines, final int numWrappedLines,
             final int offsetBlocks) {
+        this(text, containedTextElements == null ? null : IntervalSet
+                .valueOf(containedTextElements), numWords,
+                numWordsInAnchorText, numWordsInWrappedLines,
+                numWrappedLines, offsetBlocks);
+    }
+
+    public TextBlock(final String text, final IntervalSet containedTextElements,
+            final int numWords, final int numWordsInAnchorText,
+            final int numWordsInWrappedLines, final int numWrappedLines,
+            final int offsetBlocks) {
         this.text = text;
         this.containedTextElements = containedTextElements;
         this.numWords = numWords;
@@ -90,7 +114,30 @@ public class TextBlock implements Cloneable {
     }
 
     public String getText() {
-        return text.toString();
+        CharSequence t = text;
+        if (!(t instanceof String)) {
+            t = t.toString();
+            text = t;
+        }
+        return (String) t;
+    }
+
+    /**
+     * Appends the text of this block to the given {@link Appendable}. Unlike
+     * {@link #getText()}, this does not build a String of the text of merged
+     * blocks.
+     * 
+     * @param out
+     *            The output.
+     * @throws IOException
+     */
+    public void appendText(final Appendable out) throws IOException {
+        final CharSequence t = text;
+        if (t instanceof MergedText) {
+            ((MergedText) t).appendTo(out);
+        } else {
+            out.append(t);
+        }
     }
 
     public int getNumWords() {
@@ -110,12 +157,7 @@ public class TextBlock implements Cloneable {
     }
 
     public void mergeNext(final TextBlock other) {
-        if (!(text instanceof StringBuilder)) {
-            text = new StringBuilder(text);
-        }
-        StringBuilder sb = (StringBuilder) text;
-        sb.append('\n');
-        sb.append(other.text);
+        text = new MergedText(text, other.text);
 
         numWords += other.numWords;
         numWordsInAnchorText += other.numWordsInAnchorText;
@@ -131,21 +173,32 @@ public class TextBlock implements Cloneable {
 
         this.isContent |= other.isContent;
 
-        if(containedTextElements == null) {
-        	containedTextElements = (BitSet)other.containedTextElements.clone();
-        } else {
-        	containedTextElements.or(other.containedTextElements);
+        if(other.containedTextElements != null) {
+        	if(containedTextElements == null) {
+        		containedTextElements = new IntervalSet(other.containedTextElements);
+        		shared &= ~SHARED_ELEMENTS;
+        	} else {
+        		unshareContainedTextElements();
+        		containedTextElements.addAll(other.containedTextElements);
+        	}
         }
 
         numFullTextWords += other.numFullTextWords;
 
         if (other.labels != null) {
             if (labels == null) {
-                labels = new HashSet<String>(other.labels);
+                labels = new LabelSet(other.labels);
+                shared &= ~SHARED_LABELS;
             } else {
+                unshareLabels();
                 labels.addAll(other.labels);
             }
         }
+        if (other.markupPaths != null) {
+            for (MarkupPath path : other.markupPaths) {
+                addMarkupPath(path);
+            }
+        }
         
         tagLevel = Math.min(tagLevel, other.tagLevel);
     }
@@ -179,11 +232,30 @@ public class TextBlock implements Cloneable {
      */
     public void addLabel(final String label) {
         if (labels == null) {
-            labels = new HashSet<String>(2);
+            labels = new LabelSet();
+            shared &= ~SHARED_LABELS;
+        } else {
+            unshareLabels();
         }
         labels.add(label);
     }
 
+    /**
+     * Adds the label with the given id to this {@link TextBlock}.
+     * 
+     * @param labelId The label id
+     * @see LabelRegistry#intern(String)
+     */
+    public void addLabel(final int labelId) {
+        if (labels == null) {
+            labels = new LabelSet();
+            shared &= ~SHARED_LABELS;
+        } else {
+            unshareLabels();
+        }
+        labels.addId(labelId);
+    }
+
     /**
      * Checks whether this TextBlock has the given label.
      * 
@@ -191,11 +263,42 @@ public class TextBlock implements Cloneable {
      * @return <code>true</code> if this block is marked by the given label.
      */
     public boolean hasLabel(final String label) {
-        return labels != null && labels.contains(label);
+        if (labels != null && labels.contains(label)) {
+            return true;
+        }
+        return markupPaths != null
+                && label.startsWith(DefaultLabels.MARKUP_PREFIX)
+                && hasMarkupLabel(label);
+    }
+
+    private boolean hasMarkupLabel(final String label) {
+        for (MarkupPath path : markupPaths) {
+            if (path.hasLabel(label)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether this TextBlock has the label with the given id. This is
+     * faster than {@link #hasLabel(String)}.
+     * 
+     * @param labelId The label id
+     * @return <code>true</code> if this block is marked by the given label.
+     * @see LabelRegistry#intern(String)
+     */
+    public boolean hasLabel(final int labelId) {
+        // markup labels have no id, so the markup paths need not be checked
+        return labels != null && labels.containsId(labelId);
     }
     
     public boolean removeLabel(final String label) {
-    	return labels != null && labels.remove(label);
+    	if (labels == null || !labels.contains(label)) {
+    		return false;
+    	}
+    	unshareLabels();
+    	return labels.remove(label);
     }
     
     /**
@@ -206,9 +309,13 @@ public class TextBlock implements Cloneable {
      * to the data structure. However it is recommended to use the label-specific methods in {@link TextBlock}
      * whenever possible.
      * 
+     * The markup labels of the block's {@link #getMarkupPaths() markup paths}
+     * are not contained, but are considered by {@link #hasLabel(String)}.
+     * 
      * @return Returns the set of labels, or <code>null</code> if no labels was added yet.
      */
     public Set<String> getLabels() {
+        unshareLabels();
         return labels;
     }
     
@@ -223,8 +330,10 @@ public class TextBlock implements Cloneable {
             return;
         }
         if(this.labels == null) {
-            this.labels = new HashSet<String>(l);
+            this.labels = new LabelSet(l);
+            shared &= ~SHARED_LABELS;
         } else {
+            unshareLabels();
             this.labels.addAll(l);
         }
     }
@@ -240,7 +349,10 @@ public class TextBlock implements Cloneable {
             return;
         }
         if(this.labels == null) {
-            this.labels = new HashSet<String>();
+            this.labels = new LabelSet();
+            shared &= ~SHARED_LABELS;
+        } else {
+            unshareLabels();
         }
         for(final String label : l) {
             this.labels.add(label);
@@ -248,13 +360,110 @@ public class TextBlock implements Cloneable {
     }
 
     /**
-     * Returns the containedTextElements BitSet, or <code>null</code>.
+     * Adds the path of markup elements that encloses (part of) this block.
+     * Paths that enclose one of the block's paths are ignored, and paths that
+     * are enclosed by the given path are replaced by it.
+     * 
+     * @param path The path.
+     */
+    public void addMarkupPath(final MarkupPath path) {
+        if (markupPaths == null) {
+            markupPaths = new MarkupPath[] { path };
+            return;
+        }
+        final MarkupPath[] paths = new MarkupPath[markupPaths.length + 1];
+        int n = 0;
+        for (MarkupPath p : markupPaths) {
+            if (p.isWithin(path)) {
+                return;
+            }
+            if (!path.isWithin(p)) {
+                paths[n++] = p;
+            }
+        }
+        paths[n++] = path;
+        markupPaths = n == paths.length ? paths : Arrays.copyOf(paths, n);
+    }
+
+    /**
+     * Returns the innermost paths of markup elements that enclose this block;
+     * more than one if blocks from different elements have been merged.
+     * 
+     * @return The paths, or an empty list.
+     * @see de.l3s.boilerpipe.sax.MarkupTagAction
+     */
+    public List<MarkupPath> getMarkupPaths() {
+        if (markupPaths == null) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(Arrays.asList(markupPaths));
+    }
+
+    /**
+     * Returns the contained text elements as a new BitSet, or <code>null</code>.
+     * Changes to the returned BitSet do not affect this block.
      * @return
+     * @see #getContainedTextElementIntervals()
      */
     public BitSet getContainedTextElements() {
+        return containedTextElements == null ? null : containedTextElements
+                .toBitSet();
+    }
+
+    /**
+     * Returns the indices of the text elements contained in this block, or
+     * <code>null</code>.
+     * 
+     * NOTE: The returned instance is the one used directly in TextBlock.
+     * @return
+     */
+    public IntervalSet getContainedTextElementIntervals() {
+        unshareContainedTextElements();
         return containedTextElements;
     }
 
+    private void unshareLabels() {
+        if ((shared & SHARED_LABELS) != 0) {
+            if (labels != null) {
+                labels = new LabelSet(labels);
+            }
+            shared &= ~SHARED_LABELS;
+        }
+    }
+
+    private void unshareContainedTextElements() {
+        if ((shared & SHARED_ELEMENTS) != 0) {
+            if (containedTextElements != null) {
+                containedTextElements = new IntervalSet(containedTextElements);
+            }
+            shared &= ~SHARED_ELEMENTS;
+        }
+    }
+
+    /**
+     * Returns a shallow copy of this block that shares the text, labels and
+     * contained text elements with this block. Labels and contained text
+     * elements are copied by either block only when it modifies them; the
+     * text is never modified in place.
+     * 
+     * This marks this block as shared, too, so it must not be called
+     * concurrently with other calls or modifications of this block.
+     * 
+     * @return The copy.
+     * @see TextDocument#view()
+     */
+    TextBlock view() {
+        final TextBlock view;
+        try {
+            view = (TextBlock) super.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new RuntimeException(e);
+        }
+        shared = SHARED_LABELS | SHARED_ELEMENTS;
+        view.shared = shared;
+        return view;
+    }
+
 	@Override
 	protected TextBlock clone() {
 		final TextBlock clone;
@@ -263,15 +472,13 @@ public class TextBlock implements Cloneable {
 		} catch (CloneNotSupportedException e) {
 			throw new RuntimeException(e);
 		}
-		if(text != null && !(text instanceof String)) {
-			clone.text = new StringBuilder(text);
-		}
-		if(labels != null && !labels.isEmpty()) {
-			clone.labels = new HashSet<String>(labels);
+		if(labels != null) {
+			clone.labels = new LabelSet(labels);
 		}
 		if(containedTextElements != null) {
-			clone.containedTextElements = (BitSet)containedTextElements.clone();
+			clone.containedTextElements = new IntervalSet(containedTextElements);
 		}
+		clone.shared = 0;
 		
 		return clone;
 	}
@@ -283,4 +490,78 @@ public class TextBlock implements Cloneable {
 	public void setTagLevel(int tagLevel) {
 		this.tagLevel = tagLevel;
 	}
+
+    /**
+     * The text of two merged blocks, separated by a newline. Merging only
+     * links the parts; the characters are copied once, when the text is
+     * first requested.
+     */
+    private static final class MergedText implements CharSequence {
+        private static final String NEWLINE = "\n";
+
+        private final CharSequence first;
+        private final CharSequence second;
+        private final int length;
+
+        MergedText(final CharSequence first, final CharSequence second) {
+            this.first = first;
+            this.second = second;
+            this.length = first.length() + 1 + second.length();
+        }
+
+        public int length() {
+            return length;
+        }
+
+        public char charAt(final int index) {
+            return toString().charAt(index);
+        }
+
+        public CharSequence subSequence(final int start, final int end) {
+            return toString().subSequence(start, end);
+        }
+
+        void appendTo(final Appendable out) throws IOException {
+            // walks down the first parts, remembering the rest for later
+            final ArrayDeque<CharSequence> stack = new ArrayDeque<CharSequence>();
+            CharSequence cs = this;
+            while (true) {
+                while (cs instanceof MergedText) {
+                    final MergedText m = (MergedText) cs;
+                    stack.push(m.second);
+                    stack.push(NEWLINE);
+                    cs = m.first;
+                }
+                out.append(cs);
+                if (stack.isEmpty()) {
+                    return;
+                }
+                cs = stack.pop();
+            }
+        }
+
+        @Override
+        public String toString() {
+            final char[] buf = new char[length];
+            int pos = length;
+            // fills the buffer from the end; merges usually nest on the first
+            // part, which keeps the stack small
+            final ArrayDeque<CharSequence> stack = new ArrayDeque<CharSequence>();
+            stack.push(this);
+            while (!stack.isEmpty()) {
+                final CharSequence cs = stack.pop();
+                if (cs instanceof MergedText) {
+                    final MergedText m = (MergedText) cs;
+                    stack.push(m.first);
+                    stack.push(NEWLINE);
+                    stack.push(m.second);
+                } else {
+                    final String str = cs.toString();
+                    pos -= str.length();
+                    str.getChars(0, str.length(), buf, pos);
+                }
+            }
+            return new String(buf);
+        }
+    }
 }
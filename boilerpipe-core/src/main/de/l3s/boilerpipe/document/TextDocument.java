@@ -17,6 +17,7 @@
  */
 package de.l3s.boilerpipe.document;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -101,6 +102,85 @@ public class TextDocument implements Cloneable {
      */
     public String getText(boolean includeContent, boolean includeNonContent) {
         StringBuilder sb = new StringBuilder();
+        try {
+            writeText(sb, includeContent, includeNonContent);
+        } catch (IOException e) {
+            // cannot happen with a StringBuilder
+            throw new IllegalStateException(e);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Writes the blocks selected by
+     * {@link TextDocument#writeText(Appendable, boolean, boolean, CharSequence, BlockWriter)}.
+     */
+    public interface BlockWriter {
+        /**
+         * Writes just the text of the block.
+         */
+        BlockWriter TEXT = new BlockWriter() {
+            public void write(final TextBlock block, final Appendable out)
+                    throws IOException {
+                block.appendText(out);
+            }
+        };
+
+        /**
+         * Writes the given block, e.g. its text and some metadata.
+         * 
+         * @param block
+         *            The block.
+         * @param out
+         *            The output.
+         * @throws IOException
+         */
+        void write(final TextBlock block, final Appendable out)
+                throws IOException;
+    }
+
+    /**
+     * Writes the {@link TextDocument}'s content to the given {@link Appendable}
+     * (e.g., a {@link java.io.Writer} or a {@link java.nio.CharBuffer}),
+     * without building a String first. The output is the same as
+     * {@link #getContent()}.
+     * 
+     * @param out The output.
+     * @throws IOException
+     */
+    public void writeContent(final Appendable out) throws IOException {
+        writeText(out, true, false);
+    }
+
+    /**
+     * Writes the {@link TextDocument}'s content, non-content or both to the
+     * given {@link Appendable}. The output is the same as
+     * {@link #getText(boolean, boolean)}.
+     * 
+     * @param out The output.
+     * @param includeContent Whether to include TextBlocks marked as "content".
+     * @param includeNonContent Whether to include TextBlocks marked as "non-content".
+     * @throws IOException
+     */
+    public void writeText(final Appendable out, boolean includeContent,
+            boolean includeNonContent) throws IOException {
+        writeText(out, includeContent, includeNonContent, "\n", BlockWriter.TEXT);
+    }
+
+    /**
+     * Writes the {@link TextDocument}'s content, non-content or both to the
+     * given {@link Appendable}, in a custom format.
+     * 
+     * @param out The output.
+     * @param includeContent Whether to include TextBlocks marked as "content".
+     * @param includeNonContent Whether to include TextBlocks marked as "non-content".
+     * @param delimiter Written after each block, may be <code>null</code>.
+     * @param writer Writes each block.
+     * @throws IOException
+     */
+    public void writeText(final Appendable out, boolean includeContent,
+            boolean includeNonContent, final CharSequence delimiter,
+            final BlockWriter writer) throws IOException {
         for (TextBlock block : getTextBlocks()) {
             if (block.isContent()) {
                 if (!includeContent) {
@@ -111,12 +191,29 @@ public class TextDocument implements Cloneable {
                     continue;
                 }
             }
-            sb.append(block.getText());
-            sb.append('\n');
+            writer.write(block, out);
+            if (delimiter != null) {
+                out.append(delimiter);
+            }
         }
-        return sb.toString();
     }
-    
+
+    /**
+     * Returns the indices of all text elements contained in the blocks that
+     * are marked as content, e.g. for highlighting them in the original HTML.
+     *
+     * @return The text elements; a new instance.
+     */
+    public IntervalSet getContentTextElements() {
+        final IntervalSet set = new IntervalSet();
+        for (TextBlock block : getTextBlocks()) {
+            if (block.isContent() && block.containedTextElements != null) {
+                set.addAll(block.containedTextElements);
+            }
+        }
+        return set;
+    }
+
     /**
      * Returns detailed debugging information about the contained {@link TextBlock}s.
      *  
@@ -131,6 +228,31 @@ public class TextDocument implements Cloneable {
         return sb.toString();
     }
     
+    /**
+     * Returns a lightweight copy of this document, for example to run several
+     * extractors on the same parse.
+     * 
+     * Unlike {@link #clone()}, the blocks of the view share their text, labels
+     * and contained text elements with the blocks of this document. Such data is
+     * copied only when a block is modified through its methods (e.g., when
+     * labels are added or blocks are merged), so neither document is affected
+     * by changes to the other.
+     * 
+     * Creating a view marks the blocks of this document as shared, so views of
+     * one document must be created by a single thread, and not while another
+     * thread modifies the document. Once created, the view and this document
+     * may be processed on different threads.
+     * 
+     * @return The view.
+     */
+    public TextDocument view() {
+    	final List<TextBlock> list = new ArrayList<TextBlock>(textBlocks.size());
+    	for(TextBlock tb : textBlocks) {
+    		list.add(tb.view());
+    	}
+    	return new TextDocument(title, list);
+    }
+
     public TextDocument clone() {
     	final List<TextBlock> list = new ArrayList<TextBlock>(textBlocks.size());
     	for(TextBlock tb : textBlocks) {
@@ -0,0 +1,512 @@
+package de.l3s.boilerpipe.document;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import de.l3s.boilerpipe.labels.LabelSet;
+import de.l3s.boilerpipe.labels.MarkupPath;
+
+/**
+ * Reads and writes {@link TextDocument}s in a compact, versioned binary format.
+ *
+ * A stream starts with a magic number and a format version, followed by any
+ * number of documents and an end marker. All counters are stored as variable
+ * length integers, texts as UTF-8, labels through a string table that is
+ * shared by all documents of a stream, markup paths through a table of path
+ * nodes that is shared likewise, and the contained text elements of a
+ * {@link TextBlock} as run-length encoded intervals.
+ *
+ * Stored documents can be handed to any extractor again without re-parsing
+ * the original HTML.
+ */
+public final class TextDocumentCodec {
+    static final byte[] MAGIC = { 'B', 'P', 'T', 'D' };
+    static final int VERSION = 2;
+    // version 1 lacks markup paths, but is otherwise identical
+    private static final int MIN_VERSION = 1;
+
+    private static final int RECORD_END = 0;
+    private static final int RECORD_DOCUMENT = 1;
+
+    private static final int DOC_HAS_TITLE = 1;
+
+    private static final int BLOCK_IS_CONTENT = 1;
+    private static final int BLOCK_HAS_TEXT_ELEMENTS = 2;
+    private static final int BLOCK_HAS_LABELS = 4;
+    private static final int BLOCK_HAS_MARKUP_PATHS = 8;
+
+    // the largest string length or count accepted when decoding, so that
+    // corrupt input fails instead of allocating huge arrays
+    private static final int MAX_LENGTH = 1 << 26;
+
+    private TextDocumentCodec() {
+    }
+
+    /**
+     * Creates an {@link Encoder} that writes to the given stream. The stream
+     * header is written immediately.
+     *
+     * @param out The target stream.
+     * @return The encoder.
+     * @throws IOException
+     */
+    public static Encoder newEncoder(final OutputStream out) throws IOException {
+        return new Encoder(out);
+    }
+
+    /**
+     * Creates a {@link Decoder} that reads from the given stream. The stream
+     * header is read and verified immediately.
+     *
+     * @param in The source stream.
+     * @return The decoder.
+     * @throws IOException if the stream is not in the expected format.
+     */
+    public static Decoder newDecoder(final InputStream in) throws IOException {
+        return new Decoder(in);
+    }
+
+    /**
+     * Encodes a single {@link TextDocument} as a self-contained byte array.
+     *
+     * @param doc The document.
+     * @return The encoded document.
+     */
+    public static byte[] encode(final TextDocument doc) {
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try {
+            final Encoder enc = new Encoder(bos);
+            enc.write(doc);
+            enc.close();
+        } catch (IOException e) {
+            // cannot happen with a ByteArrayOutputStream
+            throw new IllegalStateException(e);
+        }
+        return bos.toByteArray();
+    }
+
+    /**
+     * Decodes a single {@link TextDocument} from a byte array created by
+     * {@link #encode(TextDocument)}.
+     *
+     * @param data The encoded document.
+     * @return The decoded document.
+     * @throws IOException if the data is not in the expected format.
+     */
+    public static TextDocument decode(final byte[] data) throws IOException {
+        final Decoder dec = new Decoder(new ByteArrayInputStream(data));
+        try {
+            final TextDocument doc = dec.read();
+            if (doc == null) {
+                throw new IOException("No document in input");
+            }
+            return doc;
+        } finally {
+            dec.close();
+        }
+    }
+
+    /**
+     * Writes {@link TextDocument}s to a stream.
+     */
+    public static final class Encoder implements Closeable, Flushable {
+        private final OutputStream out;
+        private final Map<String, Integer> labelIds = new HashMap<String, Integer>();
+        private final Map<MarkupPath, Integer> pathIds = new IdentityHashMap<MarkupPath, Integer>();
+        private boolean closed = false;
+
+        Encoder(final OutputStream out) throws IOException {
+            this.out = out instanceof BufferedOutputStream ? out
+                    : new BufferedOutputStream(out);
+            this.out.write(MAGIC);
+            writeVarInt(VERSION);
+        }
+
+        /**
+         * Appends the given document to the stream.
+         *
+         * @param doc The document.
+         * @throws IOException
+         */
+        public void write(final TextDocument doc) throws IOException {
+            if (closed) {
+                throw new IOException("Encoder is closed");
+            }
+            out.write(RECORD_DOCUMENT);
+
+            final String title = doc.getTitle();
+            writeVarInt(title == null ? 0 : DOC_HAS_TITLE);
+            if (title != null) {
+                writeString(title);
+            }
+
+            final List<TextBlock> blocks = doc.getTextBlocks();
+            writeVarInt(blocks.size());
+            for (TextBlock tb : blocks) {
+                writeBlock(tb);
+            }
+        }
+
+        private void writeBlock(final TextBlock tb) throws IOException {
+            final IntervalSet elements = tb.containedTextElements;
+            // not getLabels(), which would copy the labels of a view
+            final Set<String> labels = tb.labels;
+            final List<MarkupPath> paths = tb.getMarkupPaths();
+
+            int flags = 0;
+            if (tb.isContent()) {
+                flags |= BLOCK_IS_CONTENT;
+            }
+            if (elements != null) {
+                flags |= BLOCK_HAS_TEXT_ELEMENTS;
+            }
+            if (labels != null) {
+                flags |= BLOCK_HAS_LABELS;
+            }
+            if (!paths.isEmpty()) {
+                flags |= BLOCK_HAS_MARKUP_PATHS;
+            }
+            writeVarInt(flags);
+
+            writeString(tb.getText());
+            writeSignedVarInt(tb.offsetBlocksStart);
+            writeSignedVarInt(tb.offsetBlocksEnd - tb.offsetBlocksStart);
+            writeVarInt(tb.numWords);
+            writeVarInt(tb.numWordsInAnchorText);
+            writeVarInt(tb.numWordsInWrappedLines);
+            writeVarInt(tb.numWrappedLines);
+            writeVarInt(tb.numFullTextWords);
+            writeSignedVarInt(tb.getTagLevel());
+
+            if (labels != null) {
+                writeVarInt(labels.size());
+                for (String label : labels) {
+                    writeLabel(label);
+                }
+            }
+
+            if (!paths.isEmpty()) {
+                writeVarInt(paths.size());
+                for (MarkupPath path : paths) {
+                    writePath(path);
+                }
+            }
+
+            if (elements != null) {
+                writeRuns(elements);
+            }
+        }
+
+        private void writeLabel(final String label) throws IOException {
+            final Integer id = labelIds.get(label);
+            if (id == null) {
+                final int newId = labelIds.size();
+                labelIds.put(label, newId);
+                writeVarInt(newId);
+                writeString(label);
+            } else {
+                writeVarInt(id);
+            }
+        }
+
+        // 0 stands for a root, otherwise the node id + 1; a new node is
+        // followed by its parent and its labels
+        private void writePath(final MarkupPath path) throws IOException {
+            if (path.getParent() == null) {
+                writeVarInt(0);
+                return;
+            }
+            final Integer id = pathIds.get(path);
+            if (id != null) {
+                writeVarInt(id + 1);
+                return;
+            }
+            final int newId = pathIds.size();
+            pathIds.put(path, newId);
+            writeVarInt(newId + 1);
+            writePath(path.getParent());
+            final List<String> labels = path.getElementLabels();
+            writeVarInt(labels.size());
+            for (String label : labels) {
+                writeLabel(label);
+            }
+        }
+
+        private void writeRuns(final IntervalSet set) throws IOException {
+            final int numRuns = set.numIntervals();
+            writeVarInt(numRuns);
+
+            int prevEnd = 0;
+            for (int i = 0; i < numRuns; i++) {
+                final int start = set.getStart(i);
+                final int end = set.getEnd(i);
+                writeVarInt(start - prevEnd);
+                writeVarInt(end - start - 1);
+                prevEnd = end;
+            }
+        }
+
+        private void writeString(final String s) throws IOException {
+            final byte[] data = s.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(data.length);
+            out.write(data);
+        }
+
+        private void writeSignedVarInt(final int v) throws IOException {
+            writeVarInt((v << 1) ^ (v >> 31));
+        }
+
+        private void writeVarInt(int v) throws IOException {
+            while ((v & ~0x7F) != 0) {
+                out.write((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            out.write(v);
+        }
+
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        /**
+         * Writes the end marker and closes the underlying stream.
+         */
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            out.write(RECORD_END);
+            out.close();
+        }
+    }
+
+    /**
+     * Reads {@link TextDocument}s from a stream.
+     */
+    public static final class Decoder implements Closeable {
+        private final InputStream in;
+        private final List<String> labels = new ArrayList<String>();
+        private final List<MarkupPath> paths = new ArrayList<MarkupPath>();
+        private final MarkupPath root = MarkupPath.newRoot();
+        private boolean atEnd = false;
+
+        Decoder(final InputStream in) throws IOException {
+            this.in = in instanceof BufferedInputStream ? in
+                    : new BufferedInputStream(in);
+            for (byte b : MAGIC) {
+                if (readByte() != b) {
+                    throw new IOException("Not a TextDocument stream");
+                }
+            }
+            final int version = readVarInt();
+            if (version < MIN_VERSION || version > VERSION) {
+                throw new IOException("Unsupported TextDocument format version: "
+                        + version);
+            }
+        }
+
+        /**
+         * Reads the next document from the stream.
+         *
+         * @return The next document, or <code>null</code> if the end of the
+         *         stream has been reached.
+         * @throws IOException
+         */
+        public TextDocument read() throws IOException {
+            if (atEnd) {
+                return null;
+            }
+            final int record = in.read();
+            if (record == -1 || record == RECORD_END) {
+                atEnd = true;
+                return null;
+            } else if (record != RECORD_DOCUMENT) {
+                throw new IOException("Unexpected record type: " + record);
+            }
+
+            final int docFlags = readVarInt();
+            final String title = (docFlags & DOC_HAS_TITLE) != 0 ? readString()
+                    : null;
+
+            final int numBlocks = readLength();
+            final List<TextBlock> blocks = new ArrayList<TextBlock>(Math.min(
+                    numBlocks, 1024));
+            for (int i = 0; i < numBlocks; i++) {
+                blocks.add(readBlock());
+            }
+            return new TextDocument(title, blocks);
+        }
+
+        private TextBlock readBlock() throws IOException {
+            final int flags = readVarInt();
+
+            final String text = readString();
+            final int offsetStart = readSignedVarInt();
+            final int offsetEnd = offsetStart + readSignedVarInt();
+            final int numWords = readVarInt();
+            final int numWordsInAnchorText = readVarInt();
+            final int numWordsInWrappedLines = readVarInt();
+            final int numWrappedLines = readVarInt();
+            final int numFullTextWords = readVarInt();
+            final int tagLevel = readSignedVarInt();
+
+            LabelSet blockLabels = null;
+            if ((flags & BLOCK_HAS_LABELS) != 0) {
+                final int n = readLength();
+                blockLabels = new LabelSet();
+                for (int i = 0; i < n; i++) {
+                    blockLabels.add(readLabel());
+                }
+            }
+
+            List<MarkupPath> blockPaths = null;
+            if ((flags & BLOCK_HAS_MARKUP_PATHS) != 0) {
+                final int n = readLength();
+                blockPaths = new ArrayList<MarkupPath>(Math.min(n, 16));
+                for (int i = 0; i < n; i++) {
+                    blockPaths.add(readPath());
+                }
+            }
+
+            final IntervalSet elements = (flags & BLOCK_HAS_TEXT_ELEMENTS) != 0 ? readRuns()
+                    : null;
+
+            final TextBlock tb = new TextBlock(text, elements, numWords,
+                    numWordsInAnchorText, numWordsInWrappedLines,
+                    numWrappedLines, offsetStart);
+            tb.offsetBlocksEnd = offsetEnd;
+            tb.numFullTextWords = numFullTextWords;
+            tb.isContent = (flags & BLOCK_IS_CONTENT) != 0;
+            tb.labels = blockLabels;
+            if (blockPaths != null) {
+                for (MarkupPath path : blockPaths) {
+                    tb.addMarkupPath(path);
+                }
+            }
+            tb.setTagLevel(tagLevel);
+            return tb;
+        }
+
+        private String readLabel() throws IOException {
+            final int id = readVarInt();
+            if (id == labels.size()) {
+                labels.add(readString());
+            } else if (id < 0 || id > labels.size()) {
+                throw new IOException("Invalid label reference: " + id);
+            }
+            return labels.get(id);
+        }
+
+        private MarkupPath readPath() throws IOException {
+            final int ref = readVarInt();
+            if (ref == 0) {
+                return root;
+            } else if (ref < 0) {
+                throw new IOException("Invalid markup path reference: " + ref);
+            }
+            final int id = ref - 1;
+            if (id < paths.size()) {
+                final MarkupPath path = paths.get(id);
+                if (path == null) {
+                    throw new IOException("Invalid markup path reference: " + ref);
+                }
+                return path;
+            } else if (id > paths.size()) {
+                throw new IOException("Invalid markup path reference: " + ref);
+            }
+            // reserve the id before reading the parent, which may be new too
+            paths.add(null);
+            final MarkupPath parent = readPath();
+            final int n = readLength();
+            final List<String> elementLabels = new ArrayList<String>(Math.min(
+                    n, 16));
+            for (int i = 0; i < n; i++) {
+                elementLabels.add(readLabel());
+            }
+            final MarkupPath path = parent.child(elementLabels
+                    .toArray(new String[n]));
+            paths.set(id, path);
+            return path;
+        }
+
+        private IntervalSet readRuns() throws IOException {
+            final IntervalSet set = new IntervalSet();
+            final int numRuns = readLength();
+            int prevEnd = 0;
+            for (int i = 0; i < numRuns; i++) {
+                final int start = prevEnd + readVarInt();
+                final int end = start + readVarInt() + 1;
+                set.add(start, end);
+                prevEnd = end;
+            }
+            return set;
+        }
+
+        private String readString() throws IOException {
+            final int len = readLength();
+            final byte[] data = new byte[len];
+            int off = 0;
+            while (off < len) {
+                final int r = in.read(data, off, len - off);
+                if (r == -1) {
+                    throw new EOFException();
+                }
+                off += r;
+            }
+            return new String(data, StandardCharsets.UTF_8);
+        }
+
+        private int readSignedVarInt() throws IOException {
+            final int v = readVarInt();
+            return (v >>> 1) ^ -(v & 1);
+        }
+
+        private int readVarInt() throws IOException {
+            int v = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                final int b = readByte();
+                v |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return v;
+                }
+            }
+            throw new IOException("Malformed variable length integer");
+        }
+
+        private int readLength() throws IOException {
+            final int len = readVarInt();
+            if (len < 0 || len > MAX_LENGTH) {
+                throw new IOException("Invalid length: " + len);
+            }
+            return len;
+        }
+
+        private int readByte() throws IOException {
+            final int b = in.read();
+            if (b == -1) {
+                throw new EOFException();
+            }
+            return b;
+        }
+
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -9,9 +9,24 @@ public class Video implements Comparable<Video> {
 	private final String width;
 	private final String height;
 	private final int area;
+	private final int textElementIndex;
+	private final boolean content;
 
 	public Video(final String src, final String width, final String height) {
+		this(src, width, height, -1, false);
+	}
+
+	/**
+	 * Creates a video that is tied to a text element of the document.
+	 *
+	 * @param textElementIndex The index of the text element following the video, or -1.
+	 * @param content Whether that text element belongs to extracted content.
+	 */
+	public Video(final String src, final String width, final String height,
+			final int textElementIndex, final boolean content) {
 		this.src = src;
+		this.textElementIndex = textElementIndex;
+		this.content = content;
 
 		this.width = nullTrim(width);
 		this.height = nullTrim(height);
@@ -19,7 +34,9 @@ public class Video implements Comparable<Video> {
 		if(width != null && height != null) {
 			int a;
 			try {
-				a = Integer.parseInt(width) * Integer.parseInt(height);
+				final int w = Integer.parseInt(this.width);
+				final int h = Integer.parseInt(this.height);
+				a = w < 0 || h < 0 ? -1 : w * h;
 			} catch(NumberFormatException e) {
 				a = -1;
 			}
@@ -40,6 +57,21 @@ public class Video implements Comparable<Video> {
 	public String getHeight() {
 		return height;
 	}
+
+	/**
+	 * Returns the index of the first non-whitespace text element following the
+	 * video, or -1 if unknown.
+	 */
+	public int getTextElementIndex() {
+		return textElementIndex;
+	}
+
+	/**
+	 * Returns whether the video is enclosed by extracted content.
+	 */
+	public boolean isContent() {
+		return content;
+	}
 	
 	private static String nullTrim(String s) {
 		if(s == null) {
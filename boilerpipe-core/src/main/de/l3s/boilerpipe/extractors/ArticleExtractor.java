@@ -17,6 +17,7 @@
  */
 package de.l3s.boilerpipe.extractors;
 
+import de.l3s.boilerpipe.BoilerpipeFilter;
 import de.l3s.boilerpipe.BoilerpipeProcessingException;
 import de.l3s.boilerpipe.document.TextDocument;
 import de.l3s.boilerpipe.filters.english.IgnoreBlocksAfterContentFilter;
@@ -47,22 +48,36 @@ public final class ArticleExtractor extends ExtractorBase {
         return INSTANCE;
     }
     
+    // NumWordsRulesClassifier neither reads nor writes the labels set by the
+    // two filters after it; running it first lets the stage be shared with
+    // LargestContentExtractor in an ExtractorPlan
+    private static final ExtractorPipeline PIPELINE = ExtractorPipeline
+            .builder()
+            .add(NumWordsRulesClassifier.INSTANCE)
+            .add(TerminatingBlocksFinder.INSTANCE)
+            .addFactory(new ExtractorPipeline.FilterFactory() {
+                public BoilerpipeFilter newFilter(final TextDocument doc) {
+                    return new DocumentTitleMatchClassifier(doc.getTitle());
+                }
+            })
+            .add(IgnoreBlocksAfterContentFilter.DEFAULT_INSTANCE)
+            .add(TrailingHeadlineToBoilerplateFilter.INSTANCE)
+            .add(BlockProximityFusion.MAX_DISTANCE_1)
+            .add(BoilerplateBlockFilter.INSTANCE_KEEP_TITLE)
+            .add(BlockProximityFusion.MAX_DISTANCE_1_CONTENT_ONLY_SAME_TAGLEVEL)
+            .add(KeepLargestBlockFilter.INSTANCE_EXPAND_TO_SAME_TAGLEVEL_MIN_WORDS)
+            .add(ExpandTitleToContentFilter.INSTANCE)
+            .add(LargeBlockSameTagLevelToContentFilter.INSTANCE)
+            .add(ListAtEndFilter.INSTANCE)
+            .build();
+
     public boolean process(TextDocument doc)
             throws BoilerpipeProcessingException {
-        return
+        return PIPELINE.process(doc);
+    }
 
-        TerminatingBlocksFinder.INSTANCE.process(doc)
-                | new DocumentTitleMatchClassifier(doc.getTitle()).process(doc)
-                | NumWordsRulesClassifier.INSTANCE.process(doc)
-                | IgnoreBlocksAfterContentFilter.DEFAULT_INSTANCE.process(doc)
-                | TrailingHeadlineToBoilerplateFilter.INSTANCE.process(doc)
-                | BlockProximityFusion.MAX_DISTANCE_1.process(doc)
-                | BoilerplateBlockFilter.INSTANCE_KEEP_TITLE.process(doc)
-                | BlockProximityFusion.MAX_DISTANCE_1_CONTENT_ONLY_SAME_TAGLEVEL.process(doc)
-                | KeepLargestBlockFilter.INSTANCE_EXPAND_TO_SAME_TAGLEVEL_MIN_WORDS.process(doc)
-                | ExpandTitleToContentFilter.INSTANCE.process(doc)
-                | LargeBlockSameTagLevelToContentFilter.INSTANCE.process(doc)
-                | ListAtEndFilter.INSTANCE.process(doc)
-        ;
+    @Override
+    ExtractorPipeline getPipeline() {
+        return PIPELINE;
     }
 }
@@ -37,13 +37,21 @@ public final class ArticleSentencesExtractor extends ExtractorBase {
         return INSTANCE;
     }
 
+    private static final ExtractorPipeline PIPELINE = ExtractorPipeline
+            .builder()
+            .addAll(ArticleExtractor.INSTANCE.getPipeline())
+            .add(SplitParagraphBlocksFilter.INSTANCE)
+            .add(MinClauseWordsFilter.INSTANCE)
+            .build();
+
     public boolean process(TextDocument doc)
             throws BoilerpipeProcessingException {
-        return
+        return PIPELINE.process(doc);
+    }
 
-        ArticleExtractor.INSTANCE.process(doc)
-                | SplitParagraphBlocksFilter.INSTANCE.process(doc)
-                | MinClauseWordsFilter.INSTANCE.process(doc);
+    @Override
+    ExtractorPipeline getPipeline() {
+        return PIPELINE;
     }
 
 }
@@ -0,0 +1,383 @@
+package de.l3s.boilerpipe.extractors;
+
+import java.io.Closeable;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.xml.sax.InputSource;
+
+import de.l3s.boilerpipe.BoilerpipeExtractor;
+import de.l3s.boilerpipe.BoilerpipeProcessingException;
+import de.l3s.boilerpipe.document.TextDocument;
+import de.l3s.boilerpipe.sax.BoilerpipeHTMLContentHandler;
+import de.l3s.boilerpipe.sax.BoilerpipeHTMLParser;
+import de.l3s.boilerpipe.sax.BoilerpipeSAXInput;
+import de.l3s.boilerpipe.sax.InputSourceable;
+
+/**
+ * Extracts text from many HTML documents in parallel.
+ *
+ * A fixed number of worker threads take the inputs one by one, each
+ * recycling its own content handler. Inputs are read only as fast as results are
+ * consumed, so a batch may be arbitrarily large. A failing document yields a
+ * {@link Result} with an error; the remaining documents are still processed.
+ * Errors such as a {@link StackOverflowError} are reported the same way,
+ * wrapped in a {@link BoilerpipeProcessingException}.
+ *
+ * Inputs may be Strings of HTML code, {@link InputSourceable}s such as
+ * {@link de.l3s.boilerpipe.sax.HTMLDocument}, or {@link InputSource}s. The
+ * extractor must be thread-safe, which all extractors of this package are.
+ */
+public final class BatchExtractor {
+
+    /**
+     * The outcome of extracting one input.
+     */
+    public static final class Result {
+        private final int index;
+        private final Object input;
+        private final TextDocument doc;
+        private final String text;
+        private final Exception error;
+        private final long parseNanos;
+        private final long extractNanos;
+
+        Result(final int index, final Object input, final TextDocument doc,
+                final String text, final Exception error,
+                final long parseNanos, final long extractNanos) {
+            this.index = index;
+            this.input = input;
+            this.doc = doc;
+            this.text = text;
+            this.error = error;
+            this.parseNanos = parseNanos;
+            this.extractNanos = extractNanos;
+        }
+
+        /**
+         * Returns the position of the input in the batch, starting at 0.
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * Returns the input.
+         */
+        public Object getInput() {
+            return input;
+        }
+
+        /**
+         * Returns <code>true</code> if the input has been processed without
+         * error.
+         */
+        public boolean isSuccess() {
+            return error == null;
+        }
+
+        /**
+         * Returns the processed document, or <code>null</code> on error.
+         */
+        public TextDocument getTextDocument() {
+            return doc;
+        }
+
+        /**
+         * Returns the extracted text, or <code>null</code> on error.
+         */
+        public String getText() {
+            return text;
+        }
+
+        /**
+         * Returns the error, or <code>null</code> if there was none.
+         */
+        public Exception getError() {
+            return error;
+        }
+
+        /**
+         * Returns the time spent parsing the input, in nanoseconds.
+         */
+        public long getParseNanos() {
+            return parseNanos;
+        }
+
+        /**
+         * Returns the time spent running the extractor, in nanoseconds.
+         */
+        public long getExtractNanos() {
+            return extractNanos;
+        }
+    }
+
+    private final BoilerpipeExtractor extractor;
+    private final int parallelism;
+
+    /**
+     * Creates a batch extractor.
+     *
+     * @param extractor
+     *            The extractor.
+     * @param parallelism
+     *            The number of worker threads.
+     */
+    public BatchExtractor(final BoilerpipeExtractor extractor,
+            final int parallelism) {
+        if (extractor == null) {
+            throw new NullPointerException("extractor");
+        }
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive");
+        }
+        this.extractor = extractor;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Extracts all inputs.
+     *
+     * @param inputs
+     *            The inputs.
+     * @return One result per input, in input order.
+     */
+    public List<Result> extractAll(final Iterable<?> inputs) {
+        final List<Result> results = new ArrayList<Result>();
+        final Results it = extract(inputs.iterator(), true);
+        try {
+            while (it.hasNext()) {
+                results.add(it.next());
+            }
+        } finally {
+            it.close();
+        }
+        return results;
+    }
+
+    /**
+     * Extracts the given inputs while the results are consumed.
+     *
+     * @param inputs
+     *            The inputs.
+     * @param ordered
+     *            Whether the results are returned in input order, or as they
+     *            complete.
+     * @return The results. Close the stream if not all results are consumed.
+     */
+    public Stream<Result> extract(final Stream<?> inputs, final boolean ordered) {
+        final Results it = extract(inputs.iterator(), ordered);
+        return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(it, Spliterator.NONNULL
+                        | (ordered ? Spliterator.ORDERED : 0)), false)
+                .onClose(new Runnable() {
+                    public void run() {
+                        it.close();
+                        inputs.close();
+                    }
+                });
+    }
+
+    /**
+     * Extracts the given inputs while the results are consumed.
+     *
+     * @param inputs
+     *            The inputs.
+     * @param ordered
+     *            Whether the results are returned in input order, or as they
+     *            complete.
+     * @return The results. Close them if not all results are consumed.
+     */
+    public Results extract(final Iterator<?> inputs, final boolean ordered) {
+        return new Results(inputs, ordered);
+    }
+
+    private static InputSource toInputSource(final Object input) {
+        if (input instanceof InputSource) {
+            return (InputSource) input;
+        } else if (input instanceof InputSourceable) {
+            return ((InputSourceable) input).toInputSource();
+        } else if (input instanceof String) {
+            return new InputSource(new StringReader((String) input));
+        }
+        throw new IllegalArgumentException("Unsupported input: "
+                + (input == null ? null : input.getClass().getName()));
+    }
+
+    /**
+     * The results of a batch, produced by the worker threads while they are
+     * consumed.
+     */
+    public final class Results implements Iterator<Result>, Closeable {
+        // marks the end of a worker
+        private final Result end = new Result(-1, null, null, null, null, 0, 0);
+
+        private final Iterator<?> inputs;
+        private final boolean ordered;
+        private final Thread[] workers;
+        // limits the number of results that have not been consumed yet
+        private final Semaphore permits;
+        private final BlockingQueue<Result> queue = new LinkedBlockingQueue<Result>();
+        private final Map<Integer, Result> pending = new HashMap<Integer, Result>();
+
+        private int numInputs = 0;
+        private int nextIndex = 0;
+        private int numEnded = 0;
+        private Result next = null;
+        private volatile boolean closed = false;
+        private volatile RuntimeException failure = null;
+
+        Results(final Iterator<?> inputs, final boolean ordered) {
+            this.inputs = inputs;
+            this.ordered = ordered;
+            this.permits = new Semaphore(4 * parallelism);
+            this.workers = new Thread[parallelism];
+            for (int i = 0; i < parallelism; i++) {
+                workers[i] = new Thread(new Runnable() {
+                    public void run() {
+                        work();
+                    }
+                }, "boilerpipe-batch-" + i);
+                workers[i].setDaemon(true);
+                workers[i].start();
+            }
+        }
+
+        private void work() {
+            final BoilerpipeHTMLContentHandler handler = new BoilerpipeHTMLContentHandler();
+            try {
+                while (!closed) {
+                    permits.acquire();
+                    final Object input;
+                    final int index;
+                    synchronized (inputs) {
+                        if (closed || !inputs.hasNext()) {
+                            break;
+                        }
+                        input = inputs.next();
+                        index = numInputs++;
+                    }
+                    queue.add(process(handler, index, input));
+                }
+            } catch (InterruptedException e) {
+                // closed
+            } catch (RuntimeException e) {
+                // the inputs failed
+                failure = e;
+                closed = true;
+            } finally {
+                queue.add(end);
+            }
+        }
+
+        private Result process(final BoilerpipeHTMLContentHandler handler,
+                final int index, final Object input) {
+            final long start = System.nanoTime();
+            long parsed = start;
+            try {
+                handler.recycle();
+                // NekoHTML does not fully reset its tag balancer between
+                // parses, which would shift the text element indices
+                final BoilerpipeHTMLParser parser = new BoilerpipeHTMLParser(
+                        handler);
+                final TextDocument doc = new BoilerpipeSAXInput(
+                        toInputSource(input)).getTextDocument(parser);
+                parsed = System.nanoTime();
+                extractor.process(doc);
+                final String text = doc.getContent();
+                return new Result(index, input, doc, text, null, parsed
+                        - start, System.nanoTime() - parsed);
+            } catch (BoilerpipeProcessingException e) {
+                return failed(index, input, e, start, parsed);
+            } catch (org.xml.sax.SAXException e) {
+                return failed(index, input,
+                        new BoilerpipeProcessingException(e), start, parsed);
+            } catch (RuntimeException e) {
+                return failed(index, input, e, start, parsed);
+            } catch (Throwable t) {
+                // e.g. a StackOverflowError on a deeply nested page; the
+                // worker must still produce a result for this index, or an
+                // ordered batch would wait for it forever
+                return failed(index, input, new BoilerpipeProcessingException(
+                        t), start, parsed);
+            }
+        }
+
+        private Result failed(final int index, final Object input,
+                final Exception e, final long start, final long parsed) {
+            // if parsing failed, parsed is still the start time
+            final long now = System.nanoTime();
+            return parsed == start ? new Result(index, input, null, null, e,
+                    now - start, 0) : new Result(index, input, null, null, e,
+                    parsed - start, now - parsed);
+        }
+
+        public boolean hasNext() {
+            while (next == null) {
+                if (ordered && pending.containsKey(nextIndex)) {
+                    next = pending.remove(nextIndex);
+                    break;
+                }
+                if (numEnded == workers.length) {
+                    if (failure != null) {
+                        throw failure;
+                    }
+                    return false;
+                }
+                final Result r;
+                try {
+                    r = queue.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException(e);
+                }
+                if (r == end) {
+                    numEnded++;
+                } else if (!ordered || r.index == nextIndex) {
+                    next = r;
+                } else {
+                    pending.put(r.index, r);
+                }
+            }
+            return true;
+        }
+
+        public Result next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final Result r = next;
+            next = null;
+            nextIndex++;
+            permits.release();
+            return r;
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        /**
+         * Stops the workers. Inputs that have not been taken yet are not
+         * processed.
+         */
+        public void close() {
+            closed = true;
+            for (Thread t : workers) {
+                t.interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package de.l3s.boilerpipe.extractors;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A {@link Flow.Publisher} whose items are produced by a task that runs on an
+ * {@link Executor} and blocks while the subscriber has no demand. This pauses
+ * reading the input whenever the subscriber is slower than the parser.
+ *
+ * Each publisher produces its items once, so it accepts a single subscriber.
+ */
+abstract class BlockingPublisher<T> implements Flow.Publisher<T> {
+    private final Executor executor;
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+
+    BlockingPublisher(final Executor executor) {
+        if (executor == null) {
+            throw new NullPointerException("executor");
+        }
+        this.executor = executor;
+    }
+
+    /**
+     * Produces all items, passing each to {@link Emitter#emit(Object)}.
+     */
+    abstract void produce(final Emitter<T> emitter) throws Exception;
+
+    public void subscribe(final Flow.Subscriber<? super T> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("subscriber");
+        }
+        final Emitter<T> emitter = new Emitter<T>(this, subscriber);
+        if (!subscribed.compareAndSet(false, true)) {
+            emitter.cancel();
+            subscriber.onSubscribe(emitter);
+            subscriber.onError(new IllegalStateException(
+                    "This publisher supports only one subscriber"));
+            return;
+        }
+        subscriber.onSubscribe(emitter);
+        try {
+            executor.execute(emitter);
+        } catch (RuntimeException e) {
+            emitter.cancel();
+            subscriber.onError(e);
+        }
+    }
+
+    /**
+     * The subscription, and the task that produces the items.
+     */
+    static final class Emitter<T> implements Flow.Subscription, Runnable {
+        private final BlockingPublisher<T> publisher;
+        private final Flow.Subscriber<? super T> subscriber;
+        private long demand = 0;
+        private boolean cancelled = false;
+        private Throwable error = null;
+
+        Emitter(final BlockingPublisher<T> publisher,
+                final Flow.Subscriber<? super T> subscriber) {
+            this.publisher = publisher;
+            this.subscriber = subscriber;
+        }
+
+        public synchronized void request(final long n) {
+            if (cancelled) {
+                return;
+            }
+            if (n <= 0) {
+                error = new IllegalArgumentException(
+                        "Non-positive number of items requested: " + n);
+                cancelled = true;
+            } else {
+                demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+            }
+            notifyAll();
+        }
+
+        public synchronized void cancel() {
+            cancelled = true;
+            notifyAll();
+        }
+
+        /**
+         * Waits until the subscriber wants another item.
+         *
+         * @return <code>false</code> if the subscription has been cancelled.
+         */
+        synchronized boolean awaitDemand() {
+            try {
+                while (demand == 0 && !cancelled) {
+                    wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                cancelled = true;
+            }
+            return !cancelled;
+        }
+
+        /**
+         * Passes an item to the subscriber, waiting for demand first.
+         *
+         * @return <code>false</code> if the subscription has been cancelled,
+         *         in which case production should stop.
+         */
+        boolean emit(final T item) {
+            synchronized (this) {
+                if (!awaitDemand()) {
+                    return false;
+                }
+                if (demand != Long.MAX_VALUE) {
+                    demand--;
+                }
+            }
+            subscriber.onNext(item);
+            return true;
+        }
+
+        public void run() {
+            Throwable failure = null;
+            try {
+                publisher.produce(this);
+            } catch (Throwable t) {
+                failure = t;
+            }
+            final boolean wasCancelled;
+            synchronized (this) {
+                wasCancelled = cancelled;
+                if (error != null) {
+                    failure = error;
+                }
+                cancelled = true;
+            }
+            if (failure != null && (!wasCancelled || failure == error)) {
+                subscriber.onError(failure);
+            } else if (!wasCancelled) {
+                subscriber.onComplete();
+            }
+        }
+    }
+}
@@ -21,6 +21,7 @@ import java.io.IOException;
 import java.io.Reader;
 import java.io.StringReader;
 import java.net.URL;
+import java.util.List;
 
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
@@ -128,4 +129,84 @@ public abstract class ExtractorBase implements BoilerpipeExtractor {
         return doc.getContent();
     }
 
+    /**
+     * Extracts text from the HTML code given as a String, and writes it to
+     * the given {@link Appendable} (e.g., a {@link java.io.Writer}) instead of
+     * returning it as a String.
+     * 
+     * @param html  The HTML code as a String.
+     * @param out  The output.
+     * @throws BoilerpipeProcessingException
+     * @throws IOException  If writing to the output fails.
+     */
+    public void extractTo(final String html, final Appendable out)
+            throws BoilerpipeProcessingException, IOException {
+        extractTo(getDocument(html), out);
+    }
+
+    /**
+     * Extracts text from the HTML code available from the given
+     * {@link InputSource}, and writes it to the given {@link Appendable}.
+     * 
+     * @param is The InputSource containing the HTML
+     * @param out  The output.
+     * @throws BoilerpipeProcessingException
+     * @throws IOException  If writing to the output fails.
+     */
+    public void extractTo(final InputSource is, final Appendable out)
+            throws BoilerpipeProcessingException, IOException {
+        try {
+            extractTo(new BoilerpipeSAXInput(is).getTextDocument(), out);
+        } catch (SAXException e) {
+            throw new BoilerpipeProcessingException(e);
+        }
+    }
+
+    /**
+     * Extracts text from the given {@link TextDocument} object, and writes it
+     * to the given {@link Appendable}.
+     * 
+     * @param doc The {@link TextDocument}.
+     * @param out  The output.
+     * @throws BoilerpipeProcessingException
+     * @throws IOException  If writing to the output fails.
+     */
+    public void extractTo(final TextDocument doc, final Appendable out)
+            throws BoilerpipeProcessingException, IOException {
+        process(doc);
+        doc.writeContent(out);
+    }
+
+    /**
+     * Extracts text from several HTML documents in parallel, with one worker
+     * thread per available processor. See {@link BatchExtractor} for the
+     * supported inputs.
+     * 
+     * @param inputs  The HTML documents.
+     * @return  One result per input, in input order.
+     */
+    public List<BatchExtractor.Result> extractAll(final Iterable<?> inputs) {
+        return batch(Runtime.getRuntime().availableProcessors()).extractAll(
+                inputs);
+    }
+
+    /**
+     * Returns a {@link BatchExtractor} that runs this extractor with the
+     * given number of worker threads.
+     * 
+     * @param parallelism  The number of worker threads.
+     * @return  The batch extractor.
+     */
+    public BatchExtractor batch(final int parallelism) {
+        return new BatchExtractor(this, parallelism);
+    }
+
+    /**
+     * Returns the {@link ExtractorPipeline} this extractor runs, or
+     * <code>null</code> if it is not described as one. This allows an
+     * {@link ExtractorPlan} to share stages between extractors.
+     */
+    ExtractorPipeline getPipeline() {
+        return null;
+    }
 }
@@ -0,0 +1,195 @@
+package de.l3s.boilerpipe.extractors;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import de.l3s.boilerpipe.BoilerpipeFilter;
+import de.l3s.boilerpipe.BoilerpipeProcessingException;
+import de.l3s.boilerpipe.LocalBlockFilter;
+import de.l3s.boilerpipe.document.TextBlock;
+import de.l3s.boilerpipe.document.TextDocument;
+
+/**
+ * An extractor that is described as a sequence of filter stages, created
+ * through a {@link Builder}.
+ *
+ * Consecutive stages that are {@link LocalBlockFilter}s are fused into a
+ * single pass over the blocks. Each of them visits the blocks in order, but
+ * lags behind the preceding one by as many blocks as both of them look ahead
+ * and back, so it sees exactly what it would see if the filters ran one after
+ * the other. All other stages run on the whole document, as usual.
+ */
+public final class ExtractorPipeline extends ExtractorBase {
+
+    /**
+     * Creates the filter of a stage for a particular document, for example
+     * one that depends on the document's title.
+     */
+    public interface FilterFactory {
+        /**
+         * Creates the filter for the given document. This may be called before
+         * the preceding stages have processed the document.
+         *
+         * @param doc
+         *            The document.
+         * @return The filter.
+         */
+        BoilerpipeFilter newFilter(final TextDocument doc);
+    }
+
+    /**
+     * Builds an {@link ExtractorPipeline}.
+     */
+    public static final class Builder {
+        private final List<Object> stages = new ArrayList<Object>();
+        private boolean fuse = true;
+
+        Builder() {
+        }
+
+        /**
+         * Appends a stage that runs the given filter.
+         */
+        public Builder add(final BoilerpipeFilter filter) {
+            if (filter == null) {
+                throw new NullPointerException("filter");
+            }
+            stages.add(filter);
+            return this;
+        }
+
+        /**
+         * Appends a stage that runs a filter created for each document.
+         */
+        public Builder addFactory(final FilterFactory factory) {
+            if (factory == null) {
+                throw new NullPointerException("factory");
+            }
+            stages.add(factory);
+            return this;
+        }
+
+        /**
+         * Appends all stages of the given pipeline. Extractors that share
+         * stages this way can be planned together by an {@link ExtractorPlan},
+         * which runs the shared stages only once.
+         */
+        public Builder addAll(final ExtractorPipeline pipeline) {
+            for (Object stage : pipeline.stages) {
+                stages.add(stage);
+            }
+            return this;
+        }
+
+        /**
+         * Sets whether consecutive {@link LocalBlockFilter}s are fused into a
+         * single pass (the default), or run one after the other.
+         */
+        public Builder fuseLocalFilters(final boolean fuse) {
+            this.fuse = fuse;
+            return this;
+        }
+
+        public ExtractorPipeline build() {
+            return new ExtractorPipeline(stages.toArray(), fuse);
+        }
+    }
+
+    private final Object[] stages;
+    private final boolean fuse;
+
+    private ExtractorPipeline(final Object[] stages, final boolean fuse) {
+        this.stages = stages;
+        this.fuse = fuse;
+    }
+
+    /**
+     * Creates a new, empty {@link Builder}.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns the stages of this pipeline, each either a
+     * {@link BoilerpipeFilter} or a {@link FilterFactory}.
+     */
+    Object[] getStages() {
+        return stages;
+    }
+
+    @Override
+    ExtractorPipeline getPipeline() {
+        return this;
+    }
+
+    public boolean process(final TextDocument doc)
+            throws BoilerpipeProcessingException {
+        return process(stages, 0, stages.length, doc, fuse);
+    }
+
+    /**
+     * Runs the stages <code>from</code> (inclusive) to <code>to</code>
+     * (exclusive) on the given document.
+     */
+    static boolean process(final Object[] stages, final int from,
+            final int to, final TextDocument doc, final boolean fuse)
+            throws BoilerpipeProcessingException {
+        boolean changes = false;
+        final List<LocalBlockFilter> pending = new ArrayList<LocalBlockFilter>();
+        for (int i = from; i < to; i++) {
+            final Object stage = stages[i];
+            final BoilerpipeFilter filter = stage instanceof FilterFactory ? ((FilterFactory) stage)
+                    .newFilter(doc)
+                    : (BoilerpipeFilter) stage;
+            if (fuse && filter instanceof LocalBlockFilter) {
+                pending.add((LocalBlockFilter) filter);
+                continue;
+            }
+            changes = runLocal(pending, doc) | changes;
+            changes = filter.process(doc) | changes;
+        }
+        changes = runLocal(pending, doc) | changes;
+        return changes;
+    }
+
+    private static boolean runLocal(final List<LocalBlockFilter> filters,
+            final TextDocument doc) throws BoilerpipeProcessingException {
+        final int numFilters = filters.size();
+        if (numFilters == 0) {
+            return false;
+        } else if (numFilters == 1) {
+            final boolean changes = filters.get(0).process(doc);
+            filters.clear();
+            return changes;
+        }
+
+        // filter k processes block i - lag[k]; by then, filter k - 1 has
+        // processed all blocks filter k reads, and will not read the block
+        // filter k modifies again
+        final LocalBlockFilter.Visitor[] visitors = new LocalBlockFilter.Visitor[numFilters];
+        final int[] lag = new int[numFilters];
+        for (int k = 0; k < numFilters; k++) {
+            final LocalBlockFilter f = filters.get(k);
+            visitors[k] = f.newVisitor(doc);
+            if (k > 0) {
+                lag[k] = lag[k - 1] + filters.get(k - 1).getRadius()
+                        + f.getRadius();
+            }
+        }
+        filters.clear();
+
+        final List<TextBlock> blocks = doc.getTextBlocks();
+        final int n = blocks.size();
+        boolean changes = false;
+        for (int i = 0, end = n + lag[numFilters - 1]; i < end; i++) {
+            for (int k = 0; k < numFilters; k++) {
+                final int index = i - lag[k];
+                if (index >= 0 && index < n) {
+                    changes = visitors[k].visit(blocks, index) | changes;
+                }
+            }
+        }
+        return changes;
+    }
+}
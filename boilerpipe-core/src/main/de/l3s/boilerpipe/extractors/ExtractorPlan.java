@@ -0,0 +1,161 @@
+package de.l3s.boilerpipe.extractors;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import de.l3s.boilerpipe.BoilerpipeFilter;
+import de.l3s.boilerpipe.BoilerpipeProcessingException;
+import de.l3s.boilerpipe.document.TextDocument;
+
+/**
+ * Runs several extractors on the same document, sharing the work of their
+ * common stages.
+ *
+ * The stages of all extractors are arranged in a tree: extractors that are
+ * described as an {@link ExtractorPipeline} and start with the same stages
+ * share a path from the root, and diverge where their stages differ. Each
+ * shared stage runs once; where paths diverge, every branch but the last
+ * continues on a {@link TextDocument#view() view} of the intermediate
+ * document. Any other extractor is a single stage of its own.
+ *
+ * A plan is immutable and may be shared between threads.
+ */
+public final class ExtractorPlan {
+
+    private static final class Node {
+        final Object stage;
+        final List<Node> children = new ArrayList<Node>(1);
+        // indices of the extractors whose last stage this is
+        final List<Integer> ends = new ArrayList<Integer>(1);
+        // the stages from this node up to the next branch, which run as one
+        // pipeline so that local filters are fused, and the node they end at
+        Object[] run;
+        Node branch;
+
+        Node(final Object stage) {
+            this.stage = stage;
+        }
+
+        Node child(final Object stage) {
+            for (Node n : children) {
+                if (n.stage == stage) {
+                    return n;
+                }
+            }
+            final Node n = new Node(stage);
+            children.add(n);
+            return n;
+        }
+    }
+
+    private final BoilerpipeFilter[] extractors;
+    private final Node root = new Node(null);
+
+    /**
+     * Creates a plan for the given extractors.
+     *
+     * @param extractors
+     *            The extractors, in the order of their results.
+     */
+    public ExtractorPlan(final BoilerpipeFilter... extractors) {
+        this(Arrays.asList(extractors));
+    }
+
+    /**
+     * Creates a plan for the given extractors.
+     *
+     * @param extractors
+     *            The extractors, in the order of their results.
+     */
+    public ExtractorPlan(final List<? extends BoilerpipeFilter> extractors) {
+        this.extractors = extractors.toArray(new BoilerpipeFilter[extractors
+                .size()]);
+        for (int i = 0; i < this.extractors.length; i++) {
+            Node node = root;
+            for (Object stage : stagesOf(this.extractors[i])) {
+                node = node.child(stage);
+            }
+            node.ends.add(i);
+        }
+        prepare(root);
+    }
+
+    private static void prepare(final Node node) {
+        for (Node child : node.children) {
+            final List<Object> stages = new ArrayList<Object>();
+            Node n = child;
+            stages.add(n.stage);
+            while (n.ends.isEmpty() && n.children.size() == 1) {
+                n = n.children.get(0);
+                stages.add(n.stage);
+            }
+            child.run = stages.toArray();
+            child.branch = n;
+            prepare(n);
+        }
+    }
+
+    private static Object[] stagesOf(final BoilerpipeFilter extractor) {
+        if (extractor == null) {
+            throw new NullPointerException("extractor");
+        }
+        final ExtractorPipeline pipeline = extractor instanceof ExtractorBase ? ((ExtractorBase) extractor)
+                .getPipeline()
+                : null;
+        return pipeline == null ? new Object[] { extractor } : pipeline
+                .getStages();
+    }
+
+    /**
+     * Returns the number of extractors in this plan.
+     */
+    public int size() {
+        return extractors.length;
+    }
+
+    /**
+     * Returns the extractor at the given position.
+     */
+    public BoilerpipeFilter getExtractor(final int index) {
+        return extractors[index];
+    }
+
+    /**
+     * Runs all extractors on the given document, which is left unchanged.
+     *
+     * @param doc
+     *            The unprocessed document.
+     * @return One processed document per extractor, in the order the
+     *         extractors were given.
+     * @throws BoilerpipeProcessingException
+     */
+    public List<TextDocument> process(final TextDocument doc)
+            throws BoilerpipeProcessingException {
+        final TextDocument[] results = new TextDocument[extractors.length];
+        branch(root, doc.view(), results);
+        return Arrays.asList(results);
+    }
+
+    private static void branch(final Node node, final TextDocument doc,
+            final TextDocument[] results)
+            throws BoilerpipeProcessingException {
+        final int numEnds = node.ends.size();
+        final int numChildren = node.children.size();
+        for (int i = 0; i < numEnds; i++) {
+            final boolean last = i == numEnds - 1 && numChildren == 0;
+            results[node.ends.get(i)] = last ? doc : doc.view();
+        }
+        for (int i = 0; i < numChildren; i++) {
+            final boolean last = i == numChildren - 1;
+            run(node.children.get(i), last ? doc : doc.view(), results);
+        }
+    }
+
+    private static void run(final Node node, final TextDocument doc,
+            final TextDocument[] results)
+            throws BoilerpipeProcessingException {
+        ExtractorPipeline.process(node.run, 0, node.run.length, doc, true);
+        branch(node.branch, doc, results);
+    }
+}
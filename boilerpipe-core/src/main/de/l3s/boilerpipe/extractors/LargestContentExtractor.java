@@ -43,11 +43,21 @@ public final class LargestContentExtractor extends ExtractorBase {
         return INSTANCE;
     }
 
+    private static final ExtractorPipeline PIPELINE = ExtractorPipeline
+            .builder()
+            .add(NumWordsRulesClassifier.INSTANCE)
+            .add(BlockProximityFusion.MAX_DISTANCE_1)
+            .add(KeepLargestBlockFilter.INSTANCE)
+            .build();
+
     public boolean process(TextDocument doc)
             throws BoilerpipeProcessingException {
-        return NumWordsRulesClassifier.INSTANCE.process(doc)
-                | BlockProximityFusion.MAX_DISTANCE_1.process(doc)
-                | KeepLargestBlockFilter.INSTANCE.process(doc);
+        return PIPELINE.process(doc);
+    }
+
+    @Override
+    ExtractorPipeline getPipeline() {
+        return PIPELINE;
     }
 
 }
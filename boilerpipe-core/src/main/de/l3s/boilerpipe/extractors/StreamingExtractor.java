@@ -0,0 +1,270 @@
+package de.l3s.boilerpipe.extractors;
+
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+import de.l3s.boilerpipe.BoilerpipeFilter;
+import de.l3s.boilerpipe.BoilerpipeProcessingException;
+import de.l3s.boilerpipe.LocalBlockFilter;
+import de.l3s.boilerpipe.document.TextBlock;
+import de.l3s.boilerpipe.document.TextDocument;
+import de.l3s.boilerpipe.filters.english.DensityRulesClassifier;
+import de.l3s.boilerpipe.filters.english.NumWordsRulesClassifier;
+import de.l3s.boilerpipe.sax.BoilerpipeHTMLContentHandler;
+import de.l3s.boilerpipe.sax.BoilerpipeHTMLParser;
+
+/**
+ * Extracts content while the HTML is being parsed.
+ *
+ * Each block is classified by a sequence of {@link LocalBlockFilter}s as soon
+ * as the blocks they look ahead at have been parsed, and is passed to a
+ * {@link Sink} once all filters have decided on it. Only the few blocks the
+ * filters still look at are kept in memory, so the first content is available
+ * long before the end of a large page.
+ *
+ * Optionally, all blocks are kept, and a second, global filter runs on the
+ * whole document at the end, e.g. to correct the decisions made on the fly.
+ *
+ * An extractor is immutable and may be shared between threads.
+ */
+public final class StreamingExtractor {
+
+    /**
+     * Receives the content blocks, in document order.
+     */
+    public interface Sink {
+        /**
+         * Called for each block that has been classified as content. The block
+         * must not be modified.
+         *
+         * @param block
+         *            The block.
+         * @throws IOException
+         */
+        void accept(final TextBlock block) throws IOException;
+    }
+
+    /**
+     * Classifies blocks like {@link NumWordsRulesExtractor}.
+     */
+    public static final StreamingExtractor NUM_WORDS_RULES = new StreamingExtractor(
+            NumWordsRulesClassifier.INSTANCE);
+
+    /**
+     * Classifies blocks with the {@link DensityRulesClassifier}. Unlike
+     * {@link DefaultExtractor}, the blocks are not fused before.
+     */
+    public static final StreamingExtractor DENSITY_RULES = new StreamingExtractor(
+            DensityRulesClassifier.INSTANCE);
+
+    private final LocalBlockFilter[] filters;
+    private final BoilerpipeFilter secondPass;
+    // filter k processes block t - offset[k] once block t has been parsed
+    private final int[] offset;
+
+    /**
+     * Creates an extractor that runs the given filters, in the given order.
+     *
+     * @param filters
+     *            The filters.
+     */
+    public StreamingExtractor(final LocalBlockFilter... filters) {
+        this(filters.clone(), null);
+    }
+
+    private StreamingExtractor(final LocalBlockFilter[] filters,
+            final BoilerpipeFilter secondPass) {
+        if (filters.length == 0) {
+            throw new IllegalArgumentException("No filters");
+        }
+        this.filters = filters;
+        this.secondPass = secondPass;
+
+        // like ExtractorPipeline, but the first filter waits for the blocks it
+        // looks ahead at, too
+        offset = new int[filters.length];
+        offset[0] = filters[0].getRadius();
+        for (int k = 1; k < filters.length; k++) {
+            offset[k] = offset[k - 1] + filters[k - 1].getRadius()
+                    + filters[k].getRadius();
+        }
+    }
+
+    /**
+     * Returns an extractor that additionally keeps all blocks and runs the
+     * given filter on the whole document once it has been parsed.
+     *
+     * @param filter
+     *            The global filter.
+     * @return The new extractor.
+     */
+    public StreamingExtractor withSecondPass(final BoilerpipeFilter filter) {
+        return new StreamingExtractor(filters, filter);
+    }
+
+    /**
+     * Parses the given HTML and passes the content blocks to the given sink
+     * while parsing.
+     *
+     * @param is
+     *            The HTML.
+     * @param sink
+     *            The sink.
+     * @return The document after the second pass, or <code>null</code> if
+     *         this extractor has none.
+     * @throws BoilerpipeProcessingException
+     */
+    public TextDocument process(final InputSource is, final Sink sink)
+            throws BoilerpipeProcessingException {
+        final Handler handler = new Handler(sink);
+        final BoilerpipeHTMLParser parser = new BoilerpipeHTMLParser(handler);
+        try {
+            parser.parse(is);
+            handler.finish();
+        } catch (IOException e) {
+            throw new BoilerpipeProcessingException(e);
+        } catch (SAXException e) {
+            throw unwrap(e);
+        } catch (RuntimeException e) {
+            throw unwrap(e);
+        }
+
+        if (secondPass == null) {
+            return null;
+        }
+        final TextDocument doc = new TextDocument(handler.getTitle(),
+                new ArrayList<TextBlock>(handler.window.blocks));
+        secondPass.process(doc);
+        return doc;
+    }
+
+    private static BoilerpipeProcessingException unwrap(final Exception e) {
+        for (Throwable t = e; t != null; t = t instanceof SAXException ? ((SAXException) t)
+                .getException()
+                : t.getCause()) {
+            if (t instanceof Abort) {
+                final Throwable cause = t.getCause();
+                return cause instanceof BoilerpipeProcessingException ? (BoilerpipeProcessingException) cause
+                        : new BoilerpipeProcessingException(cause);
+            }
+        }
+        if (e instanceof RuntimeException) {
+            throw (RuntimeException) e;
+        }
+        return new BoilerpipeProcessingException(e);
+    }
+
+    /**
+     * Carries an exception of a filter or sink through the parser.
+     */
+    private static final class Abort extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        Abort(final Exception cause) {
+            super(cause);
+        }
+    }
+
+    /**
+     * The blocks parsed so far, of which the first <code>base</code> have
+     * been dropped.
+     */
+    private static final class Window extends AbstractList<TextBlock>
+            implements RandomAccess {
+        final List<TextBlock> blocks = new ArrayList<TextBlock>();
+        int base = 0;
+
+        @Override
+        public TextBlock get(final int index) {
+            if (index < base) {
+                throw new IndexOutOfBoundsException("Block " + index
+                        + " has already been dropped");
+            }
+            return blocks.get(index - base);
+        }
+
+        @Override
+        public int size() {
+            return base + blocks.size();
+        }
+
+        @Override
+        public boolean add(final TextBlock tb) {
+            return blocks.add(tb);
+        }
+
+        void dropBefore(final int index) {
+            // drop in batches, to avoid shifting the list for each block
+            if (index - base >= 64) {
+                blocks.subList(0, index - base).clear();
+                base = index;
+            }
+        }
+    }
+
+    private final class Handler extends BoilerpipeHTMLContentHandler {
+        private final Sink sink;
+        final Window window = new Window();
+        private LocalBlockFilter.Visitor[] visitors;
+
+        Handler(final Sink sink) {
+            this.sink = sink;
+        }
+
+        @Override
+        protected void emitTextBlock(final TextBlock tb) {
+            if (visitors == null) {
+                final TextDocument doc = new TextDocument(getTitle(), window);
+                visitors = new LocalBlockFilter.Visitor[filters.length];
+                for (int k = 0; k < filters.length; k++) {
+                    visitors[k] = filters[k].newVisitor(doc);
+                }
+            }
+            window.add(tb);
+            try {
+                step(window.size() - 1);
+            } catch (BoilerpipeProcessingException e) {
+                throw new Abort(e);
+            } catch (IOException e) {
+                throw new Abort(e);
+            }
+        }
+
+        void finish() throws BoilerpipeProcessingException, IOException {
+            final int n = window.size();
+            for (int t = n, end = n + offset[filters.length - 1]; t < end; t++) {
+                step(t);
+            }
+        }
+
+        private void step(final int t) throws BoilerpipeProcessingException,
+                IOException {
+            final int n = window.size();
+            final int last = filters.length - 1;
+            for (int k = 0; k <= last; k++) {
+                final int index = t - offset[k];
+                if (index >= 0 && index < n) {
+                    visitors[k].visit(window, index);
+                }
+            }
+
+            // the last filter has decided on this block
+            final int decided = t - offset[last];
+            if (decided >= 0 && decided < n) {
+                final TextBlock tb = window.get(decided);
+                if (tb.isContent()) {
+                    sink.accept(tb);
+                }
+            }
+            if (secondPass == null) {
+                window.dropBefore(decided + 1 - filters[last].getRadius());
+            }
+        }
+    }
+}
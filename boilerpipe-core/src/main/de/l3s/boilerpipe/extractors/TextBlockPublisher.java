@@ -0,0 +1,49 @@
+package de.l3s.boilerpipe.extractors;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+
+import org.xml.sax.InputSource;
+
+import de.l3s.boilerpipe.document.TextBlock;
+
+/**
+ * Publishes the content blocks of one HTML document as they are extracted by
+ * a {@link StreamingExtractor}.
+ *
+ * Parsing runs on the given {@link Executor}, and pauses whenever the
+ * subscriber has not requested more blocks. The publisher accepts a single
+ * subscriber.
+ */
+public final class TextBlockPublisher extends BlockingPublisher<TextBlock> {
+    private final InputSource is;
+    private final StreamingExtractor extractor;
+
+    /**
+     * Creates a publisher for the given HTML.
+     *
+     * @param is
+     *            The HTML.
+     * @param extractor
+     *            The extractor that decides which blocks are content.
+     * @param executor
+     *            The executor that runs the parser.
+     */
+    public TextBlockPublisher(final InputSource is,
+            final StreamingExtractor extractor, final Executor executor) {
+        super(executor);
+        this.is = is;
+        this.extractor = extractor;
+    }
+
+    @Override
+    void produce(final Emitter<TextBlock> emitter) throws Exception {
+        extractor.process(is, new StreamingExtractor.Sink() {
+            public void accept(final TextBlock block) throws IOException {
+                if (!emitter.emit(block)) {
+                    throw new IOException("Subscription cancelled");
+                }
+            }
+        });
+    }
+}
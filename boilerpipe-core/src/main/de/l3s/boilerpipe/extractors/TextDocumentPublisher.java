@@ -0,0 +1,53 @@
+package de.l3s.boilerpipe.extractors;
+
+import java.util.Iterator;
+import java.util.concurrent.Executor;
+
+import de.l3s.boilerpipe.BoilerpipeExtractor;
+import de.l3s.boilerpipe.document.TextDocument;
+import de.l3s.boilerpipe.sax.BoilerpipeSAXInput;
+import de.l3s.boilerpipe.sax.InputSourceable;
+
+/**
+ * Publishes the processed {@link TextDocument}s of a batch of HTML documents,
+ * in order.
+ *
+ * Documents are parsed and processed on the given {@link Executor}, one at a
+ * time, and only when the subscriber has requested another result, so the next
+ * input is not read before it is needed. The publisher accepts a single
+ * subscriber; if a document fails, the subscriber receives the error and no
+ * further documents.
+ */
+public final class TextDocumentPublisher extends BlockingPublisher<TextDocument> {
+    private final Iterator<? extends InputSourceable> inputs;
+    private final BoilerpipeExtractor extractor;
+
+    /**
+     * Creates a publisher for the given documents.
+     *
+     * @param inputs
+     *            The HTML documents.
+     * @param extractor
+     *            The extractor that processes each document.
+     * @param executor
+     *            The executor that runs the parser and extractor.
+     */
+    public TextDocumentPublisher(final Iterator<? extends InputSourceable> inputs,
+            final BoilerpipeExtractor extractor, final Executor executor) {
+        super(executor);
+        this.inputs = inputs;
+        this.extractor = extractor;
+    }
+
+    @Override
+    void produce(final Emitter<TextDocument> emitter) throws Exception {
+        while (emitter.awaitDemand() && inputs.hasNext()) {
+            final TextDocument doc = new BoilerpipeSAXInput(inputs.next()
+                    .toInputSource()).getTextDocument();
+            extractor.process(doc);
+            if (!emitter.emit(doc)) {
+                return;
+            }
+        }
+    }
+}
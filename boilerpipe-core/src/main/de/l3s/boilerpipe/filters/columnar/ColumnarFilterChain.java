@@ -0,0 +1,68 @@
+package de.l3s.boilerpipe.filters.columnar;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import de.l3s.boilerpipe.BoilerpipeFilter;
+import de.l3s.boilerpipe.BoilerpipeProcessingException;
+import de.l3s.boilerpipe.ColumnarFilter;
+import de.l3s.boilerpipe.document.ColumnarTextDocument;
+import de.l3s.boilerpipe.document.TextDocument;
+
+/**
+ * Runs a sequence of filters on one {@link ColumnarTextDocument}, so that the
+ * columns are built only once for all of them.
+ *
+ * Filters that implement {@link ColumnarFilter} run on the columns, all other
+ * filters through a {@link RowFilterAdapter}. The chain itself can be used as a
+ * regular {@link BoilerpipeFilter}.
+ */
+public final class ColumnarFilterChain implements BoilerpipeFilter, ColumnarFilter {
+    private final List<ColumnarFilter> filters;
+
+    /**
+     * Creates a chain of the given filters, each of which must be a
+     * {@link BoilerpipeFilter} or a {@link ColumnarFilter}.
+     *
+     * @param filters
+     *            The filters, in the order they are run.
+     */
+    public ColumnarFilterChain(final Object... filters) {
+        final List<ColumnarFilter> list = new ArrayList<ColumnarFilter>(filters.length);
+        for (Object f : filters) {
+            if (f instanceof ColumnarFilter) {
+                list.add((ColumnarFilter) f);
+            } else if (f instanceof BoilerpipeFilter) {
+                list.add(new RowFilterAdapter((BoilerpipeFilter) f));
+            } else {
+                throw new IllegalArgumentException("Not a filter: " + f);
+            }
+        }
+        this.filters = Collections.unmodifiableList(list);
+    }
+
+    /**
+     * Returns the filters of this chain.
+     */
+    public List<ColumnarFilter> getFilters() {
+        return filters;
+    }
+
+    public boolean process(final TextDocument doc)
+            throws BoilerpipeProcessingException {
+        final ColumnarTextDocument cdoc = new ColumnarTextDocument(doc);
+        final boolean changes = process(cdoc);
+        cdoc.getTextDocument();
+        return changes;
+    }
+
+    public boolean process(final ColumnarTextDocument doc)
+            throws BoilerpipeProcessingException {
+        boolean changes = false;
+        for (ColumnarFilter f : filters) {
+            changes = f.process(doc) | changes;
+        }
+        return changes;
+    }
+}
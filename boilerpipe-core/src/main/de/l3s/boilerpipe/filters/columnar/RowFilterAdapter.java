@@ -0,0 +1,40 @@
+package de.l3s.boilerpipe.filters.columnar;
+
+import de.l3s.boilerpipe.BoilerpipeFilter;
+import de.l3s.boilerpipe.BoilerpipeProcessingException;
+import de.l3s.boilerpipe.ColumnarFilter;
+import de.l3s.boilerpipe.document.ColumnarTextDocument;
+
+/**
+ * Runs a regular {@link BoilerpipeFilter} on a {@link ColumnarTextDocument}.
+ *
+ * Pending changes are written back to the blocks before the filter runs, and
+ * the columns are reloaded afterwards, whether or not the filter reports any
+ * changes.
+ */
+public final class RowFilterAdapter implements ColumnarFilter {
+    private final BoilerpipeFilter filter;
+
+    public RowFilterAdapter(final BoilerpipeFilter filter) {
+        this.filter = filter;
+    }
+
+    /**
+     * Returns the adapted filter.
+     */
+    public BoilerpipeFilter getFilter() {
+        return filter;
+    }
+
+    public boolean process(final ColumnarTextDocument doc)
+            throws BoilerpipeProcessingException {
+        final boolean changes = filter.process(doc.getTextDocument());
+        // some filters change labels without reporting it
+        doc.reload();
+        return changes;
+    }
+
+    public String toString() {
+        return "RowFilterAdapter{" + filter + "}";
+    }
+}
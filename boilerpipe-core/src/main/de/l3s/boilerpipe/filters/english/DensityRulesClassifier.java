@@ -20,10 +20,13 @@ package de.l3s.boilerpipe.filters.english;
 import java.util.List;
 import java.util.ListIterator;
 
-import de.l3s.boilerpipe.BoilerpipeFilter;
 import de.l3s.boilerpipe.BoilerpipeProcessingException;
+import de.l3s.boilerpipe.ColumnarFilter;
+import de.l3s.boilerpipe.LocalBlockFilter;
+import de.l3s.boilerpipe.document.ColumnarTextDocument;
 import de.l3s.boilerpipe.document.TextBlock;
 import de.l3s.boilerpipe.document.TextDocument;
+import de.l3s.boilerpipe.filters.columnar.RowFilterAdapter;
 
 /**
  * Classifies {@link TextBlock}s as content/not-content through rules that have
@@ -33,8 +36,7 @@ import de.l3s.boilerpipe.document.TextDocument;
  * 
  * @author Christian Kohlschütter
  */
-public class DensityRulesClassifier implements
-        BoilerpipeFilter {
+public class DensityRulesClassifier implements LocalBlockFilter, ColumnarFilter {
     public static final DensityRulesClassifier INSTANCE = new DensityRulesClassifier();
 
     /**
@@ -77,15 +79,63 @@ public class DensityRulesClassifier implements
         return hasChanges;
     }
 
+    public int getRadius() {
+        return 1;
+    }
+
+    public Visitor newVisitor(final TextDocument doc) {
+        return new Visitor() {
+            public boolean visit(final List<TextBlock> blocks, final int index) {
+                return classify(
+                        index == 0 ? TextBlock.EMPTY_START : blocks.get(index - 1),
+                        blocks.get(index),
+                        index + 1 < blocks.size() ? blocks.get(index + 1)
+                                : TextBlock.EMPTY_START);
+            }
+        };
+    }
+
+    /**
+     * Classifies all blocks on the columns of the document. Subclasses that
+     * override {@link #classify(TextBlock, TextBlock, TextBlock)} are run on
+     * the blocks instead.
+     */
+    public boolean process(ColumnarTextDocument doc)
+            throws BoilerpipeProcessingException {
+        if (getClass() != DensityRulesClassifier.class) {
+            return new RowFilterAdapter(this).process(doc);
+        }
+        final int n = doc.size();
+        final float[] textDensities = doc.getTextDensities();
+        final float[] linkDensities = doc.getLinkDensities();
+
+        // the blocks before the first and after the last block are empty
+        boolean hasChanges = false;
+        for (int i = 0; i < n; i++) {
+            final boolean isContent = isContent(
+                    i == 0 ? 0 : linkDensities[i - 1], i == 0 ? 0 : textDensities[i - 1],
+                    linkDensities[i], textDensities[i], i + 1 < n ? textDensities[i + 1] : 0);
+            hasChanges = doc.setIsContent(i, isContent) | hasChanges;
+        }
+        return hasChanges;
+    }
+
     protected boolean classify(final TextBlock prev, final TextBlock curr,
             final TextBlock next) {
+        return curr.setIsContent(isContent(prev.getLinkDensity(), prev.getTextDensity(),
+                curr.getLinkDensity(), curr.getTextDensity(), next.getTextDensity()));
+    }
+
+    private static boolean isContent(final float prevLinkDensity,
+            final float prevTextDensity, final float currLinkDensity,
+            final float currTextDensity, final float nextTextDensity) {
         final boolean isContent;
 
-        if (curr.getLinkDensity() <= 0.333333) {
-            if (prev.getLinkDensity() <= 0.555556) {
-                if (curr.getTextDensity() <= 9) {
-                    if (next.getTextDensity() <= 10) {
-                        if (prev.getTextDensity() <= 4) {
+        if (currLinkDensity <= 0.333333) {
+            if (prevLinkDensity <= 0.555556) {
+                if (currTextDensity <= 9) {
+                    if (nextTextDensity <= 10) {
+                        if (prevTextDensity <= 4) {
                             isContent = false;
                         } else {
                             isContent = true;
@@ -94,14 +144,14 @@ public class DensityRulesClassifier implements
                         isContent = true;
                     }
                 } else {
-                    if (next.getTextDensity() == 0) {
+                    if (nextTextDensity == 0) {
                         isContent = false;
                     } else {
                         isContent = true;
                     }
                 }
             } else {
-                if (next.getTextDensity() <= 11) {
+                if (nextTextDensity <= 11) {
                     isContent = false;
                 } else {
                     isContent = true;
@@ -111,7 +161,7 @@ public class DensityRulesClassifier implements
             isContent = false;
         }
 
-        return curr.setIsContent(isContent);
+        return isContent;
     }
 
 }
@@ -17,13 +17,17 @@
  */
 package de.l3s.boilerpipe.filters.english;
 
+import java.util.BitSet;
 import java.util.Iterator;
 
 import de.l3s.boilerpipe.BoilerpipeFilter;
 import de.l3s.boilerpipe.BoilerpipeProcessingException;
+import de.l3s.boilerpipe.ColumnarFilter;
+import de.l3s.boilerpipe.document.ColumnarTextDocument;
 import de.l3s.boilerpipe.document.TextBlock;
 import de.l3s.boilerpipe.document.TextDocument;
 import de.l3s.boilerpipe.labels.DefaultLabels;
+import de.l3s.boilerpipe.labels.LabelRegistry;
 
 /**
  * Marks all blocks as "non-content" that occur after blocks that have been
@@ -34,7 +38,10 @@ import de.l3s.boilerpipe.labels.DefaultLabels;
  * @author Christian Kohlschütter
  * @see TerminatingBlocksFinder
  */
-public final class IgnoreBlocksAfterContentFilter extends HeuristicFilterBase implements BoilerpipeFilter {
+public final class IgnoreBlocksAfterContentFilter extends HeuristicFilterBase implements BoilerpipeFilter, ColumnarFilter {
+    private static final int END_OF_TEXT = LabelRegistry.INSTANCE
+            .lookup(DefaultLabels.INDICATES_END_OF_TEXT);
+
     public static final IgnoreBlocksAfterContentFilter DEFAULT_INSTANCE = new IgnoreBlocksAfterContentFilter(
             60);
     public static final IgnoreBlocksAfterContentFilter INSTANCE_200 = new IgnoreBlocksAfterContentFilter(
@@ -61,8 +68,7 @@ public final class IgnoreBlocksAfterContentFilter extends HeuristicFilterBase im
         for (Iterator<TextBlock> it = doc.getTextBlocks().iterator(); it.hasNext();) {
             TextBlock block = it.next();
 
-            final boolean endOfText = block
-                    .hasLabel(DefaultLabels.INDICATES_END_OF_TEXT);
+            final boolean endOfText = block.hasLabel(END_OF_TEXT);
             if (block.isContent()) {
                 numWords += getNumFullTextWords(block);
             }
@@ -76,5 +82,40 @@ public final class IgnoreBlocksAfterContentFilter extends HeuristicFilterBase im
         }
 
         return changes;
-    }    
+    }
+
+    /**
+     * Same as {@link #process(TextDocument)}, but only visits the content
+     * blocks up to the first sufficient end-of-text mark.
+     */
+    public boolean process(ColumnarTextDocument doc)
+            throws BoilerpipeProcessingException {
+        final BitSet endsOfText = doc.getLabelIndex().getBlocks(
+                DefaultLabels.INDICATES_END_OF_TEXT);
+        if (endsOfText == null) {
+            return false;
+        }
+        final BitSet content = doc.getContentBits();
+        final int[] numWords = doc.getNumWords();
+        final float[] textDensities = doc.getTextDensities();
+
+        int numFullTextWords = 0;
+        int from = 0;
+        for (int end = endsOfText.nextSetBit(0); end >= 0; end = endsOfText
+                .nextSetBit(end + 1)) {
+            for (int i = content.nextSetBit(from); i >= 0 && i <= end; i = content
+                    .nextSetBit(i + 1)) {
+                // see HeuristicFilterBase#getNumFullTextWords(TextBlock)
+                if (textDensities[i] >= 9) {
+                    numFullTextWords += numWords[i];
+                }
+            }
+            from = end + 1;
+            if (numFullTextWords >= minNumWords) {
+                content.clear(end, doc.size());
+                return true;
+            }
+        }
+        return false;
+    }
 }
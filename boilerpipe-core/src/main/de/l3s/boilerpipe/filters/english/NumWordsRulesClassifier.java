@@ -20,10 +20,13 @@ package de.l3s.boilerpipe.filters.english;
 import java.util.List;
 import java.util.ListIterator;
 
-import de.l3s.boilerpipe.BoilerpipeFilter;
 import de.l3s.boilerpipe.BoilerpipeProcessingException;
+import de.l3s.boilerpipe.ColumnarFilter;
+import de.l3s.boilerpipe.LocalBlockFilter;
+import de.l3s.boilerpipe.document.ColumnarTextDocument;
 import de.l3s.boilerpipe.document.TextBlock;
 import de.l3s.boilerpipe.document.TextDocument;
+import de.l3s.boilerpipe.filters.columnar.RowFilterAdapter;
 
 /**
  * Classifies {@link TextBlock}s as content/not-content through rules that have
@@ -33,7 +36,7 @@ import de.l3s.boilerpipe.document.TextDocument;
  * 
  * @author Christian Kohlschütter
  */
-public class NumWordsRulesClassifier implements BoilerpipeFilter {
+public class NumWordsRulesClassifier implements LocalBlockFilter, ColumnarFilter {
     public static final NumWordsRulesClassifier INSTANCE = new NumWordsRulesClassifier();
 
     /**
@@ -76,15 +79,63 @@ public class NumWordsRulesClassifier implements BoilerpipeFilter {
         return hasChanges;
     }
 
+    public int getRadius() {
+        return 1;
+    }
+
+    public Visitor newVisitor(final TextDocument doc) {
+        return new Visitor() {
+            public boolean visit(final List<TextBlock> blocks, final int index) {
+                return classify(
+                        index == 0 ? TextBlock.EMPTY_START : blocks.get(index - 1),
+                        blocks.get(index),
+                        index + 1 < blocks.size() ? blocks.get(index + 1)
+                                : TextBlock.EMPTY_START);
+            }
+        };
+    }
+
+    /**
+     * Classifies all blocks on the columns of the document. Subclasses that
+     * override {@link #classify(TextBlock, TextBlock, TextBlock)} are run on
+     * the blocks instead.
+     */
+    public boolean process(ColumnarTextDocument doc)
+            throws BoilerpipeProcessingException {
+        if (getClass() != NumWordsRulesClassifier.class) {
+            return new RowFilterAdapter(this).process(doc);
+        }
+        final int n = doc.size();
+        final int[] numWords = doc.getNumWords();
+        final float[] linkDensities = doc.getLinkDensities();
+
+        // the blocks before the first and after the last block are empty
+        boolean hasChanges = false;
+        for (int i = 0; i < n; i++) {
+            final boolean isContent = isContent(
+                    i == 0 ? 0 : linkDensities[i - 1], i == 0 ? 0 : numWords[i - 1],
+                    linkDensities[i], numWords[i], i + 1 < n ? numWords[i + 1] : 0);
+            hasChanges = doc.setIsContent(i, isContent) | hasChanges;
+        }
+        return hasChanges;
+    }
+
     protected boolean classify(final TextBlock prev, final TextBlock curr,
             final TextBlock next) {
+        return curr.setIsContent(isContent(prev.getLinkDensity(), prev.getNumWords(),
+                curr.getLinkDensity(), curr.getNumWords(), next.getNumWords()));
+    }
+
+    private static boolean isContent(final float prevLinkDensity,
+            final int prevNumWords, final float currLinkDensity,
+            final int currNumWords, final int nextNumWords) {
         final boolean isContent;
 
-        if (curr.getLinkDensity() <= 0.333333) {
-            if (prev.getLinkDensity() <= 0.555556) {
-                if (curr.getNumWords() <= 16) {
-                    if (next.getNumWords() <= 15) {
-                        if (prev.getNumWords() <= 4) {
+        if (currLinkDensity <= 0.333333) {
+            if (prevLinkDensity <= 0.555556) {
+                if (currNumWords <= 16) {
+                    if (nextNumWords <= 15) {
+                        if (prevNumWords <= 4) {
                             isContent = false;
                         } else {
                             isContent = true;
@@ -96,8 +147,8 @@ public class NumWordsRulesClassifier implements BoilerpipeFilter {
                     isContent = true;
                 }
             } else {
-                if (curr.getNumWords() <= 40) {
-                    if (next.getNumWords() <= 17) {
+                if (currNumWords <= 40) {
+                    if (nextNumWords <= 17) {
                         isContent = false;
                     } else {
                         isContent = true;
@@ -110,7 +161,7 @@ public class NumWordsRulesClassifier implements BoilerpipeFilter {
             isContent = false;
         }
 
-        return curr.setIsContent(isContent);
+        return isContent;
     }
 
 }
@@ -17,8 +17,10 @@
  */
 package de.l3s.boilerpipe.filters.english;
 
-import de.l3s.boilerpipe.BoilerpipeFilter;
+import java.util.List;
+
 import de.l3s.boilerpipe.BoilerpipeProcessingException;
+import de.l3s.boilerpipe.LocalBlockFilter;
 import de.l3s.boilerpipe.document.TextBlock;
 import de.l3s.boilerpipe.document.TextDocument;
 import de.l3s.boilerpipe.labels.DefaultLabels;
@@ -31,7 +33,7 @@ import de.l3s.boilerpipe.labels.DefaultLabels;
  * @author Christian Kohlschütter
  * @see IgnoreBlocksAfterContentFilter
  */
-public class TerminatingBlocksFinder implements BoilerpipeFilter {
+public class TerminatingBlocksFinder implements LocalBlockFilter {
 	public static final TerminatingBlocksFinder INSTANCE = new TerminatingBlocksFinder();
 
 	/**
@@ -50,36 +52,7 @@ public class TerminatingBlocksFinder implements BoilerpipeFilter {
 		// long t = System.currentTimeMillis();
 
 		for (TextBlock tb : doc.getTextBlocks()) {
-			final int numWords = tb.getNumWords();
-			if (numWords < 15) {
-				final String text = tb.getText().trim();
-				final int len = text.length();
-				if (len >= 8) {
-					final String textLC = text.toLowerCase();
-					if (textLC.startsWith("comments")
-							|| startsWithNumber(textLC, len, " comments",
-									" users responded in")
-							|| textLC.startsWith("© reuters")
-							|| textLC.startsWith("please rate this")
-							|| textLC.startsWith("post a comment")
-							|| textLC.contains("what you think...")
-							|| textLC.contains("add your comment")
-							|| textLC.contains("add comment")
-							|| textLC.contains("reader views")
-							|| textLC.contains("have your say")
-							|| textLC.contains("reader comments")
-							|| textLC.contains("rätta artikeln")
-							|| textLC
-									.equals("thanks for your comments - this feedback is now closed")) {
-						tb.addLabel(DefaultLabels.INDICATES_END_OF_TEXT);
-						changes = true;
-					}
-				} else if(tb.getLinkDensity() == 1.0) {
-					if(text.equals("Comment")) {
-						tb.addLabel(DefaultLabels.INDICATES_END_OF_TEXT);
-					}
-				}
-			}
+			changes = processBlock(tb) | changes;
 		}
 
 		// timeSpent += System.currentTimeMillis() - t;
@@ -87,6 +60,52 @@ public class TerminatingBlocksFinder implements BoilerpipeFilter {
 		return changes;
 	}
 
+	public int getRadius() {
+		return 0;
+	}
+
+	public Visitor newVisitor(final TextDocument doc) {
+		return new Visitor() {
+			public boolean visit(final List<TextBlock> blocks, final int index) {
+				return processBlock(blocks.get(index));
+			}
+		};
+	}
+
+	private boolean processBlock(final TextBlock tb) {
+		final int numWords = tb.getNumWords();
+		if (numWords < 15) {
+			final String text = tb.getText().trim();
+			final int len = text.length();
+			if (len >= 8) {
+				final String textLC = text.toLowerCase();
+				if (textLC.startsWith("comments")
+						|| startsWithNumber(textLC, len, " comments",
+								" users responded in")
+						|| textLC.startsWith("© reuters")
+						|| textLC.startsWith("please rate this")
+						|| textLC.startsWith("post a comment")
+						|| textLC.contains("what you think...")
+						|| textLC.contains("add your comment")
+						|| textLC.contains("add comment")
+						|| textLC.contains("reader views")
+						|| textLC.contains("have your say")
+						|| textLC.contains("reader comments")
+						|| textLC.contains("rätta artikeln")
+						|| textLC
+								.equals("thanks for your comments - this feedback is now closed")) {
+					tb.addLabel(DefaultLabels.INDICATES_END_OF_TEXT);
+					return true;
+				}
+			} else if(tb.getLinkDensity() == 1.0) {
+				if(text.equals("Comment")) {
+					tb.addLabel(DefaultLabels.INDICATES_END_OF_TEXT);
+				}
+			}
+		}
+		return false;
+	}
+
 	/**
 	 * Checks whether the given text t starts with a sequence of digits,
 	 * followed by one of the given strings.
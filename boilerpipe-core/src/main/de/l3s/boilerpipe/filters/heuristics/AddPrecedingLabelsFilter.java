@@ -25,6 +25,7 @@ import de.l3s.boilerpipe.BoilerpipeFilter;
 import de.l3s.boilerpipe.BoilerpipeProcessingException;
 import de.l3s.boilerpipe.document.TextBlock;
 import de.l3s.boilerpipe.document.TextDocument;
+import de.l3s.boilerpipe.labels.MarkupPath;
 
 /**
  * Adds the labels of the preceding block to the current block, optionally adding a prefix.
@@ -78,6 +79,16 @@ public final class AddPrecedingLabelsFilter implements BoilerpipeFilter {
             	}
 	            changes = true;
             }
+            for(MarkupPath path : block.getMarkupPaths()) {
+            	if(labelPrefix.length() == 0) {
+            		blockBelow.addMarkupPath(path);
+            	} else {
+            		for(String l : path.getLabels()) {
+            			blockBelow.addLabel(labelPrefix+l);
+            		}
+            	}
+	            changes = true;
+            }
             blockBelow = block;
         }
 
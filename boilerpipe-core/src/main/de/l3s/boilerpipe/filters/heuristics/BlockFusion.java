@@ -0,0 +1,111 @@
+package de.l3s.boilerpipe.filters.heuristics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+
+import de.l3s.boilerpipe.document.TextBlock;
+
+/**
+ * Merges adjacent {@link TextBlock}s that satisfy a {@link MergePredicate}.
+ *
+ * The blocks are visited once; the remaining blocks are moved to the front of
+ * the list as they are found, and the list is truncated at the end. Fusing a
+ * list of n blocks thus takes O(n) time instead of the O(n²) caused by
+ * removing each merged block from an {@link ArrayList}.
+ */
+public final class BlockFusion {
+
+    /**
+     * Decides whether a block is merged into the block that precedes it.
+     */
+    public interface MergePredicate {
+        /**
+         * @param prev
+         *            The preceding block, possibly the result of earlier
+         *            merges.
+         * @param block
+         *            The block.
+         * @return <code>true</code> if <code>block</code> should be merged into
+         *         <code>prev</code>.
+         */
+        boolean shouldMerge(TextBlock prev, TextBlock block);
+    }
+
+    private BlockFusion() {
+    }
+
+    /**
+     * Merges each block into its predecessor if the predicate allows it. A
+     * block that absorbed others is compared with the next block, but not
+     * again with its own predecessor.
+     *
+     * @param blocks
+     *            The blocks, which are modified in place.
+     * @param predicate
+     *            The merge predicate.
+     * @return <code>true</code> if any blocks have been merged.
+     */
+    public static boolean fuse(final List<TextBlock> blocks,
+            final MergePredicate predicate) {
+        return fuse(blocks, predicate, false);
+    }
+
+    /**
+     * Merges adjacent blocks until the predicate does not allow any further
+     * merge. Whenever a block has absorbed another one, it is compared with its
+     * predecessor again; this gives the same result as repeating
+     * {@link #fuse(List, MergePredicate)} until nothing changes, in a single
+     * pass.
+     *
+     * @param blocks
+     *            The blocks, which are modified in place.
+     * @param predicate
+     *            The merge predicate.
+     * @return <code>true</code> if any blocks have been merged.
+     */
+    public static boolean fuseRepeatedly(final List<TextBlock> blocks,
+            final MergePredicate predicate) {
+        return fuse(blocks, predicate, true);
+    }
+
+    private static boolean fuse(final List<TextBlock> blocks,
+            final MergePredicate predicate, final boolean repeatedly) {
+        final int n = blocks.size();
+        if (n < 2) {
+            return false;
+        }
+        final List<TextBlock> list = blocks instanceof RandomAccess ? blocks
+                : new ArrayList<TextBlock>(blocks);
+
+        // list[0..w) holds the remaining blocks
+        int w = 1;
+        for (int r = 1; r < n; r++) {
+            final TextBlock block = list.get(r);
+            final TextBlock prev = list.get(w - 1);
+            if (!predicate.shouldMerge(prev, block)) {
+                list.set(w++, block);
+                continue;
+            }
+            prev.mergeNext(block);
+            if (repeatedly) {
+                while (w > 1
+                        && predicate.shouldMerge(list.get(w - 2), list.get(w - 1))) {
+                    list.get(w - 2).mergeNext(list.get(w - 1));
+                    w--;
+                }
+            }
+        }
+
+        if (w == n) {
+            return false;
+        }
+        if (list == blocks) {
+            blocks.subList(w, n).clear();
+        } else {
+            blocks.clear();
+            blocks.addAll(list.subList(0, w));
+        }
+        return true;
+    }
+}
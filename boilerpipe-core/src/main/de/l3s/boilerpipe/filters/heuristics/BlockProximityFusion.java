@@ -17,9 +17,6 @@
  */
 package de.l3s.boilerpipe.filters.heuristics;
 
-import java.util.Iterator;
-import java.util.List;
-
 import de.l3s.boilerpipe.BoilerpipeFilter;
 import de.l3s.boilerpipe.BoilerpipeProcessingException;
 import de.l3s.boilerpipe.document.TextBlock;
@@ -31,7 +28,8 @@ import de.l3s.boilerpipe.document.TextDocument;
  * 
  * @author Christian Kohlschütter
  */
-public final class BlockProximityFusion implements BoilerpipeFilter {
+public final class BlockProximityFusion implements BoilerpipeFilter,
+        BlockFusion.MergePredicate {
 
     private final int maxBlocksDistance;
 
@@ -63,66 +61,25 @@ public final class BlockProximityFusion implements BoilerpipeFilter {
 
     public boolean process(TextDocument doc)
             throws BoilerpipeProcessingException {
-        List<TextBlock> textBlocks = doc.getTextBlocks();
-        if (textBlocks.size() < 2) {
+        return BlockFusion.fuse(doc.getTextBlocks(), this);
+    }
+
+    public boolean shouldMerge(final TextBlock prevBlock, final TextBlock block) {
+        if (!block.isContent()) {
             return false;
         }
-
-        boolean changes = false;
-        TextBlock prevBlock;
-
-        int offset;
-        if (contentOnly) {
-            prevBlock = null;
-            offset = 0;
-            for (TextBlock tb : textBlocks) {
-                offset++;
-                if (tb.isContent()) {
-                    prevBlock = tb;
-                    break;
-                }
-            }
-            if (prevBlock == null) {
-                return false;
-            }
-        } else {
-            prevBlock = textBlocks.get(0);
-            offset = 1;
+        int diffBlocks = block.getOffsetBlocksStart()
+                - prevBlock.getOffsetBlocksEnd() - 1;
+        if (diffBlocks > maxBlocksDistance) {
+            return false;
         }
-
-        for (Iterator<TextBlock> it = textBlocks.listIterator(offset); it
-                .hasNext();) {
-            TextBlock block = it.next();
-            if (!block.isContent()) {
-                prevBlock = block;
-                continue;
-            }
-            int diffBlocks = block.getOffsetBlocksStart()
-                    - prevBlock.getOffsetBlocksEnd() - 1;
-            if (diffBlocks <= maxBlocksDistance) {
-                boolean ok = true;
-                if (contentOnly) {
-                    if (!prevBlock.isContent()
-                            || !block.isContent()) {
-                        ok = false;
-                    }
-                }
-                if(ok && sameTagLevelOnly && prevBlock.getTagLevel() != block.getTagLevel()) {
-                	ok = false;
-                }
-                if (ok) {
-                    prevBlock.mergeNext(block);
-                    it.remove();
-                    changes = true;
-                } else {
-                    prevBlock = block;
-                }
-            } else {
-                prevBlock = block;
-            }
+        if (contentOnly && !prevBlock.isContent()) {
+            return false;
         }
-
-        return changes;
+        if (sameTagLevelOnly && prevBlock.getTagLevel() != block.getTagLevel()) {
+            return false;
+        }
+        return true;
     }
 
 }
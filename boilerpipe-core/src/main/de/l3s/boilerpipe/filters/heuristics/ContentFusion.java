@@ -17,16 +17,14 @@
  */
 package de.l3s.boilerpipe.filters.heuristics;
 
-import java.util.List;
-import java.util.ListIterator;
-
 import de.l3s.boilerpipe.BoilerpipeFilter;
 import de.l3s.boilerpipe.BoilerpipeProcessingException;
 import de.l3s.boilerpipe.document.TextBlock;
 import de.l3s.boilerpipe.document.TextDocument;
 import de.l3s.boilerpipe.labels.DefaultLabels;
 
-public final class ContentFusion implements BoilerpipeFilter {
+public final class ContentFusion implements BoilerpipeFilter,
+		BlockFusion.MergePredicate {
 
 	public static final ContentFusion INSTANCE = new ContentFusion();
 
@@ -39,34 +37,13 @@ public final class ContentFusion implements BoilerpipeFilter {
 
 	public boolean process(TextDocument doc)
 			throws BoilerpipeProcessingException {
-		List<TextBlock> textBlocks = doc.getTextBlocks();
-		if (textBlocks.size() < 2) {
-			return false;
-		}
-
-		TextBlock prevBlock = textBlocks.get(0);
-
-		boolean changes = false;
-		do {
-			changes = false;
-			for (ListIterator<TextBlock> it = textBlocks.listIterator(1); it
-					.hasNext();) {
-				TextBlock block = it.next();
-
-				if (prevBlock.isContent()
-						&& block.getLinkDensity() < 0.56
-						&& !block.hasLabel(DefaultLabels.STRICTLY_NOT_CONTENT)) {
-					
-					prevBlock.mergeNext(block);
-					it.remove();
-					changes = true;
-				} else {
-					prevBlock = block;
-				}
-			}
-		} while (changes);
+		return BlockFusion.fuseRepeatedly(doc.getTextBlocks(), this);
+	}
 
-		return true;
+	public boolean shouldMerge(final TextBlock prevBlock, final TextBlock block) {
+		return prevBlock.isContent()
+				&& block.getLinkDensity() < 0.56
+				&& !block.hasLabel(DefaultLabels.STRICTLY_NOT_CONTENT);
 	}
 
 }
@@ -18,11 +18,12 @@
 package de.l3s.boilerpipe.filters.heuristics;
 
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.regex.Pattern;
 
-import de.l3s.boilerpipe.BoilerpipeFilter;
 import de.l3s.boilerpipe.BoilerpipeProcessingException;
+import de.l3s.boilerpipe.LocalBlockFilter;
 import de.l3s.boilerpipe.document.TextBlock;
 import de.l3s.boilerpipe.document.TextDocument;
 import de.l3s.boilerpipe.labels.DefaultLabels;
@@ -34,7 +35,7 @@ import de.l3s.boilerpipe.labels.DefaultLabels;
  * 
  * @author Christian Kohlschütter
  */
-public final class DocumentTitleMatchClassifier implements BoilerpipeFilter {
+public final class DocumentTitleMatchClassifier implements LocalBlockFilter {
 
 	private final Set<String> potentialTitles;
 
@@ -144,30 +145,55 @@ public final class DocumentTitleMatchClassifier implements BoilerpipeFilter {
 		if (potentialTitles == null) {
 			return false;
 		}
-		boolean changes = false;
 		
 		for (final TextBlock tb : doc.getTextBlocks()) {
-			String text = tb.getText();
-			
-			text = text.replace('\u00a0', ' ');
-			text = text.replace("'", "");
+			if (matchTitle(tb)) {
+				return true;
+			}
+		}
+		return false;
+	}
 
-			text = text.trim().toLowerCase();
+	public int getRadius() {
+		return 0;
+	}
 
-			if (potentialTitles.contains(text)) {
-				tb.addLabel(DefaultLabels.TITLE);
-				changes = true;
-				break;
-			}
-			
-			text = PAT_REMOVE_CHARACTERS.matcher(text).replaceAll("").trim();
-			if (potentialTitles.contains(text)) {
-				tb.addLabel(DefaultLabels.TITLE);
-				changes = true;
-				break;
+	/**
+	 * Creates a visitor that labels the first block that matches the title.
+	 */
+	public Visitor newVisitor(final TextDocument doc) {
+		return new Visitor() {
+			private boolean found = potentialTitles == null;
+
+			public boolean visit(final List<TextBlock> blocks, final int index) {
+				if (found) {
+					return false;
+				}
+				found = matchTitle(blocks.get(index));
+				return found;
 			}
+		};
+	}
+
+	private boolean matchTitle(final TextBlock tb) {
+		String text = tb.getText();
+		
+		text = text.replace('\u00a0', ' ');
+		text = text.replace("'", "");
+
+		text = text.trim().toLowerCase();
+
+		if (potentialTitles.contains(text)) {
+			tb.addLabel(DefaultLabels.TITLE);
+			return true;
+		}
+		
+		text = PAT_REMOVE_CHARACTERS.matcher(text).replaceAll("").trim();
+		if (potentialTitles.contains(text)) {
+			tb.addLabel(DefaultLabels.TITLE);
+			return true;
 		}
-		return changes;
+		return false;
 	}
 
 }
@@ -17,23 +17,22 @@
  */
 package de.l3s.boilerpipe.filters.heuristics;
 
-import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
-import java.util.Set;
 
 import de.l3s.boilerpipe.BoilerpipeFilter;
 import de.l3s.boilerpipe.BoilerpipeProcessingException;
 import de.l3s.boilerpipe.document.TextBlock;
 import de.l3s.boilerpipe.document.TextDocument;
-import de.l3s.boilerpipe.labels.DefaultLabels;
+import de.l3s.boilerpipe.labels.MarkupPath;
 
 /**
- * Fuses adjacent blocks if their labels are equal.
+ * Fuses adjacent blocks if their markup labels are equal, i.e. if they are
+ * enclosed by the same markup paths (see {@link MarkupPath}).
  * 
  * @author Christian Kohlschütter
  */
-public final class LabelFusion implements BoilerpipeFilter {
+public final class LabelFusion implements BoilerpipeFilter,
+        BlockFusion.MergePredicate {
 
     public static final LabelFusion INSTANCE = new LabelFusion();
 
@@ -45,47 +44,39 @@ public final class LabelFusion implements BoilerpipeFilter {
 
     public boolean process(TextDocument doc)
             throws BoilerpipeProcessingException {
-        List<TextBlock> textBlocks = doc.getTextBlocks();
-        if (textBlocks.size() < 2) {
-            return false;
-        }
-
-        boolean changes = false;
-        TextBlock prevBlock = textBlocks.get(0);
-        int offset = 1;
-
-        for (Iterator<TextBlock> it = textBlocks.listIterator(offset); it
-                .hasNext();) {
-            TextBlock block = it.next();
-
-            if(equalLabels(prevBlock.getLabels(), block.getLabels())) {
-                prevBlock.mergeNext(block);
-                it.remove();
-                changes = true;
-            } else {
-                prevBlock = block;
-            }
-        }
+        return BlockFusion.fuse(doc.getTextBlocks(), this);
+    }
 
-        return changes;
+    public boolean shouldMerge(final TextBlock prevBlock, final TextBlock block) {
+        return equalLabels(prevBlock, block);
     }
 
-	private boolean equalLabels(Set<String> labels, Set<String> labels2) {
-		if(labels == null || labels2 == null) {
+	private boolean equalLabels(TextBlock tb1, TextBlock tb2) {
+		final List<MarkupPath> paths1 = tb1.getMarkupPaths();
+		final List<MarkupPath> paths2 = tb2.getMarkupPaths();
+		if((paths1.isEmpty() && tb1.getLabels() == null)
+				|| (paths2.isEmpty() && tb2.getLabels() == null)) {
 			return false;
 		}
-		return markupLabelsOnly(labels).equals(markupLabelsOnly(labels2));
+		if(paths1.size() != paths2.size()) {
+			return false;
+		}
+		// paths are interned, so equal paths are identical
+		for(MarkupPath p : paths1) {
+			if(!containsPath(paths2, p)) {
+				return false;
+			}
+		}
+		return true;
 	}
-	
-	private Set<String> markupLabelsOnly(final Set<String> set1) {
-		Set<String> set = new HashSet<String>(set1);
-		for(Iterator<String> it = set.iterator(); it.hasNext(); ) {
-			final String label = it.next();
-			if(!label.startsWith(DefaultLabels.MARKUP_PREFIX)) {
-				it.remove();
+
+	private static boolean containsPath(List<MarkupPath> paths, MarkupPath path) {
+		for(MarkupPath p : paths) {
+			if(p == path) {
+				return true;
 			}
 		}
-		return set;
+		return false;
 	}
 
 }
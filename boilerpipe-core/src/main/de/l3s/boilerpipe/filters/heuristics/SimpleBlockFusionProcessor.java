@@ -17,9 +17,6 @@
  */
 package de.l3s.boilerpipe.filters.heuristics;
 
-import java.util.Iterator;
-import java.util.List;
-
 import de.l3s.boilerpipe.BoilerpipeFilter;
 import de.l3s.boilerpipe.BoilerpipeProcessingException;
 import de.l3s.boilerpipe.document.TextBlock;
@@ -30,7 +27,8 @@ import de.l3s.boilerpipe.document.TextDocument;
  * 
  * @author Christian Kohlschütter
  */
-public class SimpleBlockFusionProcessor implements BoilerpipeFilter {
+public class SimpleBlockFusionProcessor implements BoilerpipeFilter,
+        BlockFusion.MergePredicate {
     public static final SimpleBlockFusionProcessor INSTANCE = new SimpleBlockFusionProcessor();
 
     /**
@@ -42,29 +40,11 @@ public class SimpleBlockFusionProcessor implements BoilerpipeFilter {
 
     public boolean process(TextDocument doc)
             throws BoilerpipeProcessingException {
-        List<TextBlock> textBlocks = doc.getTextBlocks();
-        boolean changes = false;
-
-        if (textBlocks.size() < 2) {
-            return false;
-        }
-
-        TextBlock b1 = textBlocks.get(0);
-        for (Iterator<TextBlock> it = textBlocks.listIterator(1); it.hasNext();) {
-            TextBlock b2 = it.next();
-
-            final boolean similar = (b1.getTextDensity() == b2.getTextDensity());
-            
-            if(similar) {
-                b1.mergeNext(b2);
-                it.remove();
-                changes = true;
-            } else {
-                b1 = b2;
-            }
-        }
+        return BlockFusion.fuse(doc.getTextBlocks(), this);
+    }
 
-        return changes;
+    public boolean shouldMerge(final TextBlock b1, final TextBlock b2) {
+        return b1.getTextDensity() == b2.getTextDensity();
     }
 
 }
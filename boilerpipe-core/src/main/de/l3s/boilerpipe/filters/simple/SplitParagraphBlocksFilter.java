@@ -25,6 +25,7 @@ import de.l3s.boilerpipe.BoilerpipeFilter;
 import de.l3s.boilerpipe.BoilerpipeProcessingException;
 import de.l3s.boilerpipe.document.TextBlock;
 import de.l3s.boilerpipe.document.TextDocument;
+import de.l3s.boilerpipe.labels.MarkupPath;
 
 /**
  * Splits TextBlocks at paragraph boundaries.
@@ -66,6 +67,9 @@ public final class SplitParagraphBlocksFilter implements BoilerpipeFilter {
                 final TextBlock tbP = new TextBlock(p);
                 tbP.setIsContent(isContent);
                 tbP.addLabels(labels);
+                for (MarkupPath path : tb.getMarkupPaths()) {
+                    tbP.addMarkupPath(path);
+                }
                 blocksNew.add(tbP);
                 changes = true;
             }
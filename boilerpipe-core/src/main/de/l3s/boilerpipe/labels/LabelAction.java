@@ -29,9 +29,26 @@ import de.l3s.boilerpipe.document.TextBlock;
  */
 public class LabelAction {
     protected final String[] labels;
+    // the interned labels, or null if the registry is full
+    private final int[] labelIds;
     
     public LabelAction(String... labels) {
         this.labels = labels;
+        this.labelIds = intern(labels);
+    }
+
+    private static int[] intern(final String[] labels) {
+        if (labels == null) {
+            return null;
+        }
+        final int[] ids = new int[labels.length];
+        for (int i = 0; i < labels.length; i++) {
+            ids[i] = LabelRegistry.INSTANCE.intern(labels[i]);
+            if (ids[i] < 0) {
+                return null;
+            }
+        }
+        return ids;
     }
     
     public void addTo(final TextBlock tb) {
@@ -39,7 +56,13 @@ public class LabelAction {
     }
     
     protected final void addLabelsTo(final TextBlock tb) {
-        tb.addLabels(labels);
+        if (labelIds == null || labelIds.length == 0) {
+            tb.addLabels(labels);
+            return;
+        }
+        for (int id : labelIds) {
+            tb.addLabel(id);
+        }
     }
     
     public String toString() {
@@ -0,0 +1,122 @@
+package de.l3s.boilerpipe.labels;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns labels to small integer ids, which are used by {@link LabelSet} to
+ * store the labels of a block compactly.
+ *
+ * Ids are assigned once and never reclaimed, so the registry is meant for the
+ * labels defined by the code, not for labels taken from the pages. Markup
+ * labels (see {@link DefaultLabels#MARKUP_PREFIX}), which are built from the
+ * class and id attributes of arbitrary pages, are therefore never given an id,
+ * also when a filter has prefixed them (see
+ * {@link de.l3s.boilerpipe.filters.heuristics.AddPrecedingLabelsFilter}).
+ * As a safeguard, the registry also stops assigning ids once it holds
+ * {@link #MAX_LABELS} labels. {@link LabelSet} keeps labels without an id as
+ * plain strings.
+ *
+ * The labels defined in {@link DefaultLabels} are always registered. The
+ * registry is thread-safe.
+ */
+public final class LabelRegistry {
+    /**
+     * The maximum number of labels that are assigned an id.
+     */
+    public static final int MAX_LABELS = 1 << 16;
+
+    public static final LabelRegistry INSTANCE = new LabelRegistry();
+
+    private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<String, Integer>();
+
+    // written under the lock, before the id is published through ids
+    private volatile String[] names = new String[64];
+    private int size = 0;
+
+    /**
+     * Returns the singleton instance of {@link LabelRegistry}.
+     */
+    public static LabelRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    private LabelRegistry() {
+        // the default labels always have an id
+        for (String label : new String[] { DefaultLabels.TITLE,
+                DefaultLabels.ARTICLE_METADATA,
+                DefaultLabels.INDICATES_END_OF_TEXT,
+                DefaultLabels.MIGHT_BE_CONTENT,
+                DefaultLabels.VERY_LIKELY_CONTENT,
+                DefaultLabels.STRICTLY_NOT_CONTENT, DefaultLabels.HR,
+                DefaultLabels.LI, DefaultLabels.HEADING, DefaultLabels.H1,
+                DefaultLabels.H2, DefaultLabels.H3 }) {
+            intern(label);
+        }
+    }
+
+    /**
+     * Returns the id of the given label, assigning a new id if necessary.
+     *
+     * @param label
+     *            The label
+     * @return The id, or -1 if the label contains a markup label or the
+     *         registry is full
+     */
+    public int intern(final String label) {
+        final Integer id = ids.get(label);
+        if (id != null) {
+            return id;
+        }
+        if (label.indexOf(DefaultLabels.MARKUP_PREFIX) >= 0) {
+            // a markup label, possibly with a prefix
+            return -1;
+        }
+        synchronized (this) {
+            final Integer existing = ids.get(label);
+            if (existing != null) {
+                return existing;
+            }
+            if (size >= MAX_LABELS) {
+                return -1;
+            }
+            final int newId = size;
+            String[] n = names;
+            if (newId == n.length) {
+                final String[] n2 = new String[n.length * 2];
+                System.arraycopy(n, 0, n2, 0, n.length);
+                n = n2;
+            }
+            n[newId] = label;
+            names = n;
+            size++;
+            ids.put(label, newId);
+            return newId;
+        }
+    }
+
+    /**
+     * Returns the id of the given label, without assigning a new id.
+     *
+     * @param label
+     *            The label
+     * @return The id, or -1 if the label has no id
+     */
+    public int lookup(final String label) {
+        final Integer id = ids.get(label);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Returns the label with the given id.
+     */
+    public String getLabel(final int id) {
+        return names[id];
+    }
+
+    /**
+     * Returns the number of labels that have an id.
+     */
+    public synchronized int size() {
+        return size;
+    }
+}
@@ -0,0 +1,286 @@
+package de.l3s.boilerpipe.labels;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * The labels of a block, stored as a sorted array of ids from the
+ * {@link LabelRegistry}. Membership tests with an id are a binary search, and
+ * two sets are united by merging their arrays.
+ *
+ * Labels that the registry does not intern, i.e. markup labels and labels
+ * added after the registry is full, are kept in a separate set of strings.
+ */
+public final class LabelSet extends AbstractSet<String> {
+    private static final int[] EMPTY = new int[0];
+    private static final LabelRegistry REGISTRY = LabelRegistry.INSTANCE;
+
+    private int[] ids = EMPTY;
+    private int numIds = 0;
+    private Set<String> strings = null;
+
+    /**
+     * Creates an empty set.
+     */
+    public LabelSet() {
+    }
+
+    /**
+     * Creates a set containing the given labels.
+     */
+    public LabelSet(final Collection<String> labels) {
+        if (labels instanceof LabelSet) {
+            final LabelSet other = (LabelSet) labels;
+            ids = other.numIds == 0 ? EMPTY : Arrays.copyOf(other.ids, other.numIds);
+            numIds = other.numIds;
+            if (other.strings != null && !other.strings.isEmpty()) {
+                strings = new HashSet<String>(other.strings);
+            }
+        } else {
+            addAll(labels);
+        }
+    }
+
+    /**
+     * Checks whether the label with the given id is in this set.
+     */
+    public boolean containsId(final int id) {
+        return Arrays.binarySearch(ids, 0, numIds, id) >= 0;
+    }
+
+    /**
+     * Adds the label with the given id.
+     *
+     * @return <code>true</code> if the set has changed.
+     */
+    public boolean addId(final int id) {
+        int pos = Arrays.binarySearch(ids, 0, numIds, id);
+        if (pos >= 0) {
+            return false;
+        }
+        pos = -pos - 1;
+        if (numIds == ids.length) {
+            ids = Arrays.copyOf(ids, Math.max(4, numIds * 2));
+        }
+        System.arraycopy(ids, pos, ids, pos + 1, numIds - pos);
+        ids[pos] = id;
+        numIds++;
+        return true;
+    }
+
+    /**
+     * Removes the label with the given id.
+     *
+     * @return <code>true</code> if the set has changed.
+     */
+    public boolean removeId(final int id) {
+        final int pos = Arrays.binarySearch(ids, 0, numIds, id);
+        if (pos < 0) {
+            return false;
+        }
+        removeAt(pos);
+        return true;
+    }
+
+    private void removeAt(final int pos) {
+        System.arraycopy(ids, pos + 1, ids, pos, numIds - pos - 1);
+        numIds--;
+    }
+
+    /**
+     * Returns the ids of the labels in this set, in ascending order. Labels
+     * without an id are not included.
+     */
+    public int[] toIdArray() {
+        return Arrays.copyOf(ids, numIds);
+    }
+
+    @Override
+    public boolean add(final String label) {
+        final int id = REGISTRY.intern(label);
+        if (id >= 0) {
+            return addId(id);
+        }
+        if (strings == null) {
+            strings = new HashSet<String>(2);
+        }
+        return strings.add(label);
+    }
+
+    @Override
+    public boolean contains(final Object o) {
+        if (!(o instanceof String)) {
+            return false;
+        }
+        final int id = REGISTRY.lookup((String) o);
+        if (id >= 0) {
+            return containsId(id);
+        }
+        return strings != null && strings.contains(o);
+    }
+
+    @Override
+    public boolean remove(final Object o) {
+        if (!(o instanceof String)) {
+            return false;
+        }
+        final int id = REGISTRY.lookup((String) o);
+        if (id >= 0) {
+            return removeId(id);
+        }
+        return strings != null && strings.remove(o);
+    }
+
+    @Override
+    public boolean addAll(final Collection<? extends String> c) {
+        if (!(c instanceof LabelSet)) {
+            return super.addAll(c);
+        }
+        final LabelSet other = (LabelSet) c;
+        boolean changed = false;
+        if (other.numIds > 0) {
+            changed = union(other.ids, other.numIds);
+        }
+        if (other.strings != null && !other.strings.isEmpty()) {
+            if (strings == null) {
+                strings = new HashSet<String>(other.strings);
+                changed = true;
+            } else {
+                changed = strings.addAll(other.strings) | changed;
+            }
+        }
+        return changed;
+    }
+
+    private boolean union(final int[] b, final int nb) {
+        if (numIds == 0) {
+            ids = Arrays.copyOf(b, nb);
+            numIds = nb;
+            return true;
+        }
+        final int[] a = ids;
+        final int na = numIds;
+        final int[] merged = new int[na + nb];
+        int i = 0, j = 0, k = 0;
+        while (i < na && j < nb) {
+            if (a[i] < b[j]) {
+                merged[k++] = a[i++];
+            } else if (a[i] > b[j]) {
+                merged[k++] = b[j++];
+            } else {
+                merged[k++] = a[i++];
+                j++;
+            }
+        }
+        while (i < na) {
+            merged[k++] = a[i++];
+        }
+        while (j < nb) {
+            merged[k++] = b[j++];
+        }
+        if (k == na) {
+            return false;
+        }
+        ids = merged;
+        numIds = k;
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        numIds = 0;
+        strings = null;
+    }
+
+    @Override
+    public int size() {
+        return numIds + (strings == null ? 0 : strings.size());
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return numIds == 0 && (strings == null || strings.isEmpty());
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (o instanceof LabelSet) {
+            final LabelSet other = (LabelSet) o;
+            if (numIds != other.numIds) {
+                return false;
+            }
+            for (int i = 0; i < numIds; i++) {
+                if (ids[i] != other.ids[i]) {
+                    return false;
+                }
+            }
+            final boolean e1 = strings == null || strings.isEmpty();
+            final boolean e2 = other.strings == null || other.strings.isEmpty();
+            if (e1 || e2) {
+                return e1 == e2;
+            }
+            return strings.equals(other.strings);
+        }
+        return super.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        return super.hashCode();
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        return new Iterator<String>() {
+            private int pos = 0;
+            private boolean removable = false;
+            private boolean lastFromStrings = false;
+            private Iterator<String> stringsIterator = null;
+
+            public boolean hasNext() {
+                if (pos < numIds) {
+                    return true;
+                }
+                if (stringsIterator == null) {
+                    if (strings == null) {
+                        return false;
+                    }
+                    stringsIterator = strings.iterator();
+                }
+                return stringsIterator.hasNext();
+            }
+
+            public String next() {
+                if (pos < numIds) {
+                    removable = true;
+                    lastFromStrings = false;
+                    return REGISTRY.getLabel(ids[pos++]);
+                }
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                removable = false;
+                lastFromStrings = true;
+                return stringsIterator.next();
+            }
+
+            public void remove() {
+                if (lastFromStrings) {
+                    stringsIterator.remove();
+                    lastFromStrings = false;
+                    return;
+                }
+                if (!removable) {
+                    throw new IllegalStateException();
+                }
+                removeAt(--pos);
+                removable = false;
+            }
+        };
+    }
+}
@@ -0,0 +1,181 @@
+package de.l3s.boilerpipe.labels;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The path of markup elements that encloses a block, as a chain of nodes from
+ * the innermost element up to a root. Each node holds the markup labels of its
+ * own element (see {@link DefaultLabels#MARKUP_PREFIX}), i.e. its tag name,
+ * CSS classes and id.
+ *
+ * Nodes are interned per root: {@link #child(String...)} returns the same
+ * instance for the same labels under the same parent, so two blocks are
+ * enclosed by equal paths exactly if their path nodes are identical.
+ *
+ * The labels that combine an ancestor and a descendant element, such as
+ * <code>"&lt;.article &lt;P"</code>, are not stored but answered by walking
+ * the path (see {@link #hasLabel(String)}).
+ *
+ * Paths are immutable once created; creating children of the same root is not
+ * thread-safe.
+ */
+public final class MarkupPath {
+    private static final String[] NO_LABELS = new String[0];
+
+    private final MarkupPath parent;
+    private final String[] labels;
+    private final int depth;
+    private Map<List<String>, MarkupPath> children = null;
+
+    private MarkupPath(final MarkupPath parent, final String[] labels) {
+        this.parent = parent;
+        this.labels = labels;
+        this.depth = parent == null ? 0 : parent.depth + 1;
+    }
+
+    /**
+     * Creates a new root, which stands for the document itself and has no
+     * labels.
+     */
+    public static MarkupPath newRoot() {
+        return new MarkupPath(null, NO_LABELS);
+    }
+
+    /**
+     * Returns the interned path of a child element with the given labels.
+     *
+     * @param elementLabels
+     *            The markup labels of the child element.
+     * @return The child path.
+     */
+    public MarkupPath child(final String... elementLabels) {
+        final List<String> key = Arrays.asList(elementLabels);
+        if (children == null) {
+            children = new HashMap<List<String>, MarkupPath>();
+        } else {
+            final MarkupPath existing = children.get(key);
+            if (existing != null) {
+                return existing;
+            }
+        }
+        final MarkupPath child = new MarkupPath(this, elementLabels.clone());
+        children.put(Arrays.asList(child.labels), child);
+        return child;
+    }
+
+    /**
+     * Returns the path of the enclosing element, or <code>null</code> if this
+     * is a root.
+     */
+    public MarkupPath getParent() {
+        return parent;
+    }
+
+    /**
+     * Returns the number of elements on this path; a root has depth 0.
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Returns the markup labels of the innermost element of this path.
+     */
+    public List<String> getElementLabels() {
+        return Collections.unmodifiableList(Arrays.asList(labels));
+    }
+
+    /**
+     * Checks whether this path is the given path or lies inside it.
+     */
+    public boolean isWithin(final MarkupPath other) {
+        if (other.depth > depth) {
+            return false;
+        }
+        MarkupPath p = this;
+        while (p.depth > other.depth) {
+            p = p.parent;
+        }
+        return p == other;
+    }
+
+    /**
+     * Checks whether an element on this path carries the given label, e.g.
+     * <code>"&lt;.article"</code> for any enclosing element with CSS class
+     * "article". Labels of the form
+     * <code>"<i>ancestor</i> <i>descendant</i>"</code> are matched if an
+     * element carries the descendant label and one of its ancestors carries
+     * the ancestor label.
+     *
+     * @param label
+     *            The label.
+     * @return <code>true</code> if this path has the label.
+     */
+    public boolean hasLabel(final String label) {
+        if (findElement(label) != null) {
+            return true;
+        }
+        for (int i = label.indexOf(' '); i >= 0; i = label.indexOf(' ', i + 1)) {
+            final String ancestor = label.substring(0, i);
+            final String descendant = label.substring(i + 1);
+            for (MarkupPath p = findElement(descendant); p != null; p = p.parent
+                    .findElement(descendant)) {
+                if (p.parent.findElement(ancestor) != null) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // returns the innermost element on this path that carries the label
+    private MarkupPath findElement(final String label) {
+        for (MarkupPath p = this; p != null; p = p.parent) {
+            for (String l : p.labels) {
+                if (l.equals(label)) {
+                    return p;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns all labels of this path as strings: the labels of each element,
+     * and each combination of an ancestor label with a descendant label. The
+     * number of labels grows quadratically with the depth of the path, so this
+     * should only be used where plain strings are required.
+     */
+    public Set<String> getLabels() {
+        final Set<String> set = new LinkedHashSet<String>();
+        addLabels(set, new LinkedHashSet<String>());
+        return set;
+    }
+
+    private void addLabels(final Set<String> set, final Set<String> ancestors) {
+        if (parent == null) {
+            return;
+        }
+        parent.addLabels(set, ancestors);
+        for (String l : labels) {
+            for (String an : ancestors) {
+                set.add(an + " " + l);
+            }
+            set.add(l);
+        }
+        ancestors.addAll(Arrays.asList(labels));
+    }
+
+    public String toString() {
+        if (parent == null) {
+            return "";
+        }
+        return parent.toString() + "/" + Arrays.toString(labels);
+    }
+}
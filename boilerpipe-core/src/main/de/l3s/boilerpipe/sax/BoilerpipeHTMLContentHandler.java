@@ -18,7 +18,7 @@
 package de.l3s.boilerpipe.sax;
 
 import java.util.ArrayList;
-import java.util.BitSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -29,9 +29,11 @@ import org.xml.sax.ContentHandler;
 import org.xml.sax.Locator;
 import org.xml.sax.SAXException;
 
+import de.l3s.boilerpipe.document.IntervalSet;
 import de.l3s.boilerpipe.document.TextBlock;
 import de.l3s.boilerpipe.document.TextDocument;
 import de.l3s.boilerpipe.labels.LabelAction;
+import de.l3s.boilerpipe.labels.MarkupPath;
 import de.l3s.boilerpipe.util.UnicodeTokenizer;
 
 /**
@@ -61,7 +63,7 @@ public class BoilerpipeHTMLContentHandler implements ContentHandler {
 	boolean sbLastWasWhitespace = false;
 	private int textElementIdx = 0;
 
-	private final List<TextBlock> textBlocks = new ArrayList<TextBlock>();
+	private List<TextBlock> textBlocks = new ArrayList<TextBlock>();
 
 	private String lastStartTag = null;
 	@SuppressWarnings("unused")
@@ -70,38 +72,92 @@ public class BoilerpipeHTMLContentHandler implements ContentHandler {
 	private Event lastEvent = null;
 
 	private int offsetBlocks = 0;
-	private BitSet currentContainedTextElements = new BitSet();
+	private IntervalSet currentContainedTextElements = new IntervalSet();
 
 	private boolean flush = false;
 	boolean inAnchorText = false;
 
 	LinkedList<LinkedList<LabelAction>> labelStacks = new LinkedList<LinkedList<LabelAction>>();
 	LinkedList<Integer> fontSizeStack = new LinkedList<Integer>();
+	// the innermost open element handled by a MarkupTagAction
+	MarkupPath markupPath = null;
+	// per-document state of other TagActions, keyed by identity
+	private Map<Object, Object> tagActionStates = null;
 
 	/**
-	 * Recycles this instance.
+	 * Recycles this instance, so that another document can be parsed with it.
+	 * Documents returned by {@link #toTextDocument()} before are not affected.
 	 */
 	public void recycle() {
+		title = null;
+
 		tokenBuffer.setLength(0);
 		textBuffer.setLength(0);
 
 		inBody = 0;
 		inAnchor = 0;
 		inIgnorableElement = 0;
+
+		tagLevel = 0;
+		blockTagLevel = -1;
+
 		sbLastWasWhitespace = false;
 		textElementIdx = 0;
 
-		textBlocks.clear();
+		// the previous document still refers to the old list
+		textBlocks = new ArrayList<TextBlock>();
 
 		lastStartTag = null;
 		lastEndTag = null;
 		lastEvent = null;
 
 		offsetBlocks = 0;
-		currentContainedTextElements.clear();
+		currentContainedTextElements = new IntervalSet();
 
 		flush = false;
 		inAnchorText = false;
+
+		labelStacks.clear();
+		fontSizeStack.clear();
+		markupPath = null;
+		tagActionStates = null;
+	}
+
+	/**
+	 * Returns the state a {@link TagAction} has stored for the document that
+	 * is being parsed. As TagActions are shared between handlers, they must
+	 * keep such state here instead of in their own fields.
+	 * 
+	 * @param key
+	 *            The key of the state, usually the TagAction itself; compared
+	 *            by identity.
+	 * @return The state, or <code>null</code> if none has been set.
+	 */
+	public Object getTagActionState(final Object key) {
+		return tagActionStates == null ? null : tagActionStates.get(key);
+	}
+
+	/**
+	 * Stores the state of a {@link TagAction} for the document that is being
+	 * parsed. The state is discarded when this handler is recycled.
+	 * 
+	 * @param key
+	 *            The key of the state, usually the TagAction itself; compared
+	 *            by identity.
+	 * @param state
+	 *            The state, or <code>null</code> to remove it.
+	 */
+	public void setTagActionState(final Object key, final Object state) {
+		if (state == null) {
+			if (tagActionStates != null) {
+				tagActionStates.remove(key);
+			}
+			return;
+		}
+		if (tagActionStates == null) {
+			tagActionStates = new IdentityHashMap<Object, Object>();
+		}
+		tagActionStates.put(key, state);
 	}
 
 	/**
@@ -290,7 +346,7 @@ public class BoilerpipeHTMLContentHandler implements ContentHandler {
 		sbLastWasWhitespace = endWhitespace;
 		lastEvent = Event.CHARACTERS;
 
-		currentContainedTextElements.set(textElementIdx);
+		currentContainedTextElements.add(textElementIdx);
 	}
 
 	List<TextBlock> getTextBlocks() {
@@ -371,7 +427,7 @@ public class BoilerpipeHTMLContentHandler implements ContentHandler {
 				numWrappedLines,
 				offsetBlocks
 		);
-		currentContainedTextElements = new BitSet();
+		currentContainedTextElements = new IntervalSet();
 
 		offsetBlocks++;
 
@@ -401,6 +457,18 @@ public class BoilerpipeHTMLContentHandler implements ContentHandler {
 			}
 		}
 
+		emitTextBlock(tb);
+	}
+
+	/**
+	 * Receives each completed block, after its labels have been added. By
+	 * default, the block is appended to the document; subclasses may override
+	 * this to process the blocks while the HTML is being parsed.
+	 * 
+	 * @param tb
+	 *            The block.
+	 */
+	protected void emitTextBlock(final TextBlock tb) {
 		textBlocks.add(tb);
 	}
 
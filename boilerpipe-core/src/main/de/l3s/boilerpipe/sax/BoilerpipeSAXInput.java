@@ -70,4 +70,29 @@ public final class BoilerpipeSAXInput implements BoilerpipeInput {
         return parser.toTextDocument();
     }
 
+    /**
+     * Retrieves the {@link TextDocument} using a default HTML parser, and
+     * records the parser's events into the given {@link SAXEventTape}. The tape
+     * can then be replayed by {@link HTMLHighlighter}, {@link ImageExtractor}
+     * etc. instead of parsing the HTML again.
+     * 
+     * @param tape The (empty) tape to record into.
+     * @return The retrieved {@link TextDocument}
+     * @throws BoilerpipeProcessingException
+     */
+    public TextDocument getTextDocument(final SAXEventTape tape) throws BoilerpipeProcessingException {
+        final BoilerpipeHTMLContentHandler handler = new BoilerpipeHTMLContentHandler();
+        final BoilerpipeHTMLParser parser = new BoilerpipeHTMLParser(true);
+        parser.setContentHandler(tape.tee(handler));
+        try {
+            parser.parse(is);
+        } catch (IOException e) {
+            throw new BoilerpipeProcessingException(e);
+        } catch (SAXException e) {
+            throw new BoilerpipeProcessingException(e);
+        }
+
+        return handler.toTextDocument();
+    }
+
 }
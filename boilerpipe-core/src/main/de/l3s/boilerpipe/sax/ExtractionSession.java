@@ -0,0 +1,257 @@
+package de.l3s.boilerpipe.sax;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import org.xml.sax.SAXException;
+
+import de.l3s.boilerpipe.BoilerpipeExtractor;
+import de.l3s.boilerpipe.BoilerpipeProcessingException;
+import de.l3s.boilerpipe.document.Image;
+import de.l3s.boilerpipe.document.TextDocument;
+import de.l3s.boilerpipe.document.Video;
+
+/**
+ * Extracts several outputs (text, content images, videos, highlighted HTML)
+ * from one {@link HTMLDocument} with a single HTML parse.
+ *
+ * The parse events are recorded into a {@link SAXEventTape} while the
+ * {@link TextDocument} is built. Once the extractor has classified the blocks,
+ * the image, video and markup outputs are computed by replaying the tape instead of
+ * parsing the HTML again.
+ *
+ * A session is immutable and may be shared between threads, unless the
+ * {@link HTMLHighlighter} passed to it is modified concurrently.
+ */
+public final class ExtractionSession {
+
+	/**
+	 * The outputs that can be requested from an {@link ExtractionSession}.
+	 */
+	public enum Output {
+		/**
+		 * The extracted content text.
+		 */
+		TEXT,
+		/**
+		 * The images enclosed by the extracted content, see
+		 * {@link ImageExtractor}.
+		 */
+		IMAGES,
+		/**
+		 * The videos of the page, marked whether they are enclosed by the
+		 * extracted content, see {@link VideoParser}.
+		 */
+		VIDEOS,
+		/**
+		 * The HTML with the extracted content highlighted, see
+		 * {@link HTMLHighlighter}.
+		 */
+		HIGHLIGHTED_HTML
+	}
+
+	private final BoilerpipeExtractor extractor;
+	private final Set<Output> outputs;
+	private final HTMLHighlighter highlighter;
+
+	/**
+	 * Creates a new session for the given extractor and outputs, using a
+	 * highlighting {@link HTMLHighlighter}.
+	 *
+	 * @param extractor
+	 *            The extractor that classifies the text blocks.
+	 * @param outputs
+	 *            The requested outputs.
+	 */
+	public ExtractionSession(final BoilerpipeExtractor extractor,
+			final Output... outputs) {
+		this(extractor, HTMLHighlighter.newHighlightingInstance(), outputs);
+	}
+
+	/**
+	 * Creates a new session for the given extractor and outputs.
+	 *
+	 * @param extractor
+	 *            The extractor that classifies the text blocks.
+	 * @param highlighter
+	 *            The highlighter used for {@link Output#HIGHLIGHTED_HTML}.
+	 * @param outputs
+	 *            The requested outputs.
+	 */
+	public ExtractionSession(final BoilerpipeExtractor extractor,
+			final HTMLHighlighter highlighter, final Output... outputs) {
+		this.extractor = extractor;
+		this.highlighter = highlighter;
+		final Set<Output> set = EnumSet.noneOf(Output.class);
+		Collections.addAll(set, outputs);
+		this.outputs = Collections.unmodifiableSet(set);
+	}
+
+	/**
+	 * Returns the outputs this session produces.
+	 */
+	public Set<Output> getOutputs() {
+		return outputs;
+	}
+
+	/**
+	 * Parses the given document once and produces all requested outputs.
+	 *
+	 * @param htmlDoc
+	 *            The HTML document.
+	 * @return The extraction result.
+	 * @throws BoilerpipeProcessingException
+	 */
+	public Result process(final HTMLDocument htmlDoc)
+			throws BoilerpipeProcessingException {
+		final BoilerpipeSAXInput in;
+		try {
+			in = new BoilerpipeSAXInput(htmlDoc.toInputSource());
+		} catch (SAXException e) {
+			throw new BoilerpipeProcessingException(e);
+		}
+
+		if (!needsTape()) {
+			return finish(in.getTextDocument(), null);
+		}
+
+		final SAXEventTape tape = new SAXEventTape();
+		final TextDocument doc = in.getTextDocument(tape);
+		return finish(doc, tape);
+	}
+
+	/**
+	 * Produces all requested outputs from an already recorded parse. This is
+	 * useful when several sessions (e.g., with different extractors) are run on
+	 * the same page.
+	 *
+	 * @param tape
+	 *            The recorded events of the HTML document.
+	 * @return The extraction result.
+	 * @throws BoilerpipeProcessingException
+	 */
+	public Result process(final SAXEventTape tape)
+			throws BoilerpipeProcessingException {
+		return finish(tape.toTextDocument(), tape);
+	}
+
+	/**
+	 * Produces all requested outputs from an already recorded parse and the
+	 * {@link TextDocument} built from it. The extractor runs on a
+	 * {@link TextDocument#view() view} of that document, which is left
+	 * unchanged, so the same document can be passed to several sessions
+	 * without building it again.
+	 *
+	 * @param parsed
+	 *            The unprocessed document, see {@link SAXEventTape#toTextDocument()}.
+	 * @param tape
+	 *            The recorded events of the HTML document.
+	 * @return The extraction result.
+	 * @throws BoilerpipeProcessingException
+	 */
+	public Result process(final TextDocument parsed, final SAXEventTape tape)
+			throws BoilerpipeProcessingException {
+		return finish(parsed.view(), tape);
+	}
+
+	/**
+	 * Produces all requested outputs from a document that has already been
+	 * processed by this session's extractor, for example by an
+	 * {@link de.l3s.boilerpipe.extractors.ExtractorPlan} that ran several
+	 * extractors at once. The extractor is not run again.
+	 *
+	 * @param extracted
+	 *            The processed document.
+	 * @param tape
+	 *            The recorded events of the HTML document.
+	 * @return The extraction result.
+	 * @throws BoilerpipeProcessingException
+	 */
+	public Result processExtracted(final TextDocument extracted,
+			final SAXEventTape tape) throws BoilerpipeProcessingException {
+		return collect(extracted, tape);
+	}
+
+	private boolean needsTape() {
+		return outputs.contains(Output.IMAGES)
+				|| outputs.contains(Output.VIDEOS)
+				|| outputs.contains(Output.HIGHLIGHTED_HTML);
+	}
+
+	private Result finish(final TextDocument doc, final SAXEventTape tape)
+			throws BoilerpipeProcessingException {
+		extractor.process(doc);
+		return collect(doc, tape);
+	}
+
+	private Result collect(final TextDocument doc, final SAXEventTape tape)
+			throws BoilerpipeProcessingException {
+		final Result result = new Result(doc);
+		if (outputs.contains(Output.TEXT)) {
+			result.text = doc.getContent();
+		}
+		if (outputs.contains(Output.IMAGES)) {
+			result.images = ImageExtractor.INSTANCE.process(doc, tape);
+		}
+		if (outputs.contains(Output.HIGHLIGHTED_HTML)) {
+			result.highlightedHTML = highlighter.process(doc, tape);
+		}
+		if (outputs.contains(Output.VIDEOS)) {
+			result.videos = VideoParser.INSTANCE.process(doc, tape);
+		}
+		return result;
+	}
+
+	/**
+	 * The outputs of one {@link ExtractionSession} run. Outputs that were not
+	 * requested are <code>null</code>.
+	 */
+	public static final class Result {
+		private final TextDocument doc;
+		private String text;
+		private List<Image> images;
+		private List<Video> videos;
+		private String highlightedHTML;
+
+		Result(final TextDocument doc) {
+			this.doc = doc;
+		}
+
+		/**
+		 * Returns the processed {@link TextDocument}.
+		 */
+		public TextDocument getTextDocument() {
+			return doc;
+		}
+
+		/**
+		 * Returns the extracted content text.
+		 */
+		public String getText() {
+			return text;
+		}
+
+		/**
+		 * Returns the images enclosed by the extracted content.
+		 */
+		public List<Image> getImages() {
+			return images;
+		}
+
+		/**
+		 * Returns the videos of the page.
+		 */
+		public List<Video> getVideos() {
+			return videos;
+		}
+
+		/**
+		 * Returns the highlighted HTML.
+		 */
+		public String getHighlightedHTML() {
+			return highlightedHTML;
+		}
+	}
+}
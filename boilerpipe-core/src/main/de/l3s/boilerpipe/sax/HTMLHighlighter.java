@@ -20,15 +20,10 @@ package de.l3s.boilerpipe.sax;
 import java.io.IOException;
 import java.io.StringReader;
 import java.net.URL;
-import java.util.BitSet;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
-import org.apache.xerces.parsers.AbstractSAXParser;
-import org.cyberneko.html.HTMLConfiguration;
 import org.xml.sax.Attributes;
 import org.xml.sax.ContentHandler;
 import org.xml.sax.InputSource;
@@ -37,7 +32,7 @@ import org.xml.sax.SAXException;
 
 import de.l3s.boilerpipe.BoilerpipeExtractor;
 import de.l3s.boilerpipe.BoilerpipeProcessingException;
-import de.l3s.boilerpipe.document.TextBlock;
+import de.l3s.boilerpipe.document.IntervalSet;
 import de.l3s.boilerpipe.document.TextDocument;
 
 /**
@@ -109,37 +104,149 @@ public final class HTMLHighlighter {
 	 */
 	public String process(final TextDocument doc, final InputSource is)
 			throws BoilerpipeProcessingException {
-		final Implementation implementation = new Implementation();
-		implementation.process(doc, is);
-
-		String html = implementation.html.toString();
-		if (outputHighlightOnly) {
-			Matcher m;
-
-			boolean repeat = true;
-			while (repeat) {
-				repeat = false;
-				m = PAT_TAG_NO_TEXT.matcher(html);
-				if (m.find()) {
-					repeat = true;
-					html = m.replaceAll("");
-				}
+		final StringBuilder html = new StringBuilder();
+		try {
+			new Implementation(doc, html).process(is);
+		} catch (IOException e) {
+			throw new BoilerpipeProcessingException(e);
+		}
+		return unwrapSuperTags(html);
+	}
 
-				m = PAT_SUPER_TAG.matcher(html);
-				if (m.find()) {
-					repeat = true;
-					html = m.replaceAll(m.group(1));
+	/**
+	 * Processes the given {@link TextDocument} and the original HTML text (as
+	 * a recorded {@link SAXEventTape}). The HTML is not parsed again.
+	 * 
+	 * @param doc
+	 *            The processed {@link TextDocument}.
+	 * @param tape
+	 *            The recorded events of the original HTML document.
+	 * @return The highlighted HTML.
+	 * @throws BoilerpipeProcessingException
+	 */
+	public String process(final TextDocument doc, final SAXEventTape tape)
+			throws BoilerpipeProcessingException {
+		final StringBuilder html = new StringBuilder();
+		try {
+			new Implementation(doc, html).process(tape);
+		} catch (IOException e) {
+			throw new BoilerpipeProcessingException(e);
+		}
+		return unwrapSuperTags(html);
+	}
+
+	/**
+	 * Processes the given {@link TextDocument} and the original HTML text (as
+	 * an {@link InputSource}), writing the highlighted HTML to the given
+	 * {@link Appendable} while the document is parsed.
+	 * 
+	 * Unlike the String variants, an outer element that encloses the whole
+	 * extracted HTML is not removed, as this would require buffering the
+	 * complete output.
+	 * 
+	 * @param doc
+	 *            The processed {@link TextDocument}.
+	 * @param is
+	 *            The original HTML document.
+	 * @param out
+	 *            The target for the highlighted HTML.
+	 * @throws IOException
+	 *             if reading the HTML or writing to <code>out</code> fails.
+	 * @throws BoilerpipeProcessingException
+	 */
+	public void process(final TextDocument doc, final InputSource is,
+			final Appendable out) throws IOException,
+			BoilerpipeProcessingException {
+		new Implementation(doc, out).process(is);
+	}
+
+	/**
+	 * Processes the given {@link TextDocument} and the original HTML text (as
+	 * a recorded {@link SAXEventTape}), writing the highlighted HTML to the
+	 * given {@link Appendable}. See
+	 * {@link #process(TextDocument, InputSource, Appendable)}.
+	 * 
+	 * @param doc
+	 *            The processed {@link TextDocument}.
+	 * @param tape
+	 *            The recorded events of the original HTML document.
+	 * @param out
+	 *            The target for the highlighted HTML.
+	 * @throws IOException
+	 *             if writing to <code>out</code> fails.
+	 * @throws BoilerpipeProcessingException
+	 */
+	public void process(final TextDocument doc, final SAXEventTape tape,
+			final Appendable out) throws IOException,
+			BoilerpipeProcessingException {
+		new Implementation(doc, out).process(tape);
+	}
+
+	/**
+	 * In extracting mode, removes an element that encloses the whole output,
+	 * as long as its content starts and ends with markup and contains no line
+	 * break. This is repeated until no such element is left.
+	 */
+	private String unwrapSuperTags(final CharSequence html) {
+		int start = 0;
+		int end = html.length();
+		if (!outputHighlightOnly || end == 0) {
+			return html.toString();
+		}
+
+		// a trailing line break is kept
+		if (html.charAt(end - 1) != '>') {
+			if (!isLineTerminator(html.charAt(end - 1))) {
+				return html.toString();
+			}
+			end--;
+			if (end > 0 && html.charAt(end) == '\n'
+					&& html.charAt(end - 1) == '\r') {
+				end--;
+			}
+		}
+		final int tail = end;
+
+		while (end - start >= 2 && html.charAt(start) == '<'
+				&& html.charAt(end - 1) == '>') {
+			int i = start + 1;
+			while (i < end && html.charAt(i) != '>') {
+				i++;
+			}
+			int j = end - 2;
+			while (j > i && html.charAt(j) != '>') {
+				j--;
+			}
+			// <outer>(<...>)</...>
+			if (j - i < 2 || html.charAt(i + 1) != '<'
+					|| html.charAt(j + 1) != '<' || html.charAt(j + 2) != '/') {
+				break;
+			}
+			boolean singleLine = true;
+			for (int k = i + 1; k <= j; k++) {
+				if (isLineTerminator(html.charAt(k))) {
+					singleLine = false;
+					break;
 				}
 			}
+			if (!singleLine) {
+				break;
+			}
+			start = i + 1;
+			end = j + 1;
 		}
 
-		return html;
+		if (start == 0 && end == tail) {
+			return html.toString();
+		}
+		return html.subSequence(start, end).toString()
+				+ html.subSequence(tail, html.length());
 	}
 
-	private static final Pattern PAT_TAG_NO_TEXT = Pattern
-			.compile("<[^/][^>]*></[^>]*>");
-	private static final Pattern PAT_SUPER_TAG = Pattern
-			.compile("^<[^>]*>(<.*?>)</[^>]*>$");
+	private static boolean isLineTerminator(final char c) {
+		return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028'
+				|| c == '\u2029';
+	}
 
 	/**
 	 * Fetches the given {@link URL} using {@link HTMLFetcher} and processes the
@@ -156,13 +263,12 @@ public final class HTMLHighlighter {
 			throws IOException, BoilerpipeProcessingException, SAXException {
 		final HTMLDocument htmlDoc = HTMLFetcher.fetch(url);
 
+		final SAXEventTape tape = new SAXEventTape();
 		final TextDocument doc = new BoilerpipeSAXInput(htmlDoc.toInputSource())
-				.getTextDocument();
+				.getTextDocument(tape);
 		extractor.process(doc);
 
-		final InputSource is = htmlDoc.toInputSource();
-
-		return process(doc, is);
+		return process(doc, tape);
 	}
 
 	private boolean outputHighlightOnly = false;
@@ -255,16 +361,20 @@ public final class HTMLHighlighter {
 	}
 
 	private abstract static class TagAction {
-		void beforeStart(final Implementation instance, final String localName) {
+		void beforeStart(final Implementation instance, final String localName)
+				throws SAXException {
 		}
 
-		void afterStart(final Implementation instance, final String localName) {
+		void afterStart(final Implementation instance, final String localName)
+				throws SAXException {
 		}
 
-		void beforeEnd(final Implementation instance, final String localName) {
+		void beforeEnd(final Implementation instance, final String localName)
+				throws SAXException {
 		}
 
-		void afterEnd(final Implementation instance, final String localName) {
+		void afterEnd(final Implementation instance, final String localName)
+				throws SAXException {
 		}
 	}
 
@@ -283,8 +393,9 @@ public final class HTMLHighlighter {
 			instance.inIgnorableElement++;
 		}
 
-		void beforeEnd(final Implementation instance, String localName) {
-			instance.html.append(instance.hl.extraStyleSheet);
+		void beforeEnd(final Implementation instance, String localName)
+				throws SAXException {
+			instance.write(instance.hl.extraStyleSheet);
 		}
 
 		void afterEnd(final Implementation instance, final String localName) {
@@ -306,38 +417,88 @@ public final class HTMLHighlighter {
 		TAG_ACTIONS.put("HEAD", TA_HEAD);
 	}
 
-	private final class Implementation extends AbstractSAXParser implements
-			ContentHandler {
-		StringBuilder html = new StringBuilder();
+	/**
+	 * Writes the HTML while it is parsed. In extracting mode, start tags are
+	 * held back in a stack of pending tags until some text is written inside
+	 * them; elements that end while still pending are dropped, so empty markup
+	 * never reaches the output.
+	 */
+	private final class Implementation implements ContentHandler {
+		private final Appendable out;
+		private final StringBuilder pendingTags = new StringBuilder();
+		private int[] pendingOffsets = new int[16];
+		private int numPending = 0;
+		private final StringBuilder text = new StringBuilder();
 
 		private int inIgnorableElement = 0;
 		private int characterElementIdx = 0;
-		private final BitSet contentBitSet = new BitSet();
+		private final IntervalSet contentTextElements;
 		private final HTMLHighlighter hl = HTMLHighlighter.this;
 
-		Implementation() {
-			super(new HTMLConfiguration());
-			setContentHandler(this);
+		Implementation(final TextDocument doc, final Appendable out) {
+			this.out = out;
+			contentTextElements = doc.getContentTextElements();
 		}
 
-		void process(final TextDocument doc, final InputSource is)
-				throws BoilerpipeProcessingException {
-			for (TextBlock block : doc.getTextBlocks()) {
-				if (block.isContent()) {
-					final BitSet bs = block.getContainedTextElements();
-					if (bs != null) {
-						contentBitSet.or(bs);
-					}
-				}
+		void process(final InputSource is) throws IOException,
+				BoilerpipeProcessingException {
+			final BoilerpipeHTMLParser parser = new BoilerpipeHTMLParser(true);
+			parser.setContentHandler((ContentHandler) this);
+			try {
+				parser.parse(is);
+			} catch (SAXException e) {
+				throw unwrap(e);
 			}
+		}
 
+		void process(final SAXEventTape tape) throws IOException,
+				BoilerpipeProcessingException {
 			try {
-				parse(is);
+				tape.replay(this);
 			} catch (SAXException e) {
-				throw new BoilerpipeProcessingException(e);
+				throw unwrap(e);
+			}
+		}
+
+		private BoilerpipeProcessingException unwrap(final SAXException e)
+				throws IOException {
+			if (e.getException() instanceof IOException) {
+				throw (IOException) e.getException();
+			}
+			return new BoilerpipeProcessingException(e);
+		}
+
+		void write(final CharSequence s) throws SAXException {
+			if (s.length() == 0) {
+				return;
+			}
+			flushTags();
+			try {
+				out.append(s);
 			} catch (IOException e) {
-				throw new BoilerpipeProcessingException(e);
+				throw new SAXException(e);
+			}
+		}
+
+		private void flushTags() throws SAXException {
+			if (numPending > 0) {
+				try {
+					out.append(pendingTags);
+				} catch (IOException e) {
+					throw new SAXException(e);
+				}
+				pendingTags.setLength(0);
+				numPending = 0;
+			}
+		}
+
+		private void openTag() {
+			if (numPending == pendingOffsets.length) {
+				final int[] offsets = new int[numPending * 2];
+				System.arraycopy(pendingOffsets, 0, offsets, 0, numPending);
+				pendingOffsets = offsets;
 			}
+			pendingOffsets[numPending++] = pendingTags.length();
 		}
 
 		public void endDocument() throws SAXException {
@@ -401,6 +562,8 @@ public final class HTMLHighlighter {
 						}
 					}
 
+					openTag();
+					final StringBuilder html = pendingTags;
 					html.append('<');
 					html.append(qName);
 					if (!ignoreAttrs) {
@@ -418,11 +581,14 @@ public final class HTMLHighlighter {
 							html.append(' ');
 							html.append(attr);
 							html.append("=\"");
-							html.append(xmlEncode(value));
+							xmlEncode(html, value);
 							html.append("\"");
 						}
 					}
 					html.append('>');
+					if (!outputHighlightOnly) {
+						flushTags();
+					}
 				}
 			} finally {
 				if (ta != null) {
@@ -455,9 +621,14 @@ public final class HTMLHighlighter {
 						return;
 					}
 
-					html.append("</");
-					html.append(qName);
-					html.append('>');
+					if (numPending > 0) {
+						// nothing has been written inside this element
+						pendingTags.setLength(pendingOffsets[--numPending]);
+					} else {
+						text.setLength(0);
+						text.append("</").append(qName).append('>');
+						write(text);
+					}
 				}
 			} finally {
 				if (ta != null) {
@@ -471,19 +642,21 @@ public final class HTMLHighlighter {
 			characterElementIdx++;
 			if (inIgnorableElement == 0) {
 
-				boolean highlight = contentBitSet.get(characterElementIdx);
+				boolean highlight = contentTextElements.contains(characterElementIdx);
 
-				if (!highlight && outputHighlightOnly) {
+				if (outputHighlightOnly && (!highlight || length == 0)) {
 					return;
 				}
 
+				text.setLength(0);
 				if (highlight) {
-					html.append(preHighlight);
+					text.append(preHighlight);
 				}
-				html.append(xmlEncode(String.valueOf(ch, start, length)));
+				xmlEncode(text, ch, start, length);
 				if (highlight) {
-					html.append(postHighlight);
+					text.append(postHighlight);
 				}
+				write(text);
 			}
 		}
 
@@ -493,34 +666,40 @@ public final class HTMLHighlighter {
 
 	}
 
-	private static String xmlEncode(final String in) {
+	private static void xmlEncode(final StringBuilder out, final String in) {
 		if (in == null) {
-			return "";
+			return;
 		}
-		char c;
-		StringBuilder out = new StringBuilder(in.length());
-
 		for (int i = 0; i < in.length(); i++) {
-			c = in.charAt(i);
-			switch (c) {
-			case '<':
-				out.append("&lt;");
-				break;
-			case '>':
-				out.append("&gt;");
-				break;
-			case '&':
-				out.append("&amp;");
-				break;
-			case '"':
-				out.append("&quot;");
-				break;
-			default:
-				out.append(c);
-			}
+			xmlEncode(out, in.charAt(i));
+		}
+	}
+
+	private static void xmlEncode(final StringBuilder out, final char[] in,
+			final int start, final int length) {
+		final int end = start + length;
+		for (int i = start; i < end; i++) {
+			xmlEncode(out, in[i]);
 		}
+	}
 
-		return out.toString();
+	private static void xmlEncode(final StringBuilder out, final char c) {
+		switch (c) {
+		case '<':
+			out.append("&lt;");
+			break;
+		case '>':
+			out.append("&gt;");
+			break;
+		case '&':
+			out.append("&amp;");
+			break;
+		case '"':
+			out.append("&quot;");
+			break;
+		default:
+			out.append(c);
+		}
 	}
 
 	public Map<String, Set<String>> getTagWhitelist() {
@@ -4,13 +4,10 @@ import java.io.IOException;
 import java.io.StringReader;
 import java.net.URL;
 import java.util.ArrayList;
-import java.util.BitSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-import org.apache.xerces.parsers.AbstractSAXParser;
-import org.cyberneko.html.HTMLConfiguration;
 import org.xml.sax.Attributes;
 import org.xml.sax.ContentHandler;
 import org.xml.sax.InputSource;
@@ -20,12 +17,19 @@ import org.xml.sax.SAXException;
 import de.l3s.boilerpipe.BoilerpipeExtractor;
 import de.l3s.boilerpipe.BoilerpipeProcessingException;
 import de.l3s.boilerpipe.document.Image;
-import de.l3s.boilerpipe.document.TextBlock;
+import de.l3s.boilerpipe.document.IntervalSet;
 import de.l3s.boilerpipe.document.TextDocument;
 
 /**
  * Extracts the images that are enclosed by extracted content. 
  * 
+ * Lazily loaded and responsive images are supported: if "src" is missing or
+ * just a placeholder, the image source is taken from attributes such as
+ * <code>data-src</code>, from <code>srcset</code>, or from the
+ * <code>&lt;source&gt;</code> elements of an enclosing
+ * <code>&lt;picture&gt;</code>. All of these are kept as
+ * {@link Image.Candidate}s.
+ * 
  * @author Christian Kohlschütter
  */
 public final class ImageExtractor {
@@ -73,8 +77,27 @@ public final class ImageExtractor {
 	 */
 	public List<Image> process(final TextDocument doc,
 			final InputSource is) throws BoilerpipeProcessingException {
-		final Implementation implementation = new Implementation();
-		implementation.process(doc, is);
+		final Implementation implementation = new Implementation(doc);
+		implementation.process(is);
+		
+		return implementation.linksHighlight;
+	}
+
+	/**
+	 * Processes the given {@link TextDocument} and the original HTML text (as a
+	 * recorded {@link SAXEventTape}). The HTML is not parsed again.
+	 * 
+	 * @param doc
+	 *            The processed {@link TextDocument}.
+	 * @param tape
+	 *            The recorded events of the original HTML document.
+	 * @return A List of enclosed {@link Image}s
+	 * @throws BoilerpipeProcessingException
+	 */
+	public List<Image> process(final TextDocument doc,
+			final SAXEventTape tape) throws BoilerpipeProcessingException {
+		final Implementation implementation = new Implementation(doc);
+		implementation.process(tape);
 		
 		return implementation.linksHighlight;
 	}
@@ -94,45 +117,189 @@ public final class ImageExtractor {
 			throws IOException, BoilerpipeProcessingException, SAXException {
 		final HTMLDocument htmlDoc = HTMLFetcher.fetch(url);
 
+		final SAXEventTape tape = new SAXEventTape();
 		final TextDocument doc = new BoilerpipeSAXInput(htmlDoc.toInputSource())
-				.getTextDocument();
+				.getTextDocument(tape);
 		extractor.process(doc);
 
-		final InputSource is = htmlDoc.toInputSource();
-
-		return process(doc, is);
+		return process(doc, tape);
 	}
 	
 
-	private final class Implementation extends AbstractSAXParser implements
-			ContentHandler {
+	private static final String[] LAZY_SRC_ATTRIBUTES = { "data-src",
+			"data-lazy-src", "data-original" };
+	private static final String[] SRCSET_ATTRIBUTES = { "srcset",
+			"data-srcset", "data-lazy-srcset" };
+
+	/**
+	 * Parses the given <code>srcset</code> attribute value, following the
+	 * rules of the HTML specification. Candidates with invalid descriptors are
+	 * skipped.
+	 * 
+	 * @param srcset
+	 *            The attribute value, may be null
+	 * @param candidates
+	 *            The list to add the candidates to
+	 */
+	static void parseSrcSet(final String srcset,
+			final List<Image.Candidate> candidates) {
+		if (srcset == null) {
+			return;
+		}
+		final int len = srcset.length();
+		int i = 0;
+		while (true) {
+			while (i < len
+					&& (srcset.charAt(i) == ',' || Character
+							.isWhitespace(srcset.charAt(i)))) {
+				i++;
+			}
+			if (i >= len) {
+				return;
+			}
+			int start = i;
+			while (i < len && !Character.isWhitespace(srcset.charAt(i))) {
+				i++;
+			}
+			String url = srcset.substring(start, i);
+			String descriptor = "";
+			if (url.endsWith(",")) {
+				// no descriptor
+				int end = url.length();
+				while (end > 0 && url.charAt(end - 1) == ',') {
+					end--;
+				}
+				url = url.substring(0, end);
+			} else {
+				start = i;
+				int parens = 0;
+				while (i < len && (srcset.charAt(i) != ',' || parens > 0)) {
+					final char c = srcset.charAt(i);
+					if (c == '(') {
+						parens++;
+					} else if (c == ')' && parens > 0) {
+						parens--;
+					}
+					i++;
+				}
+				descriptor = srcset.substring(start, i).trim();
+			}
+			if (url.length() == 0) {
+				continue;
+			}
+
+			int width = -1;
+			float density = -1;
+			boolean valid = true;
+			for (String d : descriptor.split("\\s+")) {
+				if (d.length() < 2) {
+					continue;
+				}
+				final char unit = Character.toLowerCase(d.charAt(d.length() - 1));
+				final String value = d.substring(0, d.length() - 1);
+				try {
+					if (unit == 'w' && width == -1 && density == -1) {
+						width = Integer.parseInt(value);
+						valid = width > 0;
+					} else if (unit == 'x' && width == -1 && density == -1) {
+						density = Float.parseFloat(value);
+						valid = density > 0;
+					} else if (unit != 'h') {
+						valid = false;
+					}
+				} catch (NumberFormatException e) {
+					valid = false;
+				}
+				if (!valid) {
+					break;
+				}
+			}
+			if (valid) {
+				if (width == -1 && density == -1) {
+					density = 1;
+				}
+				candidates.add(new Image.Candidate(url, width, density));
+			}
+		}
+	}
+
+	/**
+	 * Checks whether the given image source is a placeholder that is usually
+	 * replaced by a script, such as a tiny inline image or a "blank.gif".
+	 * 
+	 * @param src
+	 *            The image source, may be null
+	 * @return true if src is null, empty or a placeholder
+	 */
+	static boolean isPlaceholder(final String src) {
+		if (src == null) {
+			return true;
+		}
+		final String s = src.trim();
+		if (s.length() == 0 || s.equals("#") || s.startsWith("about:")) {
+			return true;
+		}
+		if (s.regionMatches(true, 0, "data:", 0, 5)) {
+			// an actual inline image is usually larger than that
+			return s.length() < 512;
+		}
+
+		int end = s.length();
+		int q = s.indexOf('?');
+		if (q != -1) {
+			end = q;
+		}
+		q = s.indexOf('#');
+		if (q != -1 && q < end) {
+			end = q;
+		}
+		final String name = s.substring(s.lastIndexOf('/', end - 1) + 1, end)
+				.toLowerCase();
+		return name.contains("placeholder") || name.contains("blank.")
+				|| name.contains("spacer") || name.contains("transparent.")
+				|| name.contains("pixel.") || name.contains("1x1")
+				|| name.contains("lazy") || name.contains("loading.")
+				|| name.contains("empty.");
+	}
+
+	/**
+	 * Checks whether the dimensions of an image of the given MIME type can be
+	 * determined.
+	 */
+	private static boolean isSupportedType(final String type) {
+		if (type == null) {
+			return true;
+		}
+		final String t = type.trim().toLowerCase();
+		return t.length() == 0 || t.equals("image/jpeg") || t.equals("image/png")
+				|| t.equals("image/gif") || t.equals("image/webp")
+				|| t.equals("image/bmp") || t.equals("image/svg+xml");
+	}
+
+	private final class Implementation implements ContentHandler {
 		List<Image> linksHighlight = new ArrayList<Image>();
 		private List<Image> linksBuffer = new ArrayList<Image>();
 
+		// the candidates of the SOURCE elements of the current PICTURE, up to
+		// its IMG
+		private List<Image.Candidate> pictureSources = null;
+
 		private int inIgnorableElement = 0;
 		private int characterElementIdx = 0;
-		private final BitSet contentBitSet = new BitSet();
+		private final IntervalSet contentTextElements;
 		
 		private boolean inHighlight = false;
 
-		Implementation() {
-			super(new HTMLConfiguration());
-			setContentHandler(this);
+		Implementation(final TextDocument doc) {
+			contentTextElements = doc.getContentTextElements();
 		}
 
-		void process(final TextDocument doc, final InputSource is)
+		void process(final InputSource is)
 				throws BoilerpipeProcessingException {
-			for (TextBlock block : doc.getTextBlocks()) {
-				if (block.isContent()) {
-					final BitSet bs = block.getContainedTextElements();
-					if (bs != null) {
-						contentBitSet.or(bs);
-					}
-				}
-			}
-
+			final BoilerpipeHTMLParser parser = new BoilerpipeHTMLParser(true);
+			parser.setContentHandler((ContentHandler) this);
 			try {
-				parse(is);
+				parser.parse(is);
 			} catch (SAXException e) {
 				throw new BoilerpipeProcessingException(e);
 			} catch (IOException e) {
@@ -140,6 +307,15 @@ public final class ImageExtractor {
 			}
 		}
 
+		void process(final SAXEventTape tape)
+				throws BoilerpipeProcessingException {
+			try {
+				tape.replay(this);
+			} catch (SAXException e) {
+				throw new BoilerpipeProcessingException(e);
+			}
+		}
+
 		public void endDocument() throws SAXException {
 		}
 
@@ -172,10 +348,20 @@ public final class ImageExtractor {
 
 			try {
 				if (inIgnorableElement == 0) {
-					if(inHighlight && "IMG".equalsIgnoreCase(localName)) {
-						String src = atts.getValue("src");
-						if(src != null && src.length() > 0) {
-							linksBuffer.add(new Image(src, atts.getValue("width"), atts.getValue("height"), atts.getValue("alt")));
+					if("IMG".equalsIgnoreCase(localName)) {
+						if(inHighlight) {
+							final Image image = newImage(atts);
+							if(image != null) {
+								linksBuffer.add(image);
+							}
+						}
+						// NekoHTML does not know PICTURE and may close it much later
+						pictureSources = null;
+					} else if(pictureSources != null && "SOURCE".equalsIgnoreCase(localName)) {
+						// art-directed sources may have another aspect ratio
+						if(atts.getValue("media") == null && isSupportedType(atts.getValue("type"))) {
+							parseSrcSet(atts.getValue("srcset"), pictureSources);
+							parseSrcSet(atts.getValue("data-srcset"), pictureSources);
 						}
 					}
 				}
@@ -186,6 +372,68 @@ public final class ImageExtractor {
 			}
 		}
 
+		private Image newImage(final Attributes atts) {
+			final List<Image.Candidate> candidates = new ArrayList<Image.Candidate>();
+			if (pictureSources != null) {
+				candidates.addAll(pictureSources);
+			}
+			for (String name : SRCSET_ATTRIBUTES) {
+				parseSrcSet(atts.getValue(name), candidates);
+			}
+
+			String src = atts.getValue("src");
+			if (isPlaceholder(src)) {
+				String replacement = null;
+				for (String name : LAZY_SRC_ATTRIBUTES) {
+					final String v = atts.getValue(name);
+					if (!isPlaceholder(v)) {
+						replacement = v.trim();
+						break;
+					}
+				}
+				if (replacement == null) {
+					// the largest candidate, or the one with the lowest density
+					Image.Candidate best = null;
+					for (Image.Candidate c : candidates) {
+						if (best == null) {
+							best = c;
+						} else if (c.getWidth() > 0 || best.getWidth() > 0) {
+							if (c.getWidth() > best.getWidth()) {
+								best = c;
+							}
+						} else if (c.getDensity() < best.getDensity()) {
+							best = c;
+						}
+					}
+					if (best != null) {
+						replacement = best.getSrc();
+					}
+				}
+				if (replacement != null) {
+					src = replacement;
+				}
+			}
+			if (src == null || src.length() == 0) {
+				return null;
+			}
+			if (candidates.isEmpty()) {
+				return new Image(src, atts.getValue("width"),
+						atts.getValue("height"), atts.getValue("alt"));
+			}
+			boolean found = false;
+			for (Image.Candidate c : candidates) {
+				if (c.getSrc().equals(src)) {
+					found = true;
+					break;
+				}
+			}
+			if (!found) {
+				candidates.add(0, new Image.Candidate(src, -1, 1));
+			}
+			return new Image(src, atts.getValue("width"), atts.getValue("height"),
+					atts.getValue("alt"), candidates);
+		}
+
 		public void endElement(String uri, String localName, String qName)
 				throws SAXException {
 			TagAction ta = TAG_ACTIONS.get(localName);
@@ -209,7 +457,7 @@ public final class ImageExtractor {
 			characterElementIdx++;
 			if (inIgnorableElement == 0) {
 
-				boolean highlight = contentBitSet.get(characterElementIdx);
+				boolean highlight = contentTextElements.contains(characterElementIdx);
 				if(!highlight) {
 					if(length == 0) {
 						return;
@@ -251,6 +499,16 @@ public final class ImageExtractor {
 		}
 	};
 
+	private static final TagAction TA_PICTURE = new TagAction() {
+		void beforeStart(final Implementation instance, final String localName) {
+			instance.pictureSources = new ArrayList<Image.Candidate>();
+		}
+
+		void afterEnd(final Implementation instance, final String localName) {
+			instance.pictureSources = null;
+		}
+	};
+
 	private static Map<String, TagAction> TAG_ACTIONS = new HashMap<String, TagAction>();
 	static {
 		TAG_ACTIONS.put("STYLE", TA_IGNORABLE_ELEMENT);
@@ -260,6 +518,7 @@ public final class ImageExtractor {
 		TAG_ACTIONS.put("EMBED", TA_IGNORABLE_ELEMENT);
 		TAG_ACTIONS.put("APPLET", TA_IGNORABLE_ELEMENT);
 		TAG_ACTIONS.put("LINK", TA_IGNORABLE_ELEMENT);
+		TAG_ACTIONS.put("PICTURE", TA_PICTURE);
 
 		TAG_ACTIONS.put("HEAD", TA_IGNORABLE_ELEMENT);
 	}
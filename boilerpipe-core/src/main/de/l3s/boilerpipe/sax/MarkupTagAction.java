@@ -1,10 +1,7 @@
 package de.l3s.boilerpipe.sax;
 
 import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Set;
 import java.util.regex.Pattern;
 
 import org.xml.sax.Attributes;
@@ -13,6 +10,7 @@ import org.xml.sax.SAXException;
 import de.l3s.boilerpipe.document.TextBlock;
 import de.l3s.boilerpipe.labels.DefaultLabels;
 import de.l3s.boilerpipe.labels.LabelAction;
+import de.l3s.boilerpipe.labels.MarkupPath;
 
 /**
  * Assigns labels for element CSS classes and ids to the corresponding
@@ -20,12 +18,17 @@ import de.l3s.boilerpipe.labels.LabelAction;
  * <code>{@link DefaultLabels#MARKUP_PREFIX}.</code>, and IDs are prefixed by
  * <code>{@link DefaultLabels#MARKUP_PREFIX}#</code>
  * 
+ * The labels are not added to the block's label set, but kept in a
+ * {@link MarkupPath} that links each element to its enclosing elements (see
+ * {@link TextBlock#getMarkupPaths()}). Queries for labels such as
+ * <code>"&lt;.article &lt;P"</code> (an element with class "article" that
+ * encloses a paragraph) are answered from that path.
+ * 
  * @author Christian Kohlschütter
  */
 public final class MarkupTagAction implements TagAction {
 
 	private final boolean isBlockLevel;
-	private LinkedList<List<String>> labelStack = new LinkedList<List<String>>();
 
 	public MarkupTagAction(final boolean isBlockLevel) {
 		this.isBlockLevel = isBlockLevel;
@@ -61,22 +64,15 @@ public final class MarkupTagAction implements TagAction {
 			labels.add(DefaultLabels.MARKUP_PREFIX + "#" + id);
 		}
 
-		Set<String> ancestors = getAncestorLabels();
-		List<String> labelsWithAncestors = new ArrayList<String>(
-				(ancestors.size() + 1) * labels.size());
-
-		for (String l : labels) {
-			for (String an : ancestors) {
-				labelsWithAncestors.add(an);
-				labelsWithAncestors.add(an + " " + l);
-			}
-			labelsWithAncestors.add(l);
+		MarkupPath parent = instance.markupPath;
+		if (parent == null) {
+			parent = MarkupPath.newRoot();
 		}
+		final MarkupPath path = parent.child(labels.toArray(new String[labels
+				.size()]));
+		instance.markupPath = path;
 
-		instance.addLabelAction(new LabelAction(labelsWithAncestors
-				.toArray(new String[labelsWithAncestors.size()])));
-
-		labelStack.add(labels);
+		instance.addLabelAction(new MarkupPathAction(path));
 
 		return isBlockLevel;
 	}
@@ -85,7 +81,10 @@ public final class MarkupTagAction implements TagAction {
 	public boolean end(BoilerpipeHTMLContentHandler instance, String localName,
 			String qName) throws SAXException {
 
-		labelStack.removeLast();
+		final MarkupPath path = instance.markupPath;
+		if (path != null) {
+			instance.markupPath = path.getParent();
+		}
 		return isBlockLevel;
 	}
 
@@ -93,14 +92,20 @@ public final class MarkupTagAction implements TagAction {
     	return isBlockLevel;
     }
     
-	private Set<String> getAncestorLabels() {
-		Set<String> set = new HashSet<String>();
-		for (List<String> labels : labelStack) {
-			if (labels == null) {
-				continue;
-			}
-			set.addAll(labels);
+	private static final class MarkupPathAction extends LabelAction {
+		private final MarkupPath path;
+
+		MarkupPathAction(final MarkupPath path) {
+			this.path = path;
+		}
+
+		@Override
+		public void addTo(final TextBlock tb) {
+			tb.addMarkupPath(path);
+		}
+
+		public String toString() {
+			return super.toString() + "{" + path + "}";
 		}
-		return set;
 	}
 }
@@ -0,0 +1,480 @@
+package de.l3s.boilerpipe.sax;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+
+import de.l3s.boilerpipe.BoilerpipeProcessingException;
+import de.l3s.boilerpipe.document.TextDocument;
+
+/**
+ * A compact in-memory recording of the (balanced) element and character event
+ * stream of one HTML parse.
+ *
+ * Tag and attribute names are interned, attributes are kept in flat arrays and
+ * character data is stored as slices of a single shared buffer. The recorded
+ * events can be replayed into any number of {@link ContentHandler}s, e.g.
+ * {@link BoilerpipeHTMLContentHandler}, {@link HTMLHighlighter} or
+ * {@link ImageExtractor}, without parsing the HTML again.
+ *
+ * A tape must not be replayed while it is being recorded. Once recording has
+ * finished, it may be replayed concurrently from several threads.
+ */
+public final class SAXEventTape implements ContentHandler {
+	private static final int OP_START_ELEMENT = 0;
+	private static final int OP_END_ELEMENT = 1;
+	private static final int OP_CHARACTERS = 2;
+	private static final int OP_IGNORABLE_WHITESPACE = 3;
+
+	private int[] ops = new int[256];
+	private int opsLength = 0;
+
+	private char[] text = new char[1024];
+	private int textLength = 0;
+
+	// per attribute: uri, localName, qName, type (name indexes)
+	private int[] attNames = new int[64];
+	private String[] attValues = new String[16];
+	private int numAtts = 0;
+
+	private final Map<String, Integer> nameIndex = new HashMap<String, Integer>();
+	private final List<String> names = new ArrayList<String>();
+
+	private int numEvents = 0;
+
+	/**
+	 * Creates an empty tape. Use it as the {@link ContentHandler} of a parser,
+	 * or wrap another handler using {@link #tee(ContentHandler)}.
+	 */
+	public SAXEventTape() {
+	}
+
+	/**
+	 * Parses the given {@link InputSource} using NekoHTML and records all
+	 * events.
+	 *
+	 * @param is
+	 *            The HTML document.
+	 * @return The recorded tape.
+	 * @throws BoilerpipeProcessingException
+	 */
+	public static SAXEventTape record(final InputSource is)
+			throws BoilerpipeProcessingException {
+		final SAXEventTape tape = new SAXEventTape();
+		final BoilerpipeHTMLParser parser = new BoilerpipeHTMLParser(true);
+		parser.setContentHandler((ContentHandler) tape);
+		try {
+			parser.parse(is);
+		} catch (SAXException e) {
+			throw new BoilerpipeProcessingException(e);
+		} catch (IOException e) {
+			throw new BoilerpipeProcessingException(e);
+		}
+		return tape;
+	}
+
+	/**
+	 * Returns a {@link ContentHandler} which records all events into this tape
+	 * and forwards them to the given handler. Character data is recorded before
+	 * it is forwarded, so the delegate may modify the passed arrays.
+	 *
+	 * @param delegate
+	 *            The handler that receives the live events.
+	 * @return The recording handler.
+	 */
+	public ContentHandler tee(final ContentHandler delegate) {
+		return new Tee(this, delegate);
+	}
+
+	/**
+	 * Replays all recorded events into the given handler, enclosed by
+	 * {@link ContentHandler#startDocument()} and
+	 * {@link ContentHandler#endDocument()}.
+	 *
+	 * The character arrays passed to the handler are private copies, i.e. the
+	 * handler may modify them.
+	 *
+	 * @param handler
+	 *            The receiving handler.
+	 * @throws SAXException
+	 */
+	public void replay(final ContentHandler handler) throws SAXException {
+		final TapeAttributes atts = new TapeAttributes();
+		char[] scratch = new char[256];
+
+		handler.startDocument();
+		int i = 0;
+		while (i < opsLength) {
+			switch (ops[i]) {
+			case OP_START_ELEMENT:
+				atts.offset = ops[i + 4];
+				atts.length = ops[i + 5];
+				handler.startElement(names.get(ops[i + 1]),
+						names.get(ops[i + 2]), names.get(ops[i + 3]), atts);
+				i += 6;
+				break;
+			case OP_END_ELEMENT:
+				handler.endElement(names.get(ops[i + 1]),
+						names.get(ops[i + 2]), names.get(ops[i + 3]));
+				i += 4;
+				break;
+			case OP_CHARACTERS:
+			case OP_IGNORABLE_WHITESPACE:
+				final int len = ops[i + 2];
+				if (len > scratch.length) {
+					scratch = new char[Math.max(len, scratch.length * 2)];
+				}
+				System.arraycopy(text, ops[i + 1], scratch, 0, len);
+				if (ops[i] == OP_CHARACTERS) {
+					handler.characters(scratch, 0, len);
+				} else {
+					handler.ignorableWhitespace(scratch, 0, len);
+				}
+				i += 3;
+				break;
+			default:
+				throw new IllegalStateException("Corrupt event tape");
+			}
+		}
+		handler.endDocument();
+	}
+
+	/**
+	 * Replays this tape into a new {@link BoilerpipeHTMLContentHandler} using
+	 * the {@link DefaultTagActionMap}.
+	 *
+	 * @return The resulting {@link TextDocument}.
+	 * @throws BoilerpipeProcessingException
+	 */
+	public TextDocument toTextDocument() throws BoilerpipeProcessingException {
+		return toTextDocument(new BoilerpipeHTMLContentHandler());
+	}
+
+	/**
+	 * Replays this tape into the given {@link BoilerpipeHTMLContentHandler}.
+	 *
+	 * @param handler
+	 *            A fresh (or recycled) content handler.
+	 * @return The resulting {@link TextDocument}.
+	 * @throws BoilerpipeProcessingException
+	 */
+	public TextDocument toTextDocument(
+			final BoilerpipeHTMLContentHandler handler)
+			throws BoilerpipeProcessingException {
+		try {
+			replay(handler);
+		} catch (SAXException e) {
+			throw new BoilerpipeProcessingException(e);
+		}
+		return handler.toTextDocument();
+	}
+
+	/**
+	 * Returns the value of an attribute of the first element with the given
+	 * local name that has this attribute, e.g. the <code>href</code> of the
+	 * <code>BASE</code> element. Names are compared case-insensitively.
+	 *
+	 * @param localName
+	 *            The element name.
+	 * @param attributeName
+	 *            The attribute name.
+	 * @return The attribute value, or <code>null</code>.
+	 */
+	public String getFirstAttributeValue(final String localName,
+			final String attributeName) {
+		int i = 0;
+		while (i < opsLength) {
+			switch (ops[i]) {
+			case OP_START_ELEMENT:
+				if (localName.equalsIgnoreCase(names.get(ops[i + 2]))) {
+					final int end = ops[i + 4] + ops[i + 5];
+					for (int a = ops[i + 4]; a < end; a++) {
+						if (attributeName.equalsIgnoreCase(names
+								.get(attNames[a * 4 + 2]))) {
+							return attValues[a];
+						}
+					}
+				}
+				i += 6;
+				break;
+			case OP_END_ELEMENT:
+				i += 4;
+				break;
+			default:
+				i += 3;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the number of recorded element and character events.
+	 */
+	public int getNumEvents() {
+		return numEvents;
+	}
+
+	/**
+	 * Returns the number of recorded characters.
+	 */
+	public int getNumCharacters() {
+		return textLength;
+	}
+
+	public void startElement(String uri, String localName, String qName,
+			Attributes atts) throws SAXException {
+		final int n = atts.getLength();
+		ensureOps(6);
+		ops[opsLength++] = OP_START_ELEMENT;
+		ops[opsLength++] = intern(uri);
+		ops[opsLength++] = intern(localName);
+		ops[opsLength++] = intern(qName);
+		ops[opsLength++] = numAtts;
+		ops[opsLength++] = n;
+
+		if (numAtts + n > attValues.length) {
+			final int cap = Math.max(numAtts + n, attValues.length * 2);
+			attValues = Arrays.copyOf(attValues, cap);
+			attNames = Arrays.copyOf(attNames, cap * 4);
+		}
+		for (int i = 0; i < n; i++) {
+			final int p = numAtts * 4;
+			attNames[p] = intern(atts.getURI(i));
+			attNames[p + 1] = intern(atts.getLocalName(i));
+			attNames[p + 2] = intern(atts.getQName(i));
+			attNames[p + 3] = intern(atts.getType(i));
+			attValues[numAtts] = atts.getValue(i);
+			numAtts++;
+		}
+		numEvents++;
+	}
+
+	public void endElement(String uri, String localName, String qName)
+			throws SAXException {
+		ensureOps(4);
+		ops[opsLength++] = OP_END_ELEMENT;
+		ops[opsLength++] = intern(uri);
+		ops[opsLength++] = intern(localName);
+		ops[opsLength++] = intern(qName);
+		numEvents++;
+	}
+
+	public void characters(char[] ch, int start, int length)
+			throws SAXException {
+		addText(OP_CHARACTERS, ch, start, length);
+	}
+
+	public void ignorableWhitespace(char[] ch, int start, int length)
+			throws SAXException {
+		addText(OP_IGNORABLE_WHITESPACE, ch, start, length);
+	}
+
+	private void addText(final int op, final char[] ch, final int start,
+			final int length) {
+		if (textLength + length > text.length) {
+			text = Arrays.copyOf(text,
+					Math.max(textLength + length, text.length * 2));
+		}
+		System.arraycopy(ch, start, text, textLength, length);
+
+		ensureOps(3);
+		ops[opsLength++] = op;
+		ops[opsLength++] = textLength;
+		ops[opsLength++] = length;
+		textLength += length;
+		numEvents++;
+	}
+
+	private void ensureOps(final int n) {
+		if (opsLength + n > ops.length) {
+			ops = Arrays.copyOf(ops, Math.max(opsLength + n, ops.length * 2));
+		}
+	}
+
+	private int intern(final String name) {
+		final String key = name == null ? "" : name;
+		Integer idx = nameIndex.get(key);
+		if (idx == null) {
+			idx = names.size();
+			names.add(key);
+			nameIndex.put(key, idx);
+		}
+		return idx;
+	}
+
+	public void startDocument() throws SAXException {
+	}
+
+	public void endDocument() throws SAXException {
+	}
+
+	public void setDocumentLocator(Locator locator) {
+	}
+
+	public void startPrefixMapping(String prefix, String uri)
+			throws SAXException {
+	}
+
+	public void endPrefixMapping(String prefix) throws SAXException {
+	}
+
+	public void processingInstruction(String target, String data)
+			throws SAXException {
+	}
+
+	public void skippedEntity(String name) throws SAXException {
+	}
+
+	/**
+	 * A read-only view on the attributes of one recorded element.
+	 */
+	private final class TapeAttributes implements Attributes {
+		int offset;
+		int length;
+
+		public int getLength() {
+			return length;
+		}
+
+		private String name(final int i, final int field) {
+			if (i < 0 || i >= length) {
+				return null;
+			}
+			return names.get(attNames[(offset + i) * 4 + field]);
+		}
+
+		public String getURI(int index) {
+			return name(index, 0);
+		}
+
+		public String getLocalName(int index) {
+			return name(index, 1);
+		}
+
+		public String getQName(int index) {
+			return name(index, 2);
+		}
+
+		public String getType(int index) {
+			return name(index, 3);
+		}
+
+		public String getValue(int index) {
+			if (index < 0 || index >= length) {
+				return null;
+			}
+			return attValues[offset + index];
+		}
+
+		public int getIndex(String uri, String localName) {
+			for (int i = 0; i < length; i++) {
+				if (localName.equals(getLocalName(i))
+						&& (uri == null ? "" : uri).equals(getURI(i))) {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		public int getIndex(String qName) {
+			for (int i = 0; i < length; i++) {
+				if (qName.equals(getQName(i))) {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		public String getType(String uri, String localName) {
+			return getType(getIndex(uri, localName));
+		}
+
+		public String getType(String qName) {
+			return getType(getIndex(qName));
+		}
+
+		public String getValue(String uri, String localName) {
+			return getValue(getIndex(uri, localName));
+		}
+
+		public String getValue(String qName) {
+			return getValue(getIndex(qName));
+		}
+	}
+
+	/**
+	 * Records events into a tape while forwarding them to another handler.
+	 */
+	private static final class Tee implements ContentHandler {
+		private final SAXEventTape tape;
+		private final ContentHandler delegate;
+
+		Tee(final SAXEventTape tape, final ContentHandler delegate) {
+			this.tape = tape;
+			this.delegate = delegate;
+		}
+
+		public void setDocumentLocator(Locator locator) {
+			delegate.setDocumentLocator(locator);
+		}
+
+		public void startDocument() throws SAXException {
+			delegate.startDocument();
+		}
+
+		public void endDocument() throws SAXException {
+			delegate.endDocument();
+		}
+
+		public void startPrefixMapping(String prefix, String uri)
+				throws SAXException {
+			delegate.startPrefixMapping(prefix, uri);
+		}
+
+		public void endPrefixMapping(String prefix) throws SAXException {
+			delegate.endPrefixMapping(prefix);
+		}
+
+		public void startElement(String uri, String localName, String qName,
+				Attributes atts) throws SAXException {
+			tape.startElement(uri, localName, qName, atts);
+			delegate.startElement(uri, localName, qName, atts);
+		}
+
+		public void endElement(String uri, String localName, String qName)
+				throws SAXException {
+			tape.endElement(uri, localName, qName);
+			delegate.endElement(uri, localName, qName);
+		}
+
+		public void characters(char[] ch, int start, int length)
+				throws SAXException {
+			tape.characters(ch, start, length);
+			delegate.characters(ch, start, length);
+		}
+
+		public void ignorableWhitespace(char[] ch, int start, int length)
+				throws SAXException {
+			tape.ignorableWhitespace(ch, start, length);
+			delegate.ignorableWhitespace(ch, start, length);
+		}
+
+		public void processingInstruction(String target, String data)
+				throws SAXException {
+			delegate.processingInstruction(target, data);
+		}
+
+		public void skippedEntity(String name) throws SAXException {
+			delegate.skippedEntity(name);
+		}
+	}
+}
@@ -24,6 +24,12 @@ import org.xml.sax.SAXException;
  * Defines an action that is to be performed whenever a particular tag occurs
  * during HTML parsing.
  * 
+ * TagActions are shared by all handlers that use the same {@link TagActionMap}
+ * (e.g., {@link DefaultTagActionMap#INSTANCE}), possibly in several threads at
+ * once. They must therefore be stateless: any state that belongs to the
+ * document being parsed is kept in the {@link BoilerpipeHTMLContentHandler},
+ * see {@link BoilerpipeHTMLContentHandler#getTagActionState(Object)}.
+ * 
  * @author Christian Kohlschütter
  */
 public interface TagAction {
@@ -23,6 +23,9 @@ import java.util.HashMap;
  * Base class for definition a set of {@link TagAction}s that are to be used for the
  * HTML parsing process.
  * 
+ * A map may be shared by handlers in several threads, as long as it is not
+ * modified any more once parsing has started (see {@link TagAction}).
+ * 
  * @see DefaultTagActionMap
  * @author Christian Kohlschütter
  */
@@ -1,152 +1,293 @@
 package de.l3s.boilerpipe.sax;
 
+import java.io.IOException;
+import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+
+import de.l3s.boilerpipe.BoilerpipeProcessingException;
+import de.l3s.boilerpipe.document.IntervalSet;
+import de.l3s.boilerpipe.document.TextDocument;
 import de.l3s.boilerpipe.document.Video;
 
 /**
- * Simple video parser that uses regex patterns to extract video elements from HTML.
+ * Extracts the videos of an HTML document from its element events:
+ * <code>&lt;video&gt;</code> (with its <code>src</code> attribute or the first
+ * nested <code>&lt;source&gt;</code>), <code>&lt;iframe&gt;</code>,
+ * <code>&lt;object&gt;</code> and <code>&lt;embed&gt;</code>.
+ *
+ * Each video is tied to the index of the next non-whitespace text element
+ * that follows it. If a processed {@link TextDocument} is given, a video is
+ * marked as content if that text element belongs to a content block.
  */
 public final class VideoParser {
 	public static final VideoParser INSTANCE = new VideoParser();
-	
-	// Simple regex patterns for video elements
-	private static final Pattern VIDEO_TAG_PATTERN = Pattern.compile(
-		"<video[^>]*(?:src=[\"']([^\"']+)[\"'][^>]*|[^>]*)>(?:.*?<source[^>]*src=[\"']([^\"']+)[\"'][^>]*>)?.*?</video>", 
-		Pattern.CASE_INSENSITIVE);
-	
-	private static final Pattern IFRAME_PATTERN = Pattern.compile(
-		"<iframe[^>]*src=[\"']([^\"']+)[\"'][^>]*>", 
-		Pattern.CASE_INSENSITIVE);
-	
-	private static final Pattern OBJECT_EMBED_PATTERN = Pattern.compile(
-		"<(?:object|embed)[^>]*(?:data|src)=[\"']([^\"']+)[\"'][^>]*>", 
-		Pattern.CASE_INSENSITIVE);
-
-	private static final Pattern VIDEO_LINK_PATTERN = Pattern.compile(
-			"<a[^>]*href=[\"'](/video/[^\"']+)[\"'][^>]*>",
-			Pattern.CASE_INSENSITIVE
-	);
-	
+
 	private VideoParser() {
 	}
-	
+
 	/**
 	 * Returns the singleton instance of VideoParser.
 	 *
-     */
+	 */
 	public static VideoParser getInstance() {
 		return INSTANCE;
 	}
 
 	/**
-	 * Extracts videos from HTML content using simple regex patterns.
-	 * 
-	 * @param htmlContent The HTML content to parse
+	 * Extracts all videos from the given HTML. None of the videos is marked as
+	 * content.
+	 *
+	 * If the HTML cannot be parsed, the videos found up to that point are
+	 * returned.
+	 *
+	 * @param htmlContent
+	 *            The HTML content to parse
 	 * @return List of extracted videos
 	 */
 	public List<Video> extractVideos(final String htmlContent) {
-		List<Video> videos = new ArrayList<Video>();
-		
-		// Extract video tags
-		extractVideoTags(htmlContent, videos);
-		
-		// Extract iframe
-		extractIframe(htmlContent, videos);
-		
-		// Extract object/embed tags
-		extractObjectEmbeds(htmlContent, videos);
-
-		
-		return videos;
+		final Implementation implementation = new Implementation(null);
+		try {
+			implementation.process(new InputSource(new StringReader(
+					htmlContent)));
+		} catch (BoilerpipeProcessingException e) {
+			implementation.endDocument();
+		}
+		return implementation.videos;
 	}
 
-    // matcher.group(0) = entire matched text
-    // matcher.group(1) = first capture group (src attribute in video tag)
-    // matcher.group(2) = second capture group (src attribute in source tag)
-	
-	private void extractVideoTags(final String htmlContent, List<Video> videos) {
-		Matcher matcher = VIDEO_TAG_PATTERN.matcher(htmlContent);
-		
-		while (matcher.find()) {
-			String src = matcher.group(1) != null ? matcher.group(1) : matcher.group(2);
-			if (src != null && !src.isEmpty()) {
-				String videoTag = matcher.group(0);
-				String width = extractAttribute(videoTag, "width");
-				String height = extractAttribute(videoTag, "height");
-				if (!isCorrectFormat(width)){
-					width = "-1";
-				}
-				if (!isCorrectFormat(height)){
-					height = "-1";
-				}
-				videos.add(new Video(src, width, height));
+	/**
+	 * Processes the given {@link TextDocument} and the original HTML text (as a
+	 * String).
+	 *
+	 * @param doc
+	 *            The processed {@link TextDocument}.
+	 * @param origHTML
+	 *            The original HTML document.
+	 * @return A List of {@link Video}s, in document order
+	 * @throws BoilerpipeProcessingException
+	 */
+	public List<Video> process(final TextDocument doc, final String origHTML)
+			throws BoilerpipeProcessingException {
+		return process(doc, new InputSource(new StringReader(origHTML)));
+	}
+
+	/**
+	 * Processes the given {@link TextDocument} and the original HTML text (as
+	 * an {@link InputSource}).
+	 *
+	 * @param doc
+	 *            The processed {@link TextDocument}.
+	 * @param is
+	 *            The original HTML document.
+	 * @return A List of {@link Video}s, in document order
+	 * @throws BoilerpipeProcessingException
+	 */
+	public List<Video> process(final TextDocument doc, final InputSource is)
+			throws BoilerpipeProcessingException {
+		final Implementation implementation = new Implementation(doc);
+		implementation.process(is);
+
+		return implementation.videos;
+	}
+
+	/**
+	 * Processes the given {@link TextDocument} and the original HTML text (as
+	 * a recorded {@link SAXEventTape}). The HTML is not parsed again.
+	 *
+	 * @param doc
+	 *            The processed {@link TextDocument}.
+	 * @param tape
+	 *            The recorded events of the original HTML document.
+	 * @return A List of {@link Video}s, in document order
+	 * @throws BoilerpipeProcessingException
+	 */
+	public List<Video> process(final TextDocument doc, final SAXEventTape tape)
+			throws BoilerpipeProcessingException {
+		final Implementation implementation = new Implementation(doc);
+		implementation.process(tape);
+
+		return implementation.videos;
+	}
+
+	private static String dimension(final String s) {
+		if (s == null) {
+			return "-1";
+		}
+		final String v = s.trim();
+		if (v.isEmpty()) {
+			return "-1";
+		}
+		for (int i = 0; i < v.length(); i++) {
+			if (!Character.isDigit(v.charAt(i))) {
+				return "-1";
 			}
 		}
+		return v;
 	}
-	
-	private void extractIframe(final String htmlContent, List<Video> videos) {
-		Matcher matcher = IFRAME_PATTERN.matcher(htmlContent);
-		
-		while (matcher.find()) {
-			String src = matcher.group(1);
-			if (src != null && !src.isEmpty()) {
-				String iframeTag = matcher.group(0);
-				String width = extractAttribute(iframeTag, "width");
-				String height = extractAttribute(iframeTag, "height");
-				if (!isCorrectFormat(width)){
-					width = "-1";
-				}
-				if (!isCorrectFormat(height)){
-					height = "-1";
+
+	private static boolean isIgnorable(final String localName) {
+		return "STYLE".equalsIgnoreCase(localName)
+				|| "SCRIPT".equalsIgnoreCase(localName)
+				|| "OPTION".equalsIgnoreCase(localName)
+				|| "NOSCRIPT".equalsIgnoreCase(localName)
+				|| "HEAD".equalsIgnoreCase(localName);
+	}
+
+	private static final class Implementation implements ContentHandler {
+		final List<Video> videos = new ArrayList<Video>();
+
+		// videos waiting for the next text element
+		private final List<String[]> pending = new ArrayList<String[]>();
+
+		private int inIgnorableElement = 0;
+		private int characterElementIdx = 0;
+		private final IntervalSet contentTextElements;
+
+		// NekoHTML does not know VIDEO and SOURCE, so a VIDEO element may only
+		// be closed together with its parent. Nested SOURCE elements are thus
+		// accepted until the video is followed by text.
+		private String[] openVideo = null;
+
+		Implementation(final TextDocument doc) {
+			contentTextElements = doc == null ? new IntervalSet() : doc
+					.getContentTextElements();
+		}
+
+		void process(final InputSource is)
+				throws BoilerpipeProcessingException {
+			final BoilerpipeHTMLParser parser = new BoilerpipeHTMLParser(true);
+			parser.setContentHandler((ContentHandler) this);
+			try {
+				parser.parse(is);
+			} catch (SAXException e) {
+				throw new BoilerpipeProcessingException(e);
+			} catch (IOException e) {
+				throw new BoilerpipeProcessingException(e);
+			}
+		}
+
+		void process(final SAXEventTape tape)
+				throws BoilerpipeProcessingException {
+			try {
+				tape.replay(this);
+			} catch (SAXException e) {
+				throw new BoilerpipeProcessingException(e);
+			}
+		}
+
+		private void addCandidate(final String src, final String width,
+				final String height) {
+			pending.add(new String[] { src, dimension(width), dimension(height) });
+		}
+
+		private void resolvePending(final int textElementIdx,
+				final boolean content) {
+			for (String[] v : pending) {
+				if (v[0] != null && !v[0].trim().isEmpty()) {
+					videos.add(new Video(v[0].trim(), v[1], v[2],
+							textElementIdx, content));
 				}
-				videos.add(new Video(src, width, height));
 			}
+			pending.clear();
+			openVideo = null;
 		}
-	}
-	
-	private void extractObjectEmbeds(final String htmlContent, List<Video> videos) {
-		Matcher matcher = OBJECT_EMBED_PATTERN.matcher(htmlContent);
-		
-		while (matcher.find()) {
-			String src = matcher.group(1);
-			if (src != null && !src.isEmpty()) {
-				String embedTag = matcher.group(0);
-				String width = extractAttribute(embedTag, "width");
-				String height = extractAttribute(embedTag, "height");
-				if (!isCorrectFormat(width)){
-					width = "-1";
+
+		public void endDocument() {
+			resolvePending(-1, false);
+		}
+
+		public void endPrefixMapping(String prefix) throws SAXException {
+		}
+
+		public void ignorableWhitespace(char[] ch, int start, int length)
+				throws SAXException {
+		}
+
+		public void processingInstruction(String target, String data)
+				throws SAXException {
+		}
+
+		public void setDocumentLocator(Locator locator) {
+		}
+
+		public void skippedEntity(String name) throws SAXException {
+		}
+
+		public void startDocument() throws SAXException {
+		}
+
+		public void startElement(String uri, String localName, String qName,
+				Attributes atts) throws SAXException {
+			if (isIgnorable(localName)) {
+				inIgnorableElement++;
+			}
+
+			if ("VIDEO".equalsIgnoreCase(localName)) {
+				openVideo = new String[] { atts.getValue("src"),
+						dimension(atts.getValue("width")),
+						dimension(atts.getValue("height")) };
+				pending.add(openVideo);
+			} else if ("SOURCE".equalsIgnoreCase(localName)) {
+				if (openVideo != null
+						&& (openVideo[0] == null || openVideo[0].trim()
+								.isEmpty())) {
+					openVideo[0] = atts.getValue("src");
 				}
-				if (!isCorrectFormat(height)){
-					height = "-1";
+			} else if ("AUDIO".equalsIgnoreCase(localName)
+					|| "PICTURE".equalsIgnoreCase(localName)) {
+				// their SOURCE elements do not belong to the video
+				openVideo = null;
+			} else if ("IFRAME".equalsIgnoreCase(localName)) {
+				addCandidate(atts.getValue("src"), atts.getValue("width"),
+						atts.getValue("height"));
+			} else if ("OBJECT".equalsIgnoreCase(localName)) {
+				String src = atts.getValue("data");
+				if (src == null) {
+					src = atts.getValue("src");
 				}
-				videos.add(new Video(src, width, height));
+				addCandidate(src, atts.getValue("width"),
+						atts.getValue("height"));
+			} else if ("EMBED".equalsIgnoreCase(localName)) {
+				addCandidate(atts.getValue("src"), atts.getValue("width"),
+						atts.getValue("height"));
 			}
 		}
-	}
 
-	private String extractAttribute(final String tag, final String attributeName) {
-		Pattern pattern = Pattern.compile(
-			"\\b" + attributeName + "=[\"']([^\"']*)[\"']", 
-			Pattern.CASE_INSENSITIVE);
-		Matcher matcher = pattern.matcher(tag);
-		
-		if (matcher.find()) {
-			return matcher.group(1);
+		public void endElement(String uri, String localName, String qName)
+				throws SAXException {
+			if ("VIDEO".equalsIgnoreCase(localName)) {
+				openVideo = null;
+			}
+
+			if (isIgnorable(localName)) {
+				inIgnorableElement--;
+			}
 		}
-		return null;
-	}
 
-	private boolean isCorrectFormat(String s){
-		if (s == null) return false;
-		for (int i = 0; i<s.length(); i++){
-			if (!Character.isDigit(s.charAt(i))){
-				return false;
+		public void characters(char[] ch, int start, int length)
+				throws SAXException {
+			characterElementIdx++;
+			if (inIgnorableElement != 0 || pending.isEmpty()) {
+				return;
 			}
+			for (int i = start; i < start + length; i++) {
+				if (!Character.isWhitespace(ch[i])) {
+					resolvePending(characterElementIdx,
+							contentTextElements.contains(characterElementIdx));
+					return;
+				}
+			}
+		}
+
+		public void startPrefixMapping(String prefix, String uri)
+				throws SAXException {
 		}
-		return true;
 	}
-} 
\ No newline at end of file
+}
@@ -0,0 +1,544 @@
+package de.l3s.boilerpipe.tools;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.xml.sax.InputSource;
+
+import de.l3s.boilerpipe.BoilerpipeExtractor;
+import de.l3s.boilerpipe.document.TextBlock;
+import de.l3s.boilerpipe.document.TextDocument;
+import de.l3s.boilerpipe.extractors.ArticleExtractor;
+import de.l3s.boilerpipe.extractors.ArticleSentencesExtractor;
+import de.l3s.boilerpipe.extractors.BatchExtractor;
+import de.l3s.boilerpipe.extractors.CanolaExtractor;
+import de.l3s.boilerpipe.extractors.DefaultExtractor;
+import de.l3s.boilerpipe.extractors.KeepEverythingExtractor;
+import de.l3s.boilerpipe.extractors.LargestContentExtractor;
+import de.l3s.boilerpipe.extractors.NumWordsRulesExtractor;
+import de.l3s.boilerpipe.sax.InputSourceable;
+
+/**
+ * Extracts the text of a corpus of HTML files, writing one JSON record per
+ * file (JSON Lines).
+ *
+ * Inputs are directories (searched recursively), glob patterns such as
+ * <code>"crawl/**&#47;*.html"</code>, single files, or list files prefixed
+ * with <code>@</code> that name one input per line. The files are processed by
+ * a {@link BatchExtractor}, largest first, so that a few large files do not
+ * hold up the end of the run.
+ *
+ * The output is its own checkpoint: with <code>--resume</code>, files that
+ * have already been extracted are skipped, and new records are appended. Files
+ * whose record is an error, e.g. after running out of memory, are tried again,
+ * so a file may have an error record followed by a later one.
+ *
+ * The workers of the {@link BatchExtractor} take the next file from a shared
+ * queue whenever they are done with one. This balances the load like a
+ * work-stealing pool would, as each file is a single task.
+ */
+public final class CorpusExtractor {
+
+    private static final String USAGE = "Usage: CorpusExtractor [options] input...\n"
+            + "  input              a directory, a glob pattern, a file, or @file listing inputs\n"
+            + "  -e, --extractor X  article (default), default, largest, canola, sentences,\n"
+            + "                     numwords, everything, or the name of an extractor class\n"
+            + "  -o, --output F     the JSONL output file (default: standard output)\n"
+            + "  -t, --threads N    the number of worker threads (default: number of cores)\n"
+            + "  -c, --charset C    the charset of the files (default: detected by the parser)\n"
+            + "  -r, --resume       skip files that have already been extracted into the output\n";
+
+    // records are flushed in groups; a record cut off by a crash is
+    // discarded when resuming
+    private static final int FLUSH_INTERVAL = 100;
+
+    private final BoilerpipeExtractor extractor;
+    private final int threads;
+    private final Charset charset;
+
+    /**
+     * Creates a corpus extractor.
+     *
+     * @param extractor
+     *            The extractor.
+     * @param threads
+     *            The number of worker threads.
+     * @param charset
+     *            The charset of the files, or <code>null</code> to let the
+     *            parser detect it.
+     */
+    public CorpusExtractor(final BoilerpipeExtractor extractor,
+            final int threads, final Charset charset) {
+        this.extractor = extractor;
+        this.threads = threads;
+        this.charset = charset;
+    }
+
+    public static void main(final String[] args) throws Exception {
+        String extractorName = "article";
+        Path output = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        Charset charset = null;
+        boolean resume = false;
+        final List<String> inputs = new ArrayList<String>();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                final String arg = args[i];
+                if ("-e".equals(arg) || "--extractor".equals(arg)) {
+                    extractorName = args[++i];
+                } else if ("-o".equals(arg) || "--output".equals(arg)) {
+                    output = Paths.get(args[++i]);
+                } else if ("-t".equals(arg) || "--threads".equals(arg)) {
+                    threads = Integer.parseInt(args[++i]);
+                } else if ("-c".equals(arg) || "--charset".equals(arg)) {
+                    charset = Charset.forName(args[++i]);
+                } else if ("-r".equals(arg) || "--resume".equals(arg)) {
+                    resume = true;
+                } else if ("-h".equals(arg) || "--help".equals(arg)) {
+                    System.out.print(USAGE);
+                    return;
+                } else if (arg.startsWith("-") && arg.length() > 1) {
+                    throw new IllegalArgumentException("Unknown option: " + arg);
+                } else {
+                    inputs.add(arg);
+                }
+            }
+            if (inputs.isEmpty()) {
+                throw new IllegalArgumentException("No inputs");
+            }
+            if (resume && output == null) {
+                throw new IllegalArgumentException("--resume requires --output");
+            }
+            if (threads < 1) {
+                throw new IllegalArgumentException("--threads must be positive");
+            }
+        } catch (RuntimeException e) {
+            System.err.println(e instanceof ArrayIndexOutOfBoundsException ? "Missing option value"
+                    : e.getMessage());
+            System.err.print(USAGE);
+            System.exit(2);
+            return;
+        }
+
+        final CorpusExtractor ce = new CorpusExtractor(
+                getExtractor(extractorName), threads, charset);
+        final List<Path> files = findFiles(inputs);
+        final Stats stats = ce.run(files, output, resume, System.err);
+        System.err.println(stats);
+        if (stats.failed > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Returns the extractor with the given short name, or the singleton
+     * instance of the named class.
+     */
+    static BoilerpipeExtractor getExtractor(final String name)
+            throws ReflectiveOperationException {
+        if ("article".equals(name)) {
+            return ArticleExtractor.INSTANCE;
+        } else if ("default".equals(name)) {
+            return DefaultExtractor.INSTANCE;
+        } else if ("largest".equals(name)) {
+            return LargestContentExtractor.INSTANCE;
+        } else if ("canola".equals(name)) {
+            return CanolaExtractor.INSTANCE;
+        } else if ("sentences".equals(name)) {
+            return ArticleSentencesExtractor.INSTANCE;
+        } else if ("numwords".equals(name)) {
+            return NumWordsRulesExtractor.INSTANCE;
+        } else if ("everything".equals(name)) {
+            return KeepEverythingExtractor.INSTANCE;
+        }
+        final Class<?> cl = Class.forName(name);
+        try {
+            return (BoilerpipeExtractor) cl.getField("INSTANCE").get(null);
+        } catch (NoSuchFieldException e) {
+            return (BoilerpipeExtractor) cl.getConstructor().newInstance();
+        }
+    }
+
+    /**
+     * Resolves the given inputs to a list of files, without duplicates.
+     *
+     * @param inputs
+     *            Directories, glob patterns, files, or list files prefixed with
+     *            <code>@</code>.
+     * @return The files.
+     * @throws IOException
+     */
+    public static List<Path> findFiles(final List<String> inputs)
+            throws IOException {
+        final Set<Path> files = new LinkedHashSet<Path>();
+        for (String input : inputs) {
+            addFiles(input, files);
+        }
+        return new ArrayList<Path>(files);
+    }
+
+    private static void addFiles(final String input, final Set<Path> files)
+            throws IOException {
+        if (input.startsWith("@")) {
+            for (String line : Files.readAllLines(Paths.get(input.substring(1)),
+                    StandardCharsets.UTF_8)) {
+                line = line.trim();
+                if (line.length() > 0 && !line.startsWith("#")) {
+                    addFiles(line, files);
+                }
+            }
+            return;
+        }
+
+        final int glob = indexOfGlob(input);
+        final Path start;
+        final PathMatcher matcher;
+        if (glob < 0) {
+            start = Paths.get(input);
+            matcher = null;
+        } else {
+            final int sep = input.lastIndexOf('/', glob);
+            start = Paths.get(sep < 0 ? "." : input.substring(0, sep + 1));
+            matcher = FileSystems.getDefault().getPathMatcher(
+                    "glob:" + (sep < 0 ? "./" + input : input));
+        }
+        if (!Files.exists(start)) {
+            throw new FileNotFoundException(input);
+        }
+        Files.walkFileTree(start, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(final Path file,
+                    final BasicFileAttributes attrs) {
+                if (attrs.isRegularFile()
+                        && (matcher == null || matcher.matches(file))) {
+                    files.add(file.normalize());
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private static int indexOfGlob(final String s) {
+        for (int i = 0; i < s.length(); i++) {
+            switch (s.charAt(i)) {
+            case '*':
+            case '?':
+            case '[':
+            case '{':
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Counts the processed files.
+     */
+    public static final class Stats {
+        int skipped = 0;
+        int succeeded = 0;
+        int failed = 0;
+        long millis = 0;
+
+        @Override
+        public String toString() {
+            return succeeded + " extracted, " + failed + " failed, " + skipped
+                    + " skipped, in " + millis + " ms";
+        }
+    }
+
+    /**
+     * Extracts the given files.
+     *
+     * @param files
+     *            The files.
+     * @param output
+     *            The output file, or <code>null</code> for standard output.
+     * @param resume
+     *            Whether to skip files that already have a record in the
+     *            output, and to append to it.
+     * @param log
+     *            Receives errors and progress, may be <code>null</code>.
+     * @return The statistics of this run.
+     * @throws IOException
+     */
+    public Stats run(final List<Path> files, final Path output,
+            final boolean resume, final PrintStream log) throws IOException {
+        final long start = System.currentTimeMillis();
+        final Stats stats = new Stats();
+
+        final Set<String> done = resume && output != null
+                && Files.exists(output) ? readCheckpoint(output)
+                : Collections.<String> emptySet();
+        final List<Input> todo = new ArrayList<Input>(files.size());
+        for (Path file : files) {
+            if (done.contains(file.toString())) {
+                stats.skipped++;
+            } else {
+                todo.add(new Input(file, Files.size(file), charset));
+            }
+        }
+        // largest first, so that no large file is started last
+        Collections.sort(todo, new Comparator<Input>() {
+            public int compare(final Input a, final Input b) {
+                return Long.compare(b.size, a.size);
+            }
+        });
+
+        final Writer out = new BufferedWriter(new OutputStreamWriter(
+                output == null ? System.out : Files.newOutputStream(output,
+                        StandardOpenOption.CREATE, resume ? StandardOpenOption.APPEND
+                                : StandardOpenOption.TRUNCATE_EXISTING,
+                        StandardOpenOption.WRITE), StandardCharsets.UTF_8),
+                1 << 16);
+        final BatchExtractor.Results results = new BatchExtractor(extractor,
+                threads).extract(todo.iterator(), false);
+        try {
+            final StringBuilder sb = new StringBuilder();
+            while (results.hasNext()) {
+                final BatchExtractor.Result r = results.next();
+                sb.setLength(0);
+                writeRecord(r, sb);
+                out.append(sb);
+                if (r.isSuccess()) {
+                    stats.succeeded++;
+                } else {
+                    stats.failed++;
+                    if (log != null) {
+                        log.println(((Input) r.getInput()).path + ": "
+                                + r.getError());
+                    }
+                }
+                if ((stats.succeeded + stats.failed) % FLUSH_INTERVAL == 0) {
+                    out.flush();
+                }
+            }
+        } finally {
+            results.close();
+            if (output == null) {
+                out.flush();
+            } else {
+                out.close();
+            }
+        }
+        stats.millis = System.currentTimeMillis() - start;
+        return stats;
+    }
+
+    /**
+     * A file to extract, read by the worker that processes it.
+     */
+    private static final class Input implements InputSourceable {
+        final Path path;
+        final long size;
+        private final Charset charset;
+
+        Input(final Path path, final long size, final Charset charset) {
+            this.path = path;
+            this.size = size;
+            this.charset = charset;
+        }
+
+        public InputSource toInputSource() {
+            // read the whole file, as the parser does not close its stream
+            final byte[] data;
+            try {
+                data = Files.readAllBytes(path);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            final InputSource is = new InputSource(new ByteArrayInputStream(
+                    data));
+            is.setSystemId(path.toUri().toString());
+            if (charset != null) {
+                is.setEncoding(charset.name());
+            }
+            return is;
+        }
+    }
+
+    private static void writeRecord(final BatchExtractor.Result r,
+            final StringBuilder sb) {
+        // the path and any error come first, so that the checkpoint can be
+        // read quickly
+        sb.append("{\"path\":");
+        appendString(sb, ((Input) r.getInput()).path.toString());
+        if (!r.isSuccess()) {
+            sb.append(",\"error\":");
+            appendString(sb, String.valueOf(r.getError()));
+        }
+        sb.append(",\"parseMillis\":").append(r.getParseNanos() / 1000000);
+        sb.append(",\"extractMillis\":").append(r.getExtractNanos() / 1000000);
+        if (!r.isSuccess()) {
+            sb.append("}\n");
+            return;
+        }
+
+        final TextDocument doc = r.getTextDocument();
+        int numBlocks = 0;
+        int numContentBlocks = 0;
+        int numWords = 0;
+        int numContentWords = 0;
+        for (TextBlock tb : doc.getTextBlocks()) {
+            numBlocks++;
+            numWords += tb.getNumWords();
+            if (tb.isContent()) {
+                numContentBlocks++;
+                numContentWords += tb.getNumWords();
+            }
+        }
+        sb.append(",\"numBlocks\":").append(numBlocks);
+        sb.append(",\"numContentBlocks\":").append(numContentBlocks);
+        sb.append(",\"numWords\":").append(numWords);
+        sb.append(",\"numContentWords\":").append(numContentWords);
+        sb.append(",\"title\":");
+        if (doc.getTitle() == null) {
+            sb.append("null");
+        } else {
+            appendString(sb, doc.getTitle());
+        }
+        sb.append(",\"content\":");
+        appendString(sb, r.getText());
+        sb.append("}\n");
+    }
+
+    private static void appendString(final StringBuilder sb,
+            final CharSequence s) {
+        sb.append('"');
+        for (int i = 0, n = s.length(); i < n; i++) {
+            final char c = s.charAt(i);
+            switch (c) {
+            case '"':
+                sb.append("\\\"");
+                break;
+            case '\\':
+                sb.append("\\\\");
+                break;
+            case '\n':
+                sb.append("\\n");
+                break;
+            case '\r':
+                sb.append("\\r");
+                break;
+            case '\t':
+                sb.append("\\t");
+                break;
+            default:
+                if (c < 0x20 || c == '\u2028' || c == '\u2029') {
+                    sb.append(String.format("\\u%04x", (int) c));
+                } else {
+                    sb.append(c);
+                }
+            }
+        }
+        sb.append('"');
+    }
+
+    /**
+     * Returns the paths of the complete records of successfully extracted
+     * files in the given output, and removes a record that has been cut off.
+     */
+    static Set<String> readCheckpoint(final Path output) throws IOException {
+        truncateIncompleteRecord(output);
+        final Set<String> done = new HashSet<String>();
+        final BufferedReader in = Files.newBufferedReader(output,
+                StandardCharsets.UTF_8);
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                final String path = readPath(line);
+                if (path != null) {
+                    done.add(path);
+                }
+            }
+        } finally {
+            in.close();
+        }
+        return done;
+    }
+
+    private static void truncateIncompleteRecord(final Path output)
+            throws IOException {
+        final RandomAccessFile f = new RandomAccessFile(output.toFile(), "rw");
+        try {
+            long end = f.length();
+            while (end > 0) {
+                f.seek(end - 1);
+                if (f.read() == '\n') {
+                    break;
+                }
+                end--;
+            }
+            f.setLength(end);
+        } finally {
+            f.close();
+        }
+    }
+
+    /**
+     * Reads the value of the leading "path" field of a record, or returns
+     * <code>null</code> if the record is an error.
+     */
+    private static String readPath(final String line) {
+        final String prefix = "{\"path\":\"";
+        if (!line.startsWith(prefix)) {
+            return null;
+        }
+        final StringBuilder sb = new StringBuilder();
+        for (int i = prefix.length(); i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                return line.startsWith(",\"error\":", i + 1) ? null : sb
+                        .toString();
+            } else if (c == '\\' && i + 1 < line.length()) {
+                c = line.charAt(++i);
+                switch (c) {
+                case 'n':
+                    c = '\n';
+                    break;
+                case 'r':
+                    c = '\r';
+                    break;
+                case 't':
+                    c = '\t';
+                    break;
+                case 'u':
+                    if (i + 4 >= line.length()) {
+                        return null;
+                    }
+                    c = (char) Integer.parseInt(line.substring(i + 1, i + 5), 16);
+                    i += 4;
+                    break;
+                }
+            }
+            sb.append(c);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,250 @@
+package de.l3s.boilerpipe.tools;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.l3s.boilerpipe.BoilerpipeExtractor;
+import de.l3s.boilerpipe.document.TextBlock;
+import de.l3s.boilerpipe.document.TextDocument;
+import de.l3s.boilerpipe.extractors.BatchExtractor;
+import de.l3s.boilerpipe.warc.WarcReader;
+import de.l3s.boilerpipe.warc.WarcRecord;
+import de.l3s.boilerpipe.warc.WarcWriter;
+
+/**
+ * Extracts the text of the HTML responses in WARC or ARC files, and writes it
+ * as WARC conversion records that refer to the original records.
+ *
+ * The records are read in one pass, without unpacking them to files, and are
+ * extracted in parallel by a {@link BatchExtractor}. The output keeps the
+ * order of the input. Records that cannot be read, or that exceed the maximum
+ * record size, count as failed documents.
+ */
+public final class WarcExtractor {
+
+    private static final String USAGE = "Usage: WarcExtractor [options] input...\n"
+            + "  input              a WARC or ARC file, optionally gzip-compressed\n"
+            + "  -e, --extractor X  the extractor, as for CorpusExtractor (default: article)\n"
+            + "  -o, --output F     the output WARC file, compressed if F ends with .gz\n"
+            + "                     (default: standard output, uncompressed)\n"
+            + "  -t, --threads N    the number of worker threads (default: number of cores)\n"
+            + "  -m, --metadata     also write a metadata record with the title and statistics\n"
+            + "                     of each document, or the error if extraction failed\n"
+            + "  -s, --max-size N   skip HTML records larger than N bytes (default: "
+            + WarcReader.DEFAULT_MAX_RECORD_SIZE + ")\n";
+
+    private final BoilerpipeExtractor extractor;
+    private final String extractorName;
+    private final int threads;
+    private final boolean metadata;
+    private int maxRecordSize = WarcReader.DEFAULT_MAX_RECORD_SIZE;
+
+    /**
+     * Creates a WARC extractor.
+     *
+     * @param extractor
+     *            The extractor.
+     * @param threads
+     *            The number of worker threads.
+     * @param metadata
+     *            Whether to write a metadata record per document, too.
+     */
+    public WarcExtractor(final BoilerpipeExtractor extractor,
+            final int threads, final boolean metadata) {
+        this.extractor = extractor;
+        this.extractorName = extractor.getClass().getName();
+        this.threads = threads;
+        this.metadata = metadata;
+    }
+
+    /**
+     * Sets the maximum size of the records to extract.
+     *
+     * @param maxRecordSize
+     *            The maximum size in bytes.
+     * @see WarcReader#setMaxRecordSize(int)
+     */
+    public void setMaxRecordSize(final int maxRecordSize) {
+        this.maxRecordSize = maxRecordSize;
+    }
+
+    public static void main(final String[] args) throws Exception {
+        String extractorName = "article";
+        Path output = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean metadata = false;
+        int maxRecordSize = WarcReader.DEFAULT_MAX_RECORD_SIZE;
+        final List<Path> inputs = new ArrayList<Path>();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                final String arg = args[i];
+                if ("-e".equals(arg) || "--extractor".equals(arg)) {
+                    extractorName = args[++i];
+                } else if ("-o".equals(arg) || "--output".equals(arg)) {
+                    output = Paths.get(args[++i]);
+                } else if ("-t".equals(arg) || "--threads".equals(arg)) {
+                    threads = Integer.parseInt(args[++i]);
+                } else if ("-m".equals(arg) || "--metadata".equals(arg)) {
+                    metadata = true;
+                } else if ("-s".equals(arg) || "--max-size".equals(arg)) {
+                    maxRecordSize = Integer.parseInt(args[++i]);
+                } else if ("-h".equals(arg) || "--help".equals(arg)) {
+                    System.out.print(USAGE);
+                    return;
+                } else if (arg.startsWith("-") && arg.length() > 1) {
+                    throw new IllegalArgumentException("Unknown option: " + arg);
+                } else {
+                    inputs.add(Paths.get(arg));
+                }
+            }
+            if (inputs.isEmpty()) {
+                throw new IllegalArgumentException("No inputs");
+            }
+            if (threads < 1) {
+                throw new IllegalArgumentException("--threads must be positive");
+            }
+            if (maxRecordSize < 0) {
+                throw new IllegalArgumentException("--max-size must not be negative");
+            }
+        } catch (RuntimeException e) {
+            System.err.println(e instanceof ArrayIndexOutOfBoundsException ? "Missing option value"
+                    : e.getMessage());
+            System.err.print(USAGE);
+            System.exit(2);
+            return;
+        }
+
+        final WarcExtractor we = new WarcExtractor(
+                CorpusExtractor.getExtractor(extractorName), threads, metadata);
+        we.setMaxRecordSize(maxRecordSize);
+        final OutputStream out = new BufferedOutputStream(
+                output == null ? System.out : Files.newOutputStream(output),
+                1 << 16);
+        final WarcWriter writer = new WarcWriter(out, output != null
+                && output.toString().endsWith(".gz"));
+        final long start = System.currentTimeMillis();
+        int succeeded = 0;
+        int failed = 0;
+        try {
+            we.writeWarcinfo(writer);
+            for (Path input : inputs) {
+                final InputStream in = Files.newInputStream(input);
+                try {
+                    final int[] counts = we.process(in, writer, System.err);
+                    succeeded += counts[0];
+                    failed += counts[1];
+                } finally {
+                    in.close();
+                }
+            }
+        } finally {
+            if (output == null) {
+                writer.flush();
+            } else {
+                writer.close();
+            }
+        }
+        System.err.println(succeeded + " extracted, " + failed + " failed, in "
+                + (System.currentTimeMillis() - start) + " ms");
+        if (failed > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Writes a warcinfo record that names the extractor.
+     *
+     * @param writer
+     *            The output.
+     * @throws IOException
+     */
+    public void writeWarcinfo(final WarcWriter writer) throws IOException {
+        final Map<String, String> fields = new LinkedHashMap<String, String>();
+        fields.put("software", "boilerpipe");
+        fields.put("description", "Text extracted by " + extractorName);
+        writer.writeWarcinfo(fields);
+    }
+
+    /**
+     * Extracts the text of all HTML responses in the given WARC or ARC file.
+     *
+     * @param in
+     *            The WARC or ARC file, which may be gzip-compressed.
+     * @param writer
+     *            Receives the conversion records, and the metadata records if
+     *            enabled.
+     * @param log
+     *            Receives errors, may be <code>null</code>.
+     * @return The number of documents extracted, and the number of documents
+     *         that failed.
+     * @throws IOException
+     */
+    public int[] process(final InputStream in, final WarcWriter writer,
+            final PrintStream log) throws IOException {
+        final int[] counts = new int[2];
+        final WarcReader reader = new WarcReader(in);
+        reader.setMaxRecordSize(maxRecordSize);
+        final BatchExtractor.Results results = new BatchExtractor(extractor,
+                threads).extract(reader.htmlResponses(), true);
+        try {
+            while (results.hasNext()) {
+                final BatchExtractor.Result r = results.next();
+                final WarcRecord record = (WarcRecord) r.getInput();
+                if (r.isSuccess()) {
+                    counts[0]++;
+                    writer.writeConversion(record, r.getText());
+                } else {
+                    counts[1]++;
+                    if (log != null) {
+                        log.println((record.getTargetURI() != null ? record
+                                .getTargetURI() : "unknown record") + ": "
+                                + r.getError());
+                    }
+                }
+                if (metadata) {
+                    writer.writeMetadata(record, metadataOf(r));
+                }
+            }
+        } finally {
+            results.close();
+        }
+        return counts;
+    }
+
+    private Map<String, String> metadataOf(final BatchExtractor.Result r) {
+        final Map<String, String> fields = new LinkedHashMap<String, String>();
+        fields.put("extractor", extractorName);
+        if (r.isSuccess()) {
+            final TextDocument doc = r.getTextDocument();
+            int numContentBlocks = 0;
+            int numContentWords = 0;
+            for (TextBlock tb : doc.getTextBlocks()) {
+                if (tb.isContent()) {
+                    numContentBlocks++;
+                    numContentWords += tb.getNumWords();
+                }
+            }
+            if (doc.getTitle() != null) {
+                fields.put("title", doc.getTitle());
+            }
+            fields.put("numBlocks", String.valueOf(doc.getTextBlocks().size()));
+            fields.put("numContentBlocks", String.valueOf(numContentBlocks));
+            fields.put("numContentWords", String.valueOf(numContentWords));
+        } else {
+            fields.put("error", String.valueOf(r.getError()));
+        }
+        fields.put("parseMillis", String.valueOf(r.getParseNanos() / 1000000));
+        fields.put("extractMillis", String.valueOf(r.getExtractNanos() / 1000000));
+        return fields;
+    }
+}
@@ -0,0 +1,357 @@
+package de.l3s.boilerpipe.util;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A size-bounded cache of image URL to image dimensions.
+ *
+ * Entries are kept in memory in least-recently-used order. If a log file is
+ * given, every new entry is also appended to that file, and the file is read
+ * back when the cache is opened again, so dimensions survive restarts. The log
+ * is written in batches, so the last few entries may be lost on a crash, and
+ * it is compacted whenever it has grown to more than twice the number of live
+ * entries.
+ *
+ * Failed lookups can be cached as well. Such negative entries expire after a
+ * configurable time, so that temporarily unavailable images are tried again.
+ *
+ * A cache is thread-safe.
+ */
+public final class ImageDimensionCache implements Closeable {
+    /**
+     * The default number of entries.
+     */
+    public static final int DEFAULT_MAX_ENTRIES = 100000;
+
+    /**
+     * The default time after which negative entries expire (one day).
+     */
+    public static final long DEFAULT_NEGATIVE_TTL_MILLIS = 24L * 60 * 60 * 1000;
+
+    private static final int MAX_KEY_LENGTH = 2048;
+
+    // the number of entries written to the log between flushes
+    private static final int FLUSH_INTERVAL = 64;
+
+    // the log is not compacted below this many lines
+    private static final int MIN_COMPACT_LINES = 1024;
+
+    private static final ImageDimensionCache SHARED_INSTANCE = new ImageDimensionCache(DEFAULT_MAX_ENTRIES);
+
+    private final int maxEntries;
+    private final long negativeTtlMillis;
+    private final File logFile;
+    private final LinkedHashMap<String, Entry> entries;
+
+    private Writer log;
+    private int logLines = 0;
+    private int unflushed = 0;
+
+    /**
+     * Returns a shared, memory-only cache.
+     */
+    public static ImageDimensionCache getSharedInstance() {
+        return SHARED_INSTANCE;
+    }
+
+    /**
+     * Creates a memory-only cache.
+     *
+     * @param maxEntries The maximum number of entries
+     */
+    public ImageDimensionCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.negativeTtlMillis = DEFAULT_NEGATIVE_TTL_MILLIS;
+        this.logFile = null;
+        this.entries = newMap(maxEntries);
+    }
+
+    /**
+     * Opens a cache that is backed by the given log file. Existing entries
+     * are loaded from the file, which is created if it does not exist.
+     *
+     * @param maxEntries The maximum number of entries
+     * @param logFile The log file
+     * @param negativeTtlMillis The time after which negative entries expire
+     * @throws IOException If the log file cannot be read or written
+     */
+    public ImageDimensionCache(int maxEntries, File logFile, long negativeTtlMillis) throws IOException {
+        this.maxEntries = maxEntries;
+        this.negativeTtlMillis = negativeTtlMillis;
+        this.logFile = logFile;
+        this.entries = newMap(maxEntries);
+
+        if (logFile.exists()) {
+            load();
+        }
+        if (needsCompaction()) {
+            compact();
+        }
+        openLog();
+    }
+
+    private static LinkedHashMap<String, Entry> newMap(final int maxEntries) {
+        // within the map, Entry would name Map.Entry
+        return new LinkedHashMap<String, ImageDimensionCache.Entry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(
+                    Map.Entry<String, ImageDimensionCache.Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached entry for the given image URL.
+     *
+     * @param url The absolute image URL
+     * @return The entry, or null if the URL is unknown or its negative entry
+     *         has expired
+     */
+    public synchronized Entry get(String url) {
+        final Entry e = entries.get(url);
+        if (e != null && e.isFailure() && isExpired(e, System.currentTimeMillis())) {
+            entries.remove(url);
+            return null;
+        }
+        return e;
+    }
+
+    /**
+     * Caches the dimensions of the given image URL.
+     *
+     * @param url The absolute image URL
+     * @param width The image width
+     * @param height The image height
+     */
+    public void put(String url, int width, int height) {
+        add(url, new Entry(width, height, System.currentTimeMillis()));
+    }
+
+    /**
+     * Caches that the dimensions of the given image URL could not be
+     * determined.
+     *
+     * @param url The absolute image URL
+     */
+    public void putFailure(String url) {
+        add(url, new Entry(-1, -1, System.currentTimeMillis()));
+    }
+
+    private synchronized void add(String url, Entry e) {
+        if (!isCacheable(url)) {
+            return;
+        }
+        entries.put(url, e);
+        if (log != null) {
+            try {
+                writeEntry(log, url, e);
+                logLines++;
+                if (needsCompaction()) {
+                    log.close();
+                    log = null;
+                    try {
+                        compact();
+                    } finally {
+                        openLog();
+                    }
+                } else if (++unflushed >= FLUSH_INTERVAL) {
+                    log.flush();
+                    unflushed = 0;
+                }
+            } catch (IOException ex) {
+                System.err.println("Failed to write image dimension cache " + logFile + " - " + ex.getMessage());
+            }
+        }
+    }
+
+    private boolean needsCompaction() {
+        return logLines > MIN_COMPACT_LINES && logLines > 2 * entries.size();
+    }
+
+    private static boolean isCacheable(String url) {
+        if (url == null || url.length() > MAX_KEY_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < url.length(); i++) {
+            final char c = url.charAt(i);
+            if (c == '\t' || c == '\n' || c == '\r') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isExpired(Entry e, long now) {
+        return now - e.timestamp > negativeTtlMillis;
+    }
+
+    /**
+     * Returns the number of entries.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private void load() throws IOException {
+        final long now = System.currentTimeMillis();
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(
+                new FileInputStream(logFile), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                logLines++;
+                // url \t width \t height \t timestamp
+                final String[] fields = line.split("\t");
+                if (fields.length != 4) {
+                    // e.g. a line that was cut off by a crash
+                    continue;
+                }
+                final Entry e;
+                try {
+                    e = new Entry(Integer.parseInt(fields[1]), Integer.parseInt(fields[2]),
+                            Long.parseLong(fields[3]));
+                } catch (NumberFormatException ex) {
+                    continue;
+                }
+                if (e.isFailure() && isExpired(e, now)) {
+                    entries.remove(fields[0]);
+                } else {
+                    entries.put(fields[0], e);
+                }
+            }
+        }
+    }
+
+    private void compact() throws IOException {
+        final File tmp = new File(logFile.getPath() + ".tmp");
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(tmp), StandardCharsets.UTF_8))) {
+            for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                writeEntry(out, e.getKey(), e.getValue());
+            }
+        }
+        Files.move(tmp.toPath(), logFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        logLines = entries.size();
+        unflushed = 0;
+    }
+
+    private void openLog() throws IOException {
+        final File dir = logFile.getAbsoluteFile().getParentFile();
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Could not create directory: " + dir);
+        }
+        final boolean endsWithNewline = endsWithNewline();
+        log = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(logFile, true),
+                StandardCharsets.UTF_8));
+        if (!endsWithNewline) {
+            // terminate a line that was cut off
+            log.write('\n');
+            log.flush();
+        }
+    }
+
+    private boolean endsWithNewline() throws IOException {
+        if (logFile.length() == 0) {
+            return true;
+        }
+        try (RandomAccessFile f = new RandomAccessFile(logFile, "r")) {
+            f.seek(f.length() - 1);
+            return f.read() == '\n';
+        }
+    }
+
+    private static void writeEntry(Writer out, String url, Entry e) throws IOException {
+        out.write(url);
+        out.write('\t');
+        out.write(Integer.toString(e.width));
+        out.write('\t');
+        out.write(Integer.toString(e.height));
+        out.write('\t');
+        out.write(Long.toString(e.timestamp));
+        out.write('\n');
+    }
+
+    /**
+     * Writes the pending entries to the log file, if any.
+     */
+    public synchronized void flush() throws IOException {
+        if (log != null) {
+            log.flush();
+            unflushed = 0;
+        }
+    }
+
+    /**
+     * Closes the log file, if any. The in-memory entries remain usable, but
+     * are no longer persisted.
+     */
+    public synchronized void close() throws IOException {
+        if (log != null) {
+            log.close();
+            log = null;
+        }
+    }
+
+    /**
+     * A cached image size, or a cached failure.
+     */
+    public static final class Entry {
+        private final int width;
+        private final int height;
+        private final long timestamp;
+
+        Entry(int width, int height, long timestamp) {
+            this.width = width;
+            this.height = height;
+            this.timestamp = timestamp;
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+
+        /**
+         * Returns width * height, or -1 for a failure.
+         */
+        public int getArea() {
+            return isFailure() ? -1 : width * height;
+        }
+
+        /**
+         * Returns true if the dimensions could not be determined.
+         */
+        public boolean isFailure() {
+            return width < 0 || height < 0;
+        }
+
+        /**
+         * Returns the time this entry was created, in milliseconds since the
+         * epoch.
+         */
+        public long getTimestamp() {
+            return timestamp;
+        }
+    }
+}
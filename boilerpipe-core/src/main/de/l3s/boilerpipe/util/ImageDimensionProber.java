@@ -0,0 +1,462 @@
+package de.l3s.boilerpipe.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Determines the width and height of an image by reading only its header.
+ *
+ * Supported formats are PNG, GIF, JPEG, WebP (lossy, lossless and extended),
+ * BMP and SVG. For most formats the dimensions are found within the first 30
+ * bytes; for JPEG, the metadata segments preceding the frame header are
+ * skipped, and for SVG, the root element has to appear within the first
+ * {@value #SVG_PROBE_BYTES} bytes. Reading stops as soon as the dimensions
+ * are known, and never goes beyond {@value #MAX_PROBE_BYTES} bytes.
+ */
+public final class ImageDimensionProber {
+    /**
+     * The maximum number of bytes read from a stream.
+     */
+    public static final int MAX_PROBE_BYTES = 256 * 1024;
+
+    /**
+     * The maximum number of bytes searched for the root element of an SVG
+     * image.
+     */
+    public static final int SVG_PROBE_BYTES = 4096;
+
+    private static final int HEADER_BYTES = 30;
+
+    private ImageDimensionProber() {
+    }
+
+    /**
+     * Reads the dimensions from the header of the given image.
+     *
+     * @param url The image URL
+     * @return int array [width, height] or null if the format is not supported
+     *         or the header is invalid
+     * @throws IOException If the image cannot be fetched, e.g. because the
+     *         server does not respond within the default timeouts of
+     *         {@link ImageDownloadScheduler}
+     */
+    public static int[] probe(final URL url) throws IOException {
+        final URLConnection connection = url.openConnection();
+        connection.setConnectTimeout(ImageDownloadScheduler.DEFAULT_CONNECT_TIMEOUT);
+        connection.setReadTimeout(ImageDownloadScheduler.DEFAULT_READ_TIMEOUT);
+        connection.setRequestProperty("User-Agent", "Mozilla/5.0");
+        final InputStream in = connection.getInputStream();
+        try {
+            return probe(in);
+        } finally {
+            if (connection instanceof HttpURLConnection) {
+                // do not drain the rest of the image
+                ((HttpURLConnection) connection).disconnect();
+            } else {
+                in.close();
+            }
+        }
+    }
+
+    /**
+     * Reads the dimensions from the header of the given image file.
+     *
+     * @param file The image file
+     * @return int array [width, height] or null if the format is not supported
+     *         or the header is invalid
+     * @throws IOException If the file cannot be read
+     */
+    public static int[] probe(final File file) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            return probe(in);
+        }
+    }
+
+    /**
+     * Reads the dimensions from the header of the image in the given stream.
+     * The stream is not closed, and is left at an unspecified position.
+     *
+     * @param in The image data
+     * @return int array [width, height] or null if the format is not supported
+     *         or the header is invalid
+     * @throws IOException If the stream cannot be read
+     */
+    public static int[] probe(InputStream in) throws IOException {
+        in = new LimitedInputStream(in, MAX_PROBE_BYTES);
+
+        final byte[] head = new byte[HEADER_BYTES];
+        final int n = readFully(in, head, 0, head.length);
+
+        int[] dim;
+        try {
+            dim = probe(head, n, in);
+        } catch (EOFException e) {
+            // truncated image, or no frame header within MAX_PROBE_BYTES
+            dim = null;
+        }
+
+        if (dim == null || dim[0] <= 0 || dim[1] <= 0) {
+            return null;
+        }
+        return dim;
+    }
+
+    private static int[] probe(final byte[] head, final int n, final InputStream in)
+            throws IOException {
+        final int[] dim;
+        if (n >= 24 && startsWith(head, 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A)) {
+            dim = probePNG(head);
+        } else if (n >= 10 && startsWith(head, 'G', 'I', 'F', '8')) {
+            dim = new int[] { u16le(head, 6), u16le(head, 8) };
+        } else if (n >= 26 && startsWith(head, 'B', 'M')) {
+            dim = probeBMP(head);
+        } else if (n >= 30 && startsWith(head, 'R', 'I', 'F', 'F')
+                && head[8] == 'W' && head[9] == 'E' && head[10] == 'B' && head[11] == 'P') {
+            dim = probeWebP(head);
+        } else if (n >= 2 && startsWith(head, 0xFF, 0xD8)) {
+            dim = probeJPEG(new SequenceInputStream(new ByteArrayInputStream(head, 2, n - 2), in));
+        } else {
+            dim = probeSVG(head, n, in);
+        }
+        return dim;
+    }
+
+    private static int[] probePNG(final byte[] h) {
+        // the IHDR chunk must come first
+        if (h[12] != 'I' || h[13] != 'H' || h[14] != 'D' || h[15] != 'R') {
+            return null;
+        }
+        return new int[] { s32be(h, 16), s32be(h, 20) };
+    }
+
+    private static int[] probeBMP(final byte[] h) {
+        final int dibSize = s32le(h, 14);
+        if (dibSize == 12) {
+            // OS/2 BITMAPCOREHEADER
+            return new int[] { u16le(h, 18), u16le(h, 20) };
+        }
+        // the height is negative for top-down bitmaps
+        return new int[] { Math.abs(s32le(h, 18)), Math.abs(s32le(h, 22)) };
+    }
+
+    private static int[] probeWebP(final byte[] h) {
+        if (h[12] == 'V' && h[13] == 'P' && h[14] == '8' && h[15] == ' ') {
+            // lossy: frame tag (3 bytes), start code 9d 01 2a, 14 bit dimensions
+            if ((h[23] & 0xFF) != 0x9D || (h[24] & 0xFF) != 0x01 || (h[25] & 0xFF) != 0x2A) {
+                return null;
+            }
+            return new int[] { u16le(h, 26) & 0x3FFF, u16le(h, 28) & 0x3FFF };
+        } else if (h[12] == 'V' && h[13] == 'P' && h[14] == '8' && h[15] == 'L') {
+            // lossless: signature 0x2f, then width-1 and height-1 as 14 bit values
+            if ((h[20] & 0xFF) != 0x2F) {
+                return null;
+            }
+            final int bits = s32le(h, 21);
+            return new int[] { (bits & 0x3FFF) + 1, ((bits >>> 14) & 0x3FFF) + 1 };
+        } else if (h[12] == 'V' && h[13] == 'P' && h[14] == '8' && h[15] == 'X') {
+            // extended: canvas width-1 and height-1 as 24 bit values
+            return new int[] { u24le(h, 24) + 1, u24le(h, 27) + 1 };
+        }
+        return null;
+    }
+
+    private static int[] probeJPEG(final InputStream in) throws IOException {
+        while (true) {
+            if (readByte(in) != 0xFF) {
+                // not at a marker
+                return null;
+            }
+            int marker = readByte(in);
+            while (marker == 0xFF) {
+                // fill bytes
+                marker = readByte(in);
+            }
+            if (marker == 0x01 || (marker >= 0xD0 && marker <= 0xD8)) {
+                // standalone markers
+                continue;
+            }
+            if (marker == 0xD9 || marker == 0xDA) {
+                // end of image or start of scan before any frame header
+                return null;
+            }
+
+            final int length = (readByte(in) << 8) | readByte(in);
+            if (length < 2) {
+                return null;
+            }
+
+            // SOF0..SOF15, except DHT (C4), JPG (C8) and DAC (CC)
+            if (marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8
+                    && marker != 0xCC) {
+                readByte(in); // precision
+                final int height = (readByte(in) << 8) | readByte(in);
+                final int width = (readByte(in) << 8) | readByte(in);
+                return new int[] { width, height };
+            }
+            skipFully(in, length - 2);
+        }
+    }
+
+    private static int[] probeSVG(final byte[] head, final int n, final InputStream in)
+            throws IOException {
+        if (n == 0 || !looksLikeText(head, n)) {
+            return null;
+        }
+        final byte[] buf = new byte[SVG_PROBE_BYTES];
+        System.arraycopy(head, 0, buf, 0, n);
+        final int len = n + readFully(in, buf, n, buf.length - n);
+
+        // attribute names and numbers are ASCII
+        final String text = new String(buf, 0, len, StandardCharsets.ISO_8859_1);
+        int start = -1;
+        for (int i = text.indexOf("<svg"); i >= 0; i = text.indexOf("<svg", i + 4)) {
+            if (i + 4 < text.length()) {
+                final char c = text.charAt(i + 4);
+                if (c == '>' || c == '/' || Character.isWhitespace(c)) {
+                    start = i + 4;
+                    break;
+                }
+            }
+        }
+        if (start == -1) {
+            return null;
+        }
+
+        String width = null;
+        String height = null;
+        String viewBox = null;
+
+        // scan the attributes of the root element
+        int i = start;
+        final int end = text.length();
+        while (i < end) {
+            char c = text.charAt(i);
+            if (c == '>' || c == '/') {
+                break;
+            }
+            if (Character.isWhitespace(c)) {
+                i++;
+                continue;
+            }
+            final int nameStart = i;
+            while (i < end && text.charAt(i) != '=' && text.charAt(i) != '>'
+                    && !Character.isWhitespace(text.charAt(i))) {
+                i++;
+            }
+            final String name = text.substring(nameStart, i);
+            while (i < end && Character.isWhitespace(text.charAt(i))) {
+                i++;
+            }
+            if (i >= end || text.charAt(i) != '=') {
+                continue;
+            }
+            i++;
+            while (i < end && Character.isWhitespace(text.charAt(i))) {
+                i++;
+            }
+            if (i >= end) {
+                break;
+            }
+            final String value;
+            final char quote = text.charAt(i);
+            if (quote == '"' || quote == '\'') {
+                final int valueEnd = text.indexOf(quote, i + 1);
+                if (valueEnd == -1) {
+                    break;
+                }
+                value = text.substring(i + 1, valueEnd);
+                i = valueEnd + 1;
+            } else {
+                final int valueStart = i;
+                while (i < end && text.charAt(i) != '>'
+                        && !Character.isWhitespace(text.charAt(i))) {
+                    i++;
+                }
+                value = text.substring(valueStart, i);
+            }
+
+            if ("width".equals(name)) {
+                width = value;
+            } else if ("height".equals(name)) {
+                height = value;
+            } else if ("viewBox".equals(name)) {
+                viewBox = value;
+            }
+        }
+
+        final double w = parseSVGLength(width);
+        final double h = parseSVGLength(height);
+        if (w > 0 && h > 0) {
+            return new int[] { (int) Math.round(w), (int) Math.round(h) };
+        }
+
+        if (viewBox == null) {
+            return null;
+        }
+        final String[] vb = viewBox.trim().split("[\\s,]+");
+        if (vb.length != 4) {
+            return null;
+        }
+        final double vbWidth;
+        final double vbHeight;
+        try {
+            vbWidth = Double.parseDouble(vb[2]);
+            vbHeight = Double.parseDouble(vb[3]);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        if (vbWidth <= 0 || vbHeight <= 0) {
+            return null;
+        }
+        if (w > 0) {
+            return new int[] { (int) Math.round(w), (int) Math.round(w * vbHeight / vbWidth) };
+        } else if (h > 0) {
+            return new int[] { (int) Math.round(h * vbWidth / vbHeight), (int) Math.round(h) };
+        }
+        return new int[] { (int) Math.round(vbWidth), (int) Math.round(vbHeight) };
+    }
+
+    /**
+     * Parses an absolute SVG length (user units or pixels).
+     *
+     * @return the length, or -1 if missing or relative
+     */
+    private static double parseSVGLength(String s) {
+        if (s == null) {
+            return -1;
+        }
+        s = s.trim();
+        if (s.endsWith("px")) {
+            s = s.substring(0, s.length() - 2).trim();
+        }
+        try {
+            return Double.parseDouble(s);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static boolean looksLikeText(final byte[] b, final int n) {
+        for (int i = 0; i < n; i++) {
+            final int c = b[i] & 0xFF;
+            if (c < 0x09 || (c > 0x0D && c < 0x20)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean startsWith(final byte[] b, final int... prefix) {
+        for (int i = 0; i < prefix.length; i++) {
+            if ((b[i] & 0xFF) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int u16le(final byte[] b, final int off) {
+        return (b[off] & 0xFF) | ((b[off + 1] & 0xFF) << 8);
+    }
+
+    private static int u24le(final byte[] b, final int off) {
+        return u16le(b, off) | ((b[off + 2] & 0xFF) << 16);
+    }
+
+    private static int s32le(final byte[] b, final int off) {
+        return u16le(b, off) | (u16le(b, off + 2) << 16);
+    }
+
+    private static int s32be(final byte[] b, final int off) {
+        return ((b[off] & 0xFF) << 24) | ((b[off + 1] & 0xFF) << 16)
+                | ((b[off + 2] & 0xFF) << 8) | (b[off + 3] & 0xFF);
+    }
+
+    private static int readByte(final InputStream in) throws IOException {
+        final int b = in.read();
+        if (b < 0) {
+            throw new EOFException();
+        }
+        return b;
+    }
+
+    private static int readFully(final InputStream in, final byte[] b, final int off,
+            final int len) throws IOException {
+        int n = 0;
+        while (n < len) {
+            final int r = in.read(b, off + n, len - n);
+            if (r < 0) {
+                break;
+            }
+            n += r;
+        }
+        return n;
+    }
+
+    private static void skipFully(final InputStream in, long n) throws IOException {
+        while (n > 0) {
+            final long skipped = in.skip(n);
+            if (skipped > 0) {
+                n -= skipped;
+            } else {
+                readByte(in);
+                n--;
+            }
+        }
+    }
+
+    /**
+     * Reports the end of the stream after a given number of bytes.
+     */
+    private static final class LimitedInputStream extends FilterInputStream {
+        private long remaining;
+
+        LimitedInputStream(final InputStream in, final long limit) {
+            super(in);
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            final int b = in.read();
+            if (b >= 0) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            final int r = in.read(b, off, (int) Math.min(len, remaining));
+            if (r > 0) {
+                remaining -= r;
+            }
+            return r;
+        }
+
+        @Override
+        public long skip(final long n) throws IOException {
+            final long skipped = in.skip(Math.min(n, remaining));
+            if (skipped > 0) {
+                remaining -= skipped;
+            }
+            return skipped;
+        }
+    }
+}
@@ -0,0 +1,584 @@
+package de.l3s.boilerpipe.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.l3s.boilerpipe.document.Image;
+
+/**
+ * Fetches the images of a page concurrently and keeps the results in memory.
+ *
+ * Image sources are resolved against the base URI of their page, and each
+ * distinct URL is fetched only once per call. The number of concurrent
+ * connections is limited globally and per host, every connection has connect
+ * and read timeouts, and each call has an overall deadline after which pending
+ * fetches are aborted. Fetches from a host that has reached its limit wait in a
+ * queue of that host, so they do not hold up the worker threads.
+ *
+ * Images can either be downloaded completely ({@link #download}) or only be
+ * probed for their dimensions ({@link #probe}), which reads just the image
+ * header (see {@link ImageDimensionProber}). <code>data:</code> URIs are
+ * decoded without any network access.
+ *
+ * A scheduler is thread-safe. Its worker threads are daemon threads, so it
+ * does not need to be closed before the JVM exits.
+ */
+public class ImageDownloadScheduler implements Closeable {
+    public static final int DEFAULT_MAX_CONNECTIONS = 16;
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 4;
+    public static final int DEFAULT_CONNECT_TIMEOUT = 5000;
+    public static final int DEFAULT_READ_TIMEOUT = 10000;
+    public static final int DEFAULT_MAX_DOWNLOAD_BYTES = 16 * 1024 * 1024;
+
+    private static final AtomicInteger POOL_COUNTER = new AtomicInteger();
+
+    private final ExecutorService executor;
+    private final int maxConnectionsPerHost;
+    // the hosts with running fetches, guarded by itself
+    private final Map<String, HostQueue> hosts = new HashMap<>();
+
+    private volatile int connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+    private volatile int readTimeout = DEFAULT_READ_TIMEOUT;
+    private volatile int maxDownloadBytes = DEFAULT_MAX_DOWNLOAD_BYTES;
+
+    /**
+     * Creates a scheduler with the default connection limits.
+     */
+    public ImageDownloadScheduler() {
+        this(DEFAULT_MAX_CONNECTIONS, DEFAULT_MAX_CONNECTIONS_PER_HOST);
+    }
+
+    /**
+     * Creates a scheduler with the given connection limits.
+     *
+     * @param maxConnections The maximum number of concurrent fetches
+     * @param maxConnectionsPerHost The maximum number of concurrent fetches per host
+     */
+    public ImageDownloadScheduler(int maxConnections, int maxConnectionsPerHost) {
+        if (maxConnections < 1 || maxConnectionsPerHost < 1) {
+            throw new IllegalArgumentException("Connection limits must be positive");
+        }
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+
+        final int pool = POOL_COUNTER.incrementAndGet();
+        this.executor = Executors.newFixedThreadPool(maxConnections, new ThreadFactory() {
+            private final AtomicInteger counter = new AtomicInteger();
+
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "image-download-" + pool + "-" + counter.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * Returns the base URI of a page, i.e. the <code>href</code> of its
+     * <code>&lt;base&gt;</code> element resolved against the page URL, or the
+     * page URL itself.
+     *
+     * @param pageUrl The URL of the page, may be null
+     * @param baseHref The href of the page's base element, may be null
+     * @return The base URI, or null if neither is a valid absolute URI
+     */
+    public static URI getBaseURI(String pageUrl, String baseHref) {
+        URI page = null;
+        if (pageUrl != null) {
+            page = toURI(pageUrl);
+            if (page != null && !page.isAbsolute()) {
+                // e.g. "www.example.com/path"
+                page = toURI("https://" + pageUrl.trim());
+            }
+        }
+        if (baseHref != null && !baseHref.trim().isEmpty()) {
+            URI base = resolve(page, baseHref);
+            if (base != null) {
+                return base;
+            }
+        }
+        return page != null && page.isAbsolute() ? page : null;
+    }
+
+    /**
+     * Resolves an image source against the given base URI.
+     *
+     * @param base The base URI, may be null
+     * @param src The image source
+     * @return The absolute URI, or null if the source is invalid or relative
+     *         and there is no base URI
+     */
+    public static URI resolve(URI base, String src) {
+        if (src == null) {
+            return null;
+        }
+        src = src.trim();
+        if (src.isEmpty()) {
+            return null;
+        }
+        if (src.regionMatches(true, 0, "data:", 0, 5)) {
+            // keep the payload as it is, e.g. unescaped SVG markup
+            try {
+                return new URI("data", src.substring(5), null);
+            } catch (URISyntaxException e) {
+                return null;
+            }
+        }
+        URI uri = toURI(src);
+        if (uri == null) {
+            return null;
+        }
+        if (!uri.isAbsolute()) {
+            if (base == null || base.isOpaque()) {
+                return null;
+            }
+            uri = base.resolve(uri);
+        }
+        if (uri.getPath() != null && uri.getPath().isEmpty() && uri.getHost() != null) {
+            uri = uri.resolve("/");
+        }
+        return uri;
+    }
+
+    private static URI toURI(String s) {
+        try {
+            return new URI(s.trim().replace(" ", "%20"));
+        } catch (URISyntaxException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Downloads the given images completely.
+     *
+     * @param images The images to download
+     * @param baseUri The base URI of their page, see {@link #getBaseURI}
+     * @param timeoutMillis The time after which pending downloads are aborted
+     * @return One result per image, in the same order
+     */
+    public List<Result> download(List<Image> images, URI baseUri, long timeoutMillis) {
+        return schedule(images, baseUri, timeoutMillis, false);
+    }
+
+    /**
+     * Determines the dimensions of the given images by reading their headers
+     * only. For responsive images, {@link Image#getProbeSrc()} is read instead
+     * of the image source. The images themselves are not modified.
+     *
+     * @param images The images to probe
+     * @param baseUri The base URI of their page, see {@link #getBaseURI}
+     * @param timeoutMillis The time after which pending fetches are aborted
+     * @return One result per image, in the same order
+     */
+    public List<Result> probe(List<Image> images, URI baseUri, long timeoutMillis) {
+        return schedule(images, baseUri, timeoutMillis, true);
+    }
+
+    private List<Result> schedule(List<Image> images, URI baseUri, long timeoutMillis,
+            boolean headerOnly) {
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+
+        final URI[] uris = new URI[images.size()];
+        final Map<URI, Fetch> fetches = new LinkedHashMap<>();
+        for (int i = 0; i < uris.length; i++) {
+            final Image image = images.get(i);
+            // a probe may read a smaller rendition of a responsive image
+            final URI uri = resolve(baseUri, headerOnly ? image.getProbeSrc() : image.getSrc());
+            uris[i] = uri;
+            if (uri != null && !fetches.containsKey(uri)) {
+                fetches.put(uri, new Fetch(uri, headerOnly, deadline));
+            }
+        }
+
+        final Map<URI, Future<Void>> futures = new LinkedHashMap<>();
+        for (Fetch fetch : fetches.values()) {
+            futures.put(fetch.uri, submit(fetch));
+        }
+
+        final Map<URI, Exception> errors = new LinkedHashMap<>();
+        boolean interrupted = false;
+        for (Map.Entry<URI, Future<Void>> e : futures.entrySet()) {
+            final Future<Void> future = e.getValue();
+            final Fetch fetch = fetches.get(e.getKey());
+            try {
+                if (interrupted) {
+                    throw new InterruptedException();
+                }
+                future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException ex) {
+                fetch.abort();
+                future.cancel(true);
+                errors.put(fetch.uri, new IOException("Deadline exceeded"));
+            } catch (InterruptedException ex) {
+                interrupted = true;
+                fetch.abort();
+                future.cancel(true);
+                errors.put(fetch.uri, ex);
+            } catch (ExecutionException ex) {
+                errors.put(fetch.uri, ex.getCause() instanceof Exception
+                        ? (Exception) ex.getCause() : ex);
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        final List<Result> results = new ArrayList<>(uris.length);
+        for (int i = 0; i < uris.length; i++) {
+            final Image image = images.get(i);
+            final URI uri = uris[i];
+            if (uri == null) {
+                results.add(new Result(image, null, null, null,
+                        new IOException("Cannot resolve image source: " + image.getSrc()), true));
+                continue;
+            }
+            final Exception error = errors.get(uri);
+            if (error != null) {
+                results.add(new Result(image, uri, null, null, error, false));
+            } else {
+                final Fetch fetch = fetches.get(uri);
+                results.add(new Result(image, uri, fetch.data, fetch.dimensions, fetch.error,
+                        fetch.error != null && fetch.permanent));
+            }
+        }
+        return results;
+    }
+
+    private Future<Void> submit(Fetch fetch) {
+        final Queued task = new Queued(fetch);
+        if (fetch.host == null) {
+            executor.execute(task);
+            return task;
+        }
+        synchronized (hosts) {
+            final HostQueue q = hosts.computeIfAbsent(fetch.host, h -> new HostQueue());
+            if (q.active >= maxConnectionsPerHost) {
+                q.waiting.add(task);
+                return task;
+            }
+            q.active++;
+        }
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            release(fetch.host);
+            throw e;
+        }
+        return task;
+    }
+
+    /**
+     * Passes the connection slot of a finished fetch on to the next waiting
+     * fetch of the same host.
+     */
+    private void release(String host) {
+        while (true) {
+            final Queued next;
+            synchronized (hosts) {
+                final HostQueue q = hosts.get(host);
+                next = q.waiting.poll();
+                if (next == null) {
+                    if (--q.active == 0) {
+                        hosts.remove(host);
+                    }
+                    return;
+                }
+            }
+            try {
+                executor.execute(next);
+                return;
+            } catch (RejectedExecutionException e) {
+                // closed
+                next.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * The running and waiting fetches of one host.
+     */
+    private static final class HostQueue {
+        int active = 0;
+        final ArrayDeque<Queued> waiting = new ArrayDeque<>();
+    }
+
+    /**
+     * A fetch that frees its host's connection slot when it is done, even if
+     * it has been cancelled while waiting.
+     */
+    private final class Queued extends FutureTask<Void> {
+        private final String host;
+
+        Queued(Fetch fetch) {
+            super(fetch);
+            this.host = fetch.host;
+        }
+
+        @Override
+        public void run() {
+            try {
+                super.run();
+            } finally {
+                if (host != null) {
+                    release(host);
+                }
+            }
+        }
+    }
+
+    private static byte[] decodeDataURI(URI uri) throws IOException {
+        final String s = uri.getSchemeSpecificPart();
+        final int comma = s.indexOf(',');
+        if (comma == -1) {
+            throw new IOException("Malformed data URI");
+        }
+        final String payload = URLDecoder.decode(s.substring(comma + 1).replace("+", "%2B"),
+                StandardCharsets.ISO_8859_1.name());
+        if (s.substring(0, comma).endsWith(";base64")) {
+            try {
+                return Base64.getMimeDecoder().decode(payload);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Malformed data URI", e);
+            }
+        }
+        return payload.getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    private static byte[] readAll(InputStream in, int maxBytes) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[8192];
+        int bytesRead;
+        while ((bytesRead = in.read(buffer)) != -1) {
+            if (out.size() + bytesRead > maxBytes) {
+                throw new IOException("Image exceeds " + maxBytes + " bytes");
+            }
+            out.write(buffer, 0, bytesRead);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Fetches one distinct URL. The fields are only read by the scheduling
+     * thread after the task has completed.
+     */
+    private final class Fetch implements Callable<Void> {
+        final URI uri;
+        final boolean headerOnly;
+        final long deadline;
+        // the host whose connection limit applies, or null
+        final String host;
+
+        byte[] data;
+        int[] dimensions;
+        Exception error;
+        // whether the error will not go away when fetching again
+        boolean permanent;
+
+        private volatile HttpURLConnection connection;
+        private volatile boolean aborted = false;
+
+        Fetch(URI uri, boolean headerOnly, long deadline) {
+            this.uri = uri;
+            this.headerOnly = headerOnly;
+            this.deadline = deadline;
+            final String scheme = uri.getScheme() == null ? "" : uri.getScheme().toLowerCase();
+            this.host = "http".equals(scheme) || "https".equals(scheme)
+                    ? (uri.getHost() == null ? "" : uri.getHost().toLowerCase()) : null;
+        }
+
+        public Void call() {
+            try {
+                final String scheme = uri.getScheme().toLowerCase();
+                if ("data".equals(scheme)) {
+                    // the data cannot change
+                    permanent = true;
+                    data = decodeDataURI(uri);
+                    dimensions = ImageDimensionProber.probe(new ByteArrayInputStream(data));
+                    if (headerOnly) {
+                        data = null;
+                    }
+                } else if ("http".equals(scheme) || "https".equals(scheme)) {
+                    fetchHTTP();
+                } else {
+                    permanent = true;
+                    throw new IOException("Unsupported scheme: " + scheme);
+                }
+            } catch (IOException e) {
+                error = e;
+            }
+            return null;
+        }
+
+        private void fetchHTTP() throws IOException {
+            // the fetch may have waited for its host until after the deadline
+            if (deadline - System.nanoTime() <= 0) {
+                throw new IOException("Deadline exceeded while waiting for " + host);
+            }
+            final HttpURLConnection c = (HttpURLConnection) uri.toURL().openConnection();
+            c.setConnectTimeout(connectTimeout);
+            c.setReadTimeout(readTimeout);
+            c.setRequestProperty("User-Agent", "Mozilla/5.0");
+            connection = c;
+            if (aborted) {
+                throw new IOException("Aborted");
+            }
+            try {
+                final int status = c.getResponseCode();
+                if (status != HttpURLConnection.HTTP_OK) {
+                    // client errors persist, except timeouts and rate limits
+                    permanent = status >= 400 && status < 500
+                            && status != HttpURLConnection.HTTP_CLIENT_TIMEOUT && status != 429;
+                    throw new IOException("HTTP " + status);
+                }
+                final InputStream in = c.getInputStream();
+                if (headerOnly) {
+                    dimensions = ImageDimensionProber.probe(in);
+                } else {
+                    data = readAll(in, maxDownloadBytes);
+                    dimensions = ImageDimensionProber.probe(new ByteArrayInputStream(data));
+                }
+            } finally {
+                // also stops the transfer of the remaining image data
+                c.disconnect();
+            }
+        }
+
+        void abort() {
+            aborted = true;
+            final HttpURLConnection c = connection;
+            if (c != null) {
+                c.disconnect();
+            }
+        }
+    }
+
+    /**
+     * Sets the connect timeout of each connection, in milliseconds.
+     */
+    public void setConnectTimeout(int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    /**
+     * Sets the read timeout of each connection, in milliseconds.
+     */
+    public void setReadTimeout(int readTimeout) {
+        this.readTimeout = readTimeout;
+    }
+
+    /**
+     * Sets the maximum size of a downloaded image. Larger images fail.
+     */
+    public void setMaxDownloadBytes(int maxDownloadBytes) {
+        this.maxDownloadBytes = maxDownloadBytes;
+    }
+
+    /**
+     * Stops all worker threads. Pending fetches are aborted.
+     */
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * The outcome of fetching one {@link Image}.
+     */
+    public static final class Result {
+        private final Image image;
+        private final URI uri;
+        private final byte[] data;
+        private final int[] dimensions;
+        private final Exception error;
+        private final boolean permanentFailure;
+
+        Result(Image image, URI uri, byte[] data, int[] dimensions, Exception error,
+                boolean permanentFailure) {
+            this.image = image;
+            this.uri = uri;
+            this.data = data;
+            this.dimensions = dimensions;
+            this.error = error;
+            this.permanentFailure = permanentFailure;
+        }
+
+        /**
+         * Returns the image this result belongs to.
+         */
+        public Image getImage() {
+            return image;
+        }
+
+        /**
+         * Returns the resolved URI of the image, or null if its source could
+         * not be resolved.
+         */
+        public URI getURI() {
+            return uri;
+        }
+
+        /**
+         * Returns the downloaded image data, or null if the image was only
+         * probed or could not be fetched. Images with the same URI share the
+         * same array.
+         */
+        public byte[] getData() {
+            return data;
+        }
+
+        /**
+         * Returns int array [width, height], or null if unknown.
+         */
+        public int[] getDimensions() {
+            return dimensions;
+        }
+
+        /**
+         * Returns the reason why the image could not be fetched, or null.
+         */
+        public Exception getError() {
+            return error;
+        }
+
+        /**
+         * Returns true if the image was fetched successfully.
+         */
+        public boolean isSuccess() {
+            return error == null;
+        }
+
+        /**
+         * Returns true if the image could not be fetched for a reason that
+         * fetching it again would not change, e.g. an HTTP 4xx status or a
+         * source that cannot be resolved. Timeouts, interruptions, I/O errors
+         * and HTTP 5xx are temporary.
+         */
+        public boolean isPermanentFailure() {
+            return permanentFailure;
+        }
+    }
+}
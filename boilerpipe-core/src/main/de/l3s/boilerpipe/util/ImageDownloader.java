@@ -3,107 +3,70 @@ package de.l3s.boilerpipe.util;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.net.HttpURLConnection;
-import java.net.MalformedURLException;
-import java.net.URL;
+import java.net.URI;
 import java.util.ArrayList;
 import java.util.List;
 
-import de.l3s.boilerpipe.demo.WebpageClassifierDemo;
 import de.l3s.boilerpipe.document.Image;
 
 /**
  * Utility class for downloading images extracted by ImageExtractor.
  *
+ * The images are fetched concurrently by a shared
+ * {@link ImageDownloadScheduler}.
  */
 public class ImageDownloader {
 
+    /**
+     * The time after which pending downloads of one call are aborted.
+     */
+    public static final long DEFAULT_TIMEOUT_MILLIS = 30000;
+
+    private static final ImageDownloadScheduler SCHEDULER = new ImageDownloadScheduler();
+
+    /**
+     * Returns the scheduler shared by all ImageDownloader calls.
+     */
+    public static ImageDownloadScheduler getScheduler() {
+        return SCHEDULER;
+    }
+
     /**
      * Downloads images from a list of Image objects to a specified directory.
-     * If the directory exists, it will be emptied before downloading.
+     * The directory is created if it does not exist.
      *
      * @param images A list of Image objects containing image URLs
+     * @param baseUri The base URI of the page, used to resolve relative URLs
      * @param targetDir The directory to save the downloaded images
-     * @return A list of successfully downloaded image file paths
-     * @throws IOException If there's an error during download
+     * @return A list of downloaded image files, with null for images that
+     *         could not be downloaded
+     * @throws IOException If the directory cannot be created
      */
-    public static List<File> downloadImages(List<Image> images, File targetDir) throws IOException {
-        // Delete directory if it exists
-        if (targetDir.exists()) {
-            deleteDirectory(targetDir);
-        }
-
-        // Create the directory
-        if (!targetDir.mkdirs()) {
+    public static List<File> downloadImages(List<Image> images, URI baseUri, File targetDir) throws IOException {
+        if (!targetDir.isDirectory() && !targetDir.mkdirs()) {
             throw new IOException("Could not create directory: " + targetDir.getAbsolutePath());
         }
 
+        List<ImageDownloadScheduler.Result> results = SCHEDULER.download(images, baseUri, DEFAULT_TIMEOUT_MILLIS);
+
         List<File> downloadedFiles = new ArrayList<>();
         int counter = 0;
-        for (Image image : images) {
-            String src = image.getSrc();
+        for (ImageDownloadScheduler.Result result : results) {
             File downloadedFile = null;
-            
-            if (src != null && !src.trim().isEmpty()) {
-                try {
-                    String newSrc;
-                    if (!src.startsWith("http")) {
-                        // Relative URL - prepend base URL
-                        String baseUrl = WebpageClassifierDemo.TEST_URL;
-                        
-                        // Ensure base URL has protocol
-                        if (!baseUrl.startsWith("http")) {
-                            baseUrl = "https://" + baseUrl;
-                        }
-                        
-                        // Ensure base URL doesn't end with slash and src starts with slash
-                        if (baseUrl.endsWith("/")) {
-                            baseUrl = baseUrl.substring(0, baseUrl.length() - 1);
-                        }
-                        
-                        newSrc = baseUrl;
-                        if (!src.startsWith("/")) {
-                            newSrc += "/";
-                        }
-                        newSrc += src;
-                        image.setSource(newSrc);
-                    } else {
-                        // Absolute URL already present
-                        newSrc = src;
-                    }
-
-                    URL imageUrl = new URL(newSrc);
-                    
-                    // Extract proper file extension from URL
-                    String extension = getFileExtension(src);
-                    String fileName = "image_" + counter + extension;
-                    File targetFile = new File(targetDir, fileName);
-
-                    HttpURLConnection connection = (HttpURLConnection) imageUrl.openConnection();
-                    connection.setRequestProperty("User-Agent", "Mozilla/5.0");
-
-                    try (InputStream in = connection.getInputStream();
-                         FileOutputStream out = new FileOutputStream(targetFile)) {
-
-                        byte[] buffer = new byte[4096];
-                        int bytesRead;
-                        while ((bytesRead = in.read(buffer)) != -1) {
-                            out.write(buffer, 0, bytesRead);
-                        }
-                        downloadedFile = targetFile;
-                    }
-                } catch (MalformedURLException e) {
-                    // Skip malformed URLs
-                    System.err.println("Invalid URL: " + src + " - " + e.getMessage());
+            String src = result.getImage().getSrc();
+            if (result.isSuccess()) {
+                File targetFile = new File(targetDir, "image_" + counter + getFileExtension(src));
+                try (FileOutputStream out = new FileOutputStream(targetFile)) {
+                    out.write(result.getData());
+                    downloadedFile = targetFile;
                 } catch (IOException e) {
-                    // Log but don't throw to continue with other images
-                    System.err.println("Failed to download: " + src + " - " + e.getMessage());
+                    System.err.println("Failed to write: " + targetFile + " - " + e.getMessage());
                 }
             } else {
-                System.err.println("Empty or null URL for image at index " + counter);
+                // Log but don't throw to continue with other images
+                System.err.println("Failed to download: " + src + " - " + result.getError().getMessage());
             }
-            
+
             // Add file to list (null if download failed) to maintain correspondence
             downloadedFiles.add(downloadedFile);
             counter++;
@@ -112,6 +75,94 @@ public class ImageDownloader {
         return downloadedFiles;
     }
 
+    /**
+     * Determines the dimensions of the given images by reading only the image
+     * headers (see {@link ImageDimensionProber}), and updates width, height and
+     * area of each image accordingly. Images whose dimensions could not be
+     * determined are left unchanged.
+     *
+     * Responsive images are probed using their cheapest candidate, and the
+     * result is scaled to the width announced by their <code>srcset</code>.
+     *
+     * @param images A list of Image objects containing image URLs
+     * @param baseUri The base URI of the page, used to resolve relative URLs
+     * @return The number of updated images
+     */
+    public static int probeDimensions(List<Image> images, URI baseUri) {
+        return probeDimensions(images, baseUri, null);
+    }
+
+    /**
+     * Like {@link #probeDimensions(List, URI)}, but looks up the images in the
+     * given cache first. Only images that are not cached are fetched, and their
+     * dimensions are added to the cache. Failures are cached only if they are
+     * permanent, e.g. an HTTP 4xx status or an unknown image format, but not
+     * timeouts or server errors.
+     *
+     * @param images A list of Image objects containing image URLs
+     * @param baseUri The base URI of the page, used to resolve relative URLs
+     * @param cache The dimension cache, may be null
+     * @return The number of updated images
+     */
+    public static int probeDimensions(List<Image> images, URI baseUri, ImageDimensionCache cache) {
+        int updated = 0;
+        List<Image> imagesToProbe = images;
+        if (cache != null) {
+            imagesToProbe = new ArrayList<>();
+            for (Image image : images) {
+                URI uri = ImageDownloadScheduler.resolve(baseUri, image.getProbeSrc());
+                ImageDimensionCache.Entry entry = uri == null ? null : cache.get(uri.toString());
+                if (entry == null) {
+                    imagesToProbe.add(image);
+                } else if (!entry.isFailure()) {
+                    setProbedDimensions(image, entry.getWidth(), entry.getHeight());
+                    updated++;
+                }
+            }
+            if (imagesToProbe.isEmpty()) {
+                return updated;
+            }
+        }
+
+        for (ImageDownloadScheduler.Result result : SCHEDULER.probe(imagesToProbe, baseUri, DEFAULT_TIMEOUT_MILLIS)) {
+            Image image = result.getImage();
+            int[] dimensions = result.getDimensions();
+            if (cache != null && result.getURI() != null) {
+                if (dimensions != null) {
+                    cache.put(result.getURI().toString(), dimensions[0], dimensions[1]);
+                } else if (result.isSuccess() || result.isPermanentFailure()) {
+                    // the format is unknown, or the image cannot be fetched
+                    cache.putFailure(result.getURI().toString());
+                }
+            }
+            if (dimensions != null) {
+                setProbedDimensions(image, dimensions[0], dimensions[1]);
+                updated++;
+            } else if (!result.isSuccess()) {
+                System.err.println("Failed to probe: " + image.getSrc() + " - " + result.getError().getMessage());
+            } else {
+                System.err.println("Unknown image format: " + image.getSrc());
+            }
+        }
+        return updated;
+    }
+
+    private static void setProbedDimensions(Image image, int width, int height) {
+        int hint = image.getWidthHint();
+        if (hint > 0 && width > 0 && hint != width) {
+            // a smaller rendition was probed
+            height = (int) Math.round((double) height * hint / width);
+            width = hint;
+        }
+        setDimensions(image, width, height);
+    }
+
+    private static void setDimensions(Image image, int width, int height) {
+        image.setWidth(width);
+        image.setHeight(height);
+        image.setArea(width * height);
+    }
+
     /**
      * Extracts the file extension from a URL or file path
      *
@@ -139,22 +190,4 @@ public class ImageDownloader {
         
         return ".jpg"; // Default extension if none found or invalid
     }
-
-    /**
-     * Recursively deletes a directory and all its contents
-     *
-     * @param directory The directory to delete
-     * @return true if successful, false otherwise
-     */
-    private static boolean deleteDirectory(File directory) {
-        if (directory.isDirectory()) {
-            File[] files = directory.listFiles();
-            if (files != null) {
-                for (File file : files) {
-                    deleteDirectory(file);
-                }
-            }
-        }
-        return directory.delete();
-    }
 }
@@ -0,0 +1,775 @@
+package de.l3s.boilerpipe.warc;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Reads the records of a WARC or ARC file, one at a time.
+ *
+ * The file may be uncompressed or gzip-compressed, usually as one gzip member
+ * per record. ARC records are returned with the equivalent WARC headers; the
+ * ARC file header record is skipped.
+ *
+ * Only the blocks of returned records are read into memory, up to
+ * {@link #setMaxRecordSize(int) a maximum size}. {@link #htmlResponses()}
+ * decides from the record and HTTP headers whether it needs a record, and
+ * skips the others. A record that is truncated, malformed or too large is
+ * returned with an {@link WarcRecord#getError() error}, and reading continues
+ * with the next record, or with the next gzip member if the rest of the
+ * current one cannot be decompressed. Damaged data whose record headers
+ * cannot be read is skipped. The maximum size also limits the payload of a
+ * record after removing its content encoding.
+ *
+ * The reader is not thread-safe, but the records it returns may be processed
+ * on other threads, e.g. by a
+ * {@link de.l3s.boilerpipe.extractors.BatchExtractor}.
+ */
+public final class WarcReader implements Iterator<WarcRecord>, Closeable {
+
+    /**
+     * The default maximum size of a record's block, 8 MB.
+     */
+    public static final int DEFAULT_MAX_RECORD_SIZE = 8 * 1024 * 1024;
+
+    // the HTTP headers of a response are looked for within this many bytes
+    private static final int MAX_HTTP_HEAD = 64 * 1024;
+    // longer header lines are cut off
+    private static final int MAX_LINE = 64 * 1024;
+
+    private final InputStream raw;
+    private final GzipMembers members;
+    private final InputStream src;
+    private final byte[] buf = new byte[1 << 16];
+    private int pos = 0;
+    private int limit = 0;
+    private byte[] line = new byte[256];
+
+    private int maxRecordSize = DEFAULT_MAX_RECORD_SIZE;
+    private boolean resync = false;
+    private WarcRecord next = null;
+    private boolean eof = false;
+
+    /**
+     * Creates a reader.
+     *
+     * @param in
+     *            The WARC or ARC file, which may be gzip-compressed.
+     * @throws IOException
+     */
+    public WarcReader(final InputStream in) throws IOException {
+        final BufferedInputStream bin = new BufferedInputStream(in, 1 << 16);
+        bin.mark(2);
+        final int b0 = bin.read();
+        final int b1 = bin.read();
+        bin.reset();
+        raw = bin;
+        if (b0 == 0x1f && b1 == 0x8b) {
+            members = new GzipMembers(bin);
+            src = members;
+            eof = !members.nextMember();
+        } else {
+            members = null;
+            src = bin;
+        }
+    }
+
+    /**
+     * Sets the maximum size of a record's block. Larger records are skipped,
+     * and returned with an error instead.
+     *
+     * @param maxRecordSize
+     *            The maximum size in bytes.
+     */
+    public void setMaxRecordSize(final int maxRecordSize) {
+        if (maxRecordSize < 0) {
+            throw new IllegalArgumentException("maxRecordSize < 0");
+        }
+        this.maxRecordSize = maxRecordSize;
+    }
+
+    /**
+     * Returns an iterator over the remaining records that hold a successful
+     * HTTP response with an HTML payload, and the records that could not be
+     * read. All other records are skipped without reading their blocks.
+     *
+     * The iterator throws an {@link UncheckedIOException} if the file cannot
+     * be read at all. Do not use it together with this reader's own iterator.
+     */
+    public Iterator<WarcRecord> htmlResponses() {
+        return new Iterator<WarcRecord>() {
+            private WarcRecord next = null;
+
+            public boolean hasNext() {
+                if (next == null) {
+                    try {
+                        next = readHtmlResponse();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+                return next != null;
+            }
+
+            public WarcRecord next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                final WarcRecord r = next;
+                next = null;
+                return r;
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Reads the next record.
+     *
+     * @return The record, or <code>null</code> at the end of the file.
+     * @throws IOException
+     *             if the file cannot be read. Errors in single records are
+     *             reported by {@link WarcRecord#getError()}.
+     */
+    public WarcRecord read() throws IOException {
+        if (next != null) {
+            final WarcRecord r = next;
+            next = null;
+            return r;
+        }
+        return nextRecord(false);
+    }
+
+    /**
+     * Reads the next record that holds a successful HTTP response with an HTML
+     * payload, or that could not be read, skipping all others.
+     *
+     * @return The record, or <code>null</code> at the end of the file.
+     * @throws IOException
+     *             if the file cannot be read.
+     */
+    public WarcRecord readHtmlResponse() throws IOException {
+        if (next != null) {
+            final WarcRecord r = next;
+            next = null;
+            if (r.getError() != null || r.isHtmlResponse()) {
+                return r;
+            }
+        }
+        return nextRecord(true);
+    }
+
+    public boolean hasNext() {
+        if (next == null && !eof) {
+            try {
+                next = read();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return next != null;
+    }
+
+    public WarcRecord next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        final WarcRecord r = next;
+        next = null;
+        return r;
+    }
+
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    public void close() throws IOException {
+        eof = true;
+        if (members != null) {
+            members.close();
+        } else {
+            raw.close();
+        }
+    }
+
+    private WarcRecord nextRecord(final boolean htmlOnly) throws IOException {
+        while (!eof) {
+            final String header;
+            try {
+                header = readLine(true);
+            } catch (EOFException e) {
+                // nothing is known about the record, so it is not returned
+                recover();
+                continue;
+            } catch (ZipException e) {
+                recover();
+                continue;
+            }
+            final WarcRecord r;
+            if (header == null) {
+                if (members == null || !nextMember()) {
+                    eof = true;
+                }
+                continue;
+            } else if (header.startsWith("WARC/")) {
+                resync = false;
+                r = readWarcRecord(htmlOnly);
+            } else if (isArcHeader(header)) {
+                resync = false;
+                r = readArcRecord(header, htmlOnly);
+            } else {
+                // look for the next record header
+                resync = true;
+                continue;
+            }
+            if (r != null) {
+                return r;
+            }
+        }
+        return null;
+    }
+
+    private WarcRecord readWarcRecord(final boolean htmlOnly)
+            throws IOException {
+        final Map<String, String> headers = new LinkedHashMap<String, String>();
+        String line;
+        String lastName = null;
+        try {
+            while ((line = readLine(false)) != null && line.length() > 0) {
+                if ((line.charAt(0) == ' ' || line.charAt(0) == '\t')
+                        && lastName != null) {
+                    // a continuation line
+                    headers.put(lastName, headers.get(lastName) + " "
+                            + line.trim());
+                    continue;
+                }
+                final int colon = line.indexOf(':');
+                if (colon > 0) {
+                    lastName = line.substring(0, colon).trim();
+                    headers.put(lastName, line.substring(colon + 1).trim());
+                }
+            }
+        } catch (EOFException e) {
+            return failed(htmlOnly, headers, e);
+        } catch (ZipException e) {
+            return failed(htmlOnly, headers, e);
+        }
+        if (line == null) {
+            return failed(htmlOnly, headers, new EOFException("Truncated record headers"));
+        }
+        final String length = headers.get("Content-Length");
+        if (length == null) {
+            return failed(htmlOnly, headers, new IOException(
+                    "WARC record without Content-Length"));
+        }
+        final long n;
+        try {
+            n = Long.parseLong(length.trim());
+        } catch (NumberFormatException e) {
+            return failed(htmlOnly, headers, new IOException("Invalid Content-Length: "
+                    + length));
+        }
+        if (n < 0) {
+            return failed(htmlOnly, headers, new IOException("Invalid Content-Length: "
+                    + length));
+        }
+        return readBlock(headers, n, htmlOnly);
+    }
+
+    private WarcRecord readArcRecord(final String line, final boolean htmlOnly)
+            throws IOException {
+        // URL IP-address Archive-date Content-type [...] Archive-length
+        final String[] fields = line.trim().split(" +");
+        final Map<String, String> headers = new LinkedHashMap<String, String>();
+        final long n;
+        try {
+            n = Long.parseLong(fields[fields.length - 1]);
+        } catch (NumberFormatException e) {
+            return failed(htmlOnly, headers, new IOException("Invalid ARC record header: "
+                    + abbreviate(line)));
+        }
+        final String url = fields[0];
+        if (url.startsWith("filedesc://")) {
+            // the ARC file header
+            headers.put("WARC-Type", "warcinfo");
+            return readBlock(headers, n, true);
+        }
+        final boolean http = url.startsWith("http:")
+                || url.startsWith("https:");
+        headers.put("WARC-Type", http ? "response" : "resource");
+        headers.put("WARC-Target-URI", url);
+        headers.put("WARC-IP-Address", fields[1]);
+        headers.put("WARC-Date", arcDate(fields[2]));
+        headers.put("Content-Type", http ? "application/http; msgtype=response"
+                : fields[3]);
+        headers.put("Content-Length", String.valueOf(n));
+        return readBlock(headers, n, htmlOnly);
+    }
+
+    /**
+     * Reads or skips the block of a record.
+     *
+     * @return The record, <code>null</code> if it was skipped, or a record with
+     *         an error.
+     */
+    private WarcRecord readBlock(final Map<String, String> headers,
+            final long length, final boolean htmlOnly) throws IOException {
+        final boolean wanted = !htmlOnly
+                || new WarcRecord(headers, new byte[0]).isHttpResponse();
+        try {
+            if (!wanted) {
+                skipFully(length);
+                checkMemberEnd();
+                return null;
+            }
+            int off = 0;
+            byte[] head = null;
+            if (htmlOnly) {
+                head = new byte[(int) Math.min(length, MAX_HTTP_HEAD)];
+                readFully(head, 0, head.length);
+                off = head.length;
+                if (!new WarcRecord(headers, head).isHtmlResponse()) {
+                    skipFully(length - off);
+                    checkMemberEnd();
+                    return null;
+                }
+            }
+            if (length > maxRecordSize) {
+                skipFully(length - off);
+                checkMemberEnd();
+                return new WarcRecord(headers, new IOException(
+                        "Record of " + length + " bytes exceeds the maximum of "
+                                + maxRecordSize));
+            }
+            final byte[] block = head != null && head.length == length ? head
+                    : new byte[(int) length];
+            if (head != null && block != head) {
+                System.arraycopy(head, 0, block, 0, off);
+            }
+            readFully(block, off, block.length - off);
+            checkMemberEnd();
+            return new WarcRecord(headers, block, maxRecordSize);
+        } catch (EOFException e) {
+            recover();
+            return wanted ? new WarcRecord(headers, e) : null;
+        } catch (ZipException e) {
+            recover();
+            return wanted ? new WarcRecord(headers, e) : null;
+        }
+    }
+
+    /**
+     * Returns a record with the given error, and looks for the next record.
+     *
+     * @return The record, or <code>null</code> if its headers do not show that
+     *         it is a record the caller wants.
+     */
+    private WarcRecord failed(final boolean htmlOnly,
+            final Map<String, String> headers, final IOException e)
+            throws IOException {
+        if (e instanceof EOFException || e instanceof ZipException) {
+            recover();
+        } else {
+            resync = true;
+        }
+        if (headers.isEmpty() || htmlOnly
+                && !new WarcRecord(headers, new byte[0]).isHttpResponse()) {
+            return null;
+        }
+        return new WarcRecord(headers, e);
+    }
+
+    /**
+     * Checks the CRC of the gzip member that holds the record just read, if it
+     * ends with the record: a corrupt member is only detected at its end, and
+     * the error belongs to the record rather than to the next one.
+     */
+    private void checkMemberEnd() throws IOException {
+        if (members == null) {
+            return;
+        }
+        int c;
+        do {
+            c = readByte();
+        } while (c == '\r' || c == '\n');
+        if (c >= 0) {
+            // the member holds more records
+            pos--;
+        }
+    }
+
+    /**
+     * Continues after a record that could not be read: with the next gzip
+     * member, or else with the next line that starts a record.
+     */
+    private void recover() throws IOException {
+        resync = true;
+        if (members != null && !nextMember()) {
+            eof = true;
+        }
+    }
+
+    private boolean nextMember() throws IOException {
+        // the rest of the current member is skipped
+        pos = 0;
+        limit = 0;
+        return members.nextMember();
+    }
+
+    private static boolean isArcHeader(final String line) {
+        if (line.startsWith("filedesc://")) {
+            return true;
+        }
+        // URL IP-address Archive-date Content-type [...] Archive-length
+        final String[] fields = line.trim().split(" +");
+        return fields.length >= 5 && fields[0].indexOf(':') > 0
+                && fields[2].length() >= 12 && isDigits(fields[2])
+                && isDigits(fields[fields.length - 1])
+                && fields[fields.length - 1].length() < 19;
+    }
+
+    private static boolean isDigits(final String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) < '0' || s.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return s.length() > 0;
+    }
+
+    private static String abbreviate(final String s) {
+        return s.length() <= 80 ? s : s.substring(0, 80) + "...";
+    }
+
+    private static String arcDate(final String date) {
+        // yyyyMMddHHmmss
+        if (date.length() < 14) {
+            return date;
+        }
+        return date.substring(0, 4) + "-" + date.substring(4, 6) + "-"
+                + date.substring(6, 8) + "T" + date.substring(8, 10) + ":"
+                + date.substring(10, 12) + ":" + date.substring(12, 14) + "Z";
+    }
+
+    private boolean fill() throws IOException {
+        final int n = src.read(buf, 0, buf.length);
+        pos = 0;
+        limit = Math.max(n, 0);
+        return n > 0;
+    }
+
+    private int readByte() throws IOException {
+        if (pos == limit && !fill()) {
+            return -1;
+        }
+        return buf[pos++] & 0xff;
+    }
+
+    private void readFully(final byte[] b, int off, final int len)
+            throws IOException {
+        final int end = off + len;
+        while (off < end) {
+            if (pos == limit) {
+                if (end - off >= buf.length) {
+                    final int r = src.read(b, off, end - off);
+                    if (r < 0) {
+                        throw new EOFException("Truncated record");
+                    }
+                    off += r;
+                    continue;
+                }
+                if (!fill()) {
+                    throw new EOFException("Truncated record");
+                }
+            }
+            final int n = Math.min(end - off, limit - pos);
+            System.arraycopy(buf, pos, b, off, n);
+            pos += n;
+            off += n;
+        }
+    }
+
+    private void skipFully(long n) throws IOException {
+        while (n > 0) {
+            if (pos == limit && !fill()) {
+                throw new EOFException("Truncated record");
+            }
+            final int k = (int) Math.min(n, limit - pos);
+            pos += k;
+            n -= k;
+        }
+    }
+
+    /**
+     * Reads a header line, without the line terminator. Lines longer than
+     * {@link #MAX_LINE} are cut off.
+     *
+     * @param skipEmpty
+     *            Whether to skip empty lines, e.g. between records.
+     * @return The line, or <code>null</code> at the end of the file or of the
+     *         current gzip member.
+     */
+    private String readLine(final boolean skipEmpty) throws IOException {
+        int len = 0;
+        boolean any = false;
+        while (true) {
+            final int c = readByte();
+            if (c < 0) {
+                if (!any) {
+                    return null;
+                }
+                break;
+            }
+            any = true;
+            if (c == '\n') {
+                if (skipEmpty && len == 0) {
+                    any = false;
+                    continue;
+                }
+                break;
+            } else if (c != '\r' && len < MAX_LINE) {
+                if (len == line.length) {
+                    line = Arrays.copyOf(line, len * 2);
+                }
+                line[len++] = (byte) c;
+            }
+        }
+        return new String(line, 0, len, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Decompresses a gzip file one member at a time, so that the reader knows
+     * where a member ends, and can skip to the next member when one is
+     * truncated or corrupt.
+     */
+    private static final class GzipMembers extends InputStream {
+        private final PushbackInputStream in;
+        private final Inflater inflater = new Inflater(true);
+        private final CRC32 crc = new CRC32();
+        private final byte[] input = new byte[8192];
+        private int inputLength = 0;
+        private boolean inMember = false;
+        private boolean corrupt = false;
+
+        GzipMembers(final InputStream in) {
+            this.in = new PushbackInputStream(in, input.length);
+        }
+
+        /**
+         * Skips the rest of the current member and starts the next one.
+         *
+         * @return false at the end of the file.
+         */
+        boolean nextMember() throws IOException {
+            if (inMember) {
+                final byte[] skip = new byte[8192];
+                try {
+                    while (read(skip, 0, skip.length) >= 0) {
+                    }
+                } catch (ZipException e) {
+                    // corrupt is set
+                } catch (EOFException e) {
+                    return false;
+                }
+            }
+            while (true) {
+                if (corrupt) {
+                    corrupt = false;
+                    if (!skipToMagic()) {
+                        return false;
+                    }
+                }
+                final int b = in.read();
+                if (b < 0) {
+                    return false;
+                }
+                in.unread(b);
+                try {
+                    readHeader();
+                } catch (ZipException e) {
+                    corrupt = true;
+                    continue;
+                } catch (EOFException e) {
+                    return false;
+                }
+                inflater.reset();
+                crc.reset();
+                inMember = true;
+                return true;
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            final byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+        }
+
+        /**
+         * Reads from the current member.
+         *
+         * @return The number of bytes read, or -1 at the end of the member.
+         */
+        @Override
+        public int read(final byte[] b, final int off, final int len)
+                throws IOException {
+            if (!inMember) {
+                return -1;
+            }
+            if (len == 0) {
+                return 0;
+            }
+            while (true) {
+                final int n;
+                try {
+                    n = inflater.inflate(b, off, len);
+                } catch (DataFormatException e) {
+                    fail();
+                    throw new ZipException("Corrupt gzip member: "
+                            + e.getMessage());
+                }
+                if (n > 0) {
+                    crc.update(b, off, n);
+                    return n;
+                } else if (inflater.finished()) {
+                    endMember();
+                    return -1;
+                } else if (inflater.needsDictionary()) {
+                    fail();
+                    throw new ZipException("Corrupt gzip member");
+                } else if (inflater.needsInput()) {
+                    inputLength = in.read(input, 0, input.length);
+                    if (inputLength < 0) {
+                        inputLength = 0;
+                        inMember = false;
+                        throw new EOFException("Truncated gzip member");
+                    }
+                    inflater.setInput(input, 0, inputLength);
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            inMember = false;
+            inflater.end();
+            in.close();
+        }
+
+        private void endMember() throws IOException {
+            unreadRemaining();
+            inMember = false;
+            // CRC-32 and size of the uncompressed data
+            final long checksum = readUInt();
+            final long size = readUInt();
+            if (checksum != crc.getValue()
+                    || size != (inflater.getBytesWritten() & 0xffffffffL)) {
+                corrupt = true;
+                throw new ZipException("Corrupt gzip member: checksum mismatch");
+            }
+        }
+
+        private void fail() throws IOException {
+            unreadRemaining();
+            inMember = false;
+            corrupt = true;
+        }
+
+        private void unreadRemaining() throws IOException {
+            final int remaining = inflater.getRemaining();
+            if (remaining > 0) {
+                in.unread(input, inputLength - remaining, remaining);
+            }
+            inflater.setInput(input, 0, 0);
+        }
+
+        private void readHeader() throws IOException {
+            if (readUByte() != 0x1f || readUByte() != 0x8b
+                    || readUByte() != 8) {
+                throw new ZipException("Not a gzip member");
+            }
+            final int flags = readUByte();
+            // modification time, extra flags, operating system
+            for (int i = 0; i < 6; i++) {
+                readUByte();
+            }
+            if ((flags & 4) != 0) {
+                final int n = readUByte() | readUByte() << 8;
+                for (int i = 0; i < n; i++) {
+                    readUByte();
+                }
+            }
+            if ((flags & 8) != 0) {
+                while (readUByte() != 0) {
+                }
+            }
+            if ((flags & 16) != 0) {
+                while (readUByte() != 0) {
+                }
+            }
+            if ((flags & 2) != 0) {
+                readUByte();
+                readUByte();
+            }
+        }
+
+        /**
+         * Skips to the next position that looks like the start of a member.
+         *
+         * @return false at the end of the file.
+         */
+        private boolean skipToMagic() throws IOException {
+            int b;
+            while ((b = in.read()) >= 0) {
+                if (b != 0x1f) {
+                    continue;
+                }
+                final int b1 = in.read();
+                if (b1 != 0x8b) {
+                    if (b1 >= 0) {
+                        in.unread(b1);
+                    }
+                    continue;
+                }
+                final int b2 = in.read();
+                if (b2 == 8) {
+                    in.unread(new byte[] { 0x1f, (byte) 0x8b, 8 });
+                    return true;
+                } else if (b2 >= 0) {
+                    in.unread(b2);
+                }
+            }
+            return false;
+        }
+
+        private int readUByte() throws IOException {
+            final int b = in.read();
+            if (b < 0) {
+                throw new EOFException("Truncated gzip member");
+            }
+            return b;
+        }
+
+        private long readUInt() throws IOException {
+            return readUByte() | readUByte() << 8 | readUByte() << 16
+                    | (long) readUByte() << 24;
+        }
+    }
+}
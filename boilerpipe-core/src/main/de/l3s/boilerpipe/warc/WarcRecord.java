@@ -0,0 +1,417 @@
+package de.l3s.boilerpipe.warc;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.xml.sax.InputSource;
+
+import de.l3s.boilerpipe.sax.InputSourceable;
+
+/**
+ * A record of a WARC or ARC file.
+ *
+ * For response records, the HTTP response in the block is parsed on demand, so
+ * that the payload can be passed to an extractor as an {@link InputSource}. The
+ * payload is decoded on the thread that calls {@link #toInputSource()}.
+ */
+public final class WarcRecord implements InputSourceable {
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private final Map<String, String> headers;
+    private final byte[] block;
+    private final IOException error;
+    private final int maxPayloadSize;
+
+    // the parsed HTTP response, if any
+    private boolean httpParsed = false;
+    private int httpStatus = -1;
+    private Map<String, String> httpHeaders = Collections.emptyMap();
+    private int payloadOffset = 0;
+
+    /**
+     * Creates a record.
+     *
+     * @param headers
+     *            The WARC headers.
+     * @param block
+     *            The content block.
+     */
+    public WarcRecord(final Map<String, String> headers, final byte[] block) {
+        this(headers, block, null, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Creates a record whose decoded payload may not exceed the given size.
+     *
+     * @param headers
+     *            The WARC headers.
+     * @param block
+     *            The content block.
+     * @param maxPayloadSize
+     *            The maximum size of the payload after removing its content
+     *            encoding.
+     */
+    WarcRecord(final Map<String, String> headers, final byte[] block,
+            final int maxPayloadSize) {
+        this(headers, block, null, maxPayloadSize);
+    }
+
+    /**
+     * Creates a record that could not be read.
+     *
+     * @param headers
+     *            The WARC headers that could be read, if any.
+     * @param error
+     *            The error.
+     */
+    WarcRecord(final Map<String, String> headers, final IOException error) {
+        this(headers, EMPTY, error, 0);
+    }
+
+    private WarcRecord(final Map<String, String> headers, final byte[] block,
+            final IOException error, final int maxPayloadSize) {
+        final Map<String, String> map = new TreeMap<String, String>(
+                String.CASE_INSENSITIVE_ORDER);
+        map.putAll(headers);
+        this.headers = Collections.unmodifiableMap(map);
+        this.block = block;
+        this.error = error;
+        this.maxPayloadSize = maxPayloadSize;
+    }
+
+    /**
+     * Returns the error that prevented reading this record, e.g. because it
+     * is truncated or too large, or <code>null</code>. A record with an error
+     * has an empty block.
+     */
+    public IOException getError() {
+        return error;
+    }
+
+    /**
+     * Returns the WARC headers, whose names are case-insensitive.
+     */
+    public Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    /**
+     * Returns the value of the given WARC header, or <code>null</code>.
+     */
+    public String getHeader(final String name) {
+        return headers.get(name);
+    }
+
+    /**
+     * Returns the record type, e.g. "response".
+     */
+    public String getType() {
+        return headers.get("WARC-Type");
+    }
+
+    /**
+     * Returns the URI of the captured resource, or <code>null</code>.
+     */
+    public String getTargetURI() {
+        return headers.get("WARC-Target-URI");
+    }
+
+    /**
+     * Returns the ID of this record, or <code>null</code> for ARC records.
+     */
+    public String getRecordId() {
+        return headers.get("WARC-Record-ID");
+    }
+
+    /**
+     * Returns the content block.
+     */
+    public byte[] getBlock() {
+        return block;
+    }
+
+    /**
+     * Returns <code>true</code> if this record holds an HTTP response.
+     */
+    public boolean isHttpResponse() {
+        final String ct = headers.get("Content-Type");
+        return "response".equals(getType()) && ct != null
+                && ct.startsWith("application/http");
+    }
+
+    /**
+     * Returns <code>true</code> if this record holds a successful HTTP
+     * response with an HTML payload.
+     */
+    public boolean isHtmlResponse() {
+        if (!isHttpResponse()) {
+            return false;
+        }
+        parseHttp();
+        final String ct = httpHeaders.get("Content-Type");
+        if (httpStatus < 200 || httpStatus >= 300 || ct == null) {
+            return false;
+        }
+        final String type = ct.trim().toLowerCase();
+        return type.startsWith("text/html")
+                || type.startsWith("application/xhtml+xml");
+    }
+
+    /**
+     * Returns the HTTP status code, or -1 if this record holds no HTTP
+     * response.
+     */
+    public int getHttpStatus() {
+        parseHttp();
+        return httpStatus;
+    }
+
+    /**
+     * Returns the value of the given HTTP header, or <code>null</code>.
+     */
+    public String getHttpHeader(final String name) {
+        parseHttp();
+        return httpHeaders.get(name);
+    }
+
+    /**
+     * Returns the charset declared in the HTTP Content-Type header, or
+     * <code>null</code> if none is declared or it is not supported.
+     */
+    public Charset getCharset() {
+        final String ct = getHttpHeader("Content-Type");
+        if (ct == null) {
+            return null;
+        }
+        final int i = ct.toLowerCase().indexOf("charset=");
+        if (i < 0) {
+            return null;
+        }
+        int end = i + 8;
+        while (end < ct.length() && ct.charAt(end) != ';'
+                && !Character.isWhitespace(ct.charAt(end))) {
+            end++;
+        }
+        String name = ct.substring(i + 8, end);
+        if (name.length() >= 2 && (name.charAt(0) == '"' || name.charAt(0) == '\'')) {
+            name = name.substring(1, name.length() - 1);
+        }
+        try {
+            return Charset.forName(name);
+        } catch (IllegalCharsetNameException e) {
+            return null;
+        } catch (UnsupportedCharsetException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the HTTP payload, with any chunked transfer encoding and gzip
+     * or deflate content encoding removed. For records that hold no HTTP
+     * response, this is the block.
+     *
+     * @throws IOException
+     *             if the payload cannot be decoded, or is larger than the
+     *             maximum record size of the {@link WarcReader} that read it.
+     */
+    public byte[] getPayload() throws IOException {
+        parseHttp();
+        byte[] data = payloadOffset == 0 ? block : copy(block, payloadOffset,
+                block.length - payloadOffset);
+        if (httpStatus < 0) {
+            return data;
+        }
+        final String te = httpHeaders.get("Transfer-Encoding");
+        if (te != null && te.toLowerCase().contains("chunked")) {
+            data = dechunk(data);
+        }
+        final String ce = httpHeaders.get("Content-Encoding");
+        if (ce != null) {
+            final String encoding = ce.trim().toLowerCase();
+            if ("gzip".equals(encoding) || "x-gzip".equals(encoding)) {
+                data = readAll(new GZIPInputStream(new ByteArrayInputStream(
+                        data)), maxPayloadSize);
+            } else if ("deflate".equals(encoding)) {
+                data = readAll(new InflaterInputStream(
+                        new ByteArrayInputStream(data)), maxPayloadSize);
+            }
+        }
+        return data;
+    }
+
+    /**
+     * Returns the HTTP payload, in the declared charset if there is one.
+     * Otherwise, the parser detects the charset.
+     *
+     * @throws UncheckedIOException
+     *             if the record could not be read, or its payload cannot be
+     *             decoded.
+     */
+    public InputSource toInputSource() {
+        if (error != null) {
+            throw new UncheckedIOException(error);
+        }
+        parseHttp();
+        final InputStream in;
+        if (httpHeaders.get("Transfer-Encoding") == null
+                && httpHeaders.get("Content-Encoding") == null) {
+            // the payload is not encoded, read it from the block
+            in = new ByteArrayInputStream(block, payloadOffset, block.length
+                    - payloadOffset);
+        } else {
+            try {
+                in = new ByteArrayInputStream(getPayload());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        final InputSource is = new InputSource(in);
+        final Charset cs = getCharset();
+        if (cs != null) {
+            is.setEncoding(cs.name());
+        }
+        is.setSystemId(getTargetURI());
+        return is;
+    }
+
+    @Override
+    public String toString() {
+        return getType() + " " + getTargetURI()
+                + (error == null ? "" : " (" + error + ")");
+    }
+
+    private synchronized void parseHttp() {
+        if (httpParsed) {
+            return;
+        }
+        httpParsed = true;
+        if (!isHttpResponse()) {
+            return;
+        }
+
+        int pos = 0;
+        final Map<String, String> map = new TreeMap<String, String>(
+                String.CASE_INSENSITIVE_ORDER);
+        String statusLine = null;
+        while (pos < block.length) {
+            int end = pos;
+            while (end < block.length && block[end] != '\n') {
+                end++;
+            }
+            int lineEnd = end;
+            if (lineEnd > pos && block[lineEnd - 1] == '\r') {
+                lineEnd--;
+            }
+            final String line = new String(block, pos, lineEnd - pos,
+                    StandardCharsets.ISO_8859_1);
+            pos = Math.min(end + 1, block.length);
+            if (statusLine == null) {
+                statusLine = line;
+            } else if (line.length() == 0) {
+                break;
+            } else {
+                final int colon = line.indexOf(':');
+                if (colon > 0) {
+                    final String name = line.substring(0, colon).trim();
+                    final String value = line.substring(colon + 1).trim();
+                    // repeated headers are joined, as in HTTP
+                    final String prev = map.get(name);
+                    map.put(name, prev == null ? value : prev + ", " + value);
+                }
+            }
+        }
+        if (statusLine == null || !statusLine.startsWith("HTTP/")) {
+            return;
+        }
+        final String[] parts = statusLine.split(" +");
+        try {
+            httpStatus = parts.length > 1 ? Integer.parseInt(parts[1]) : -1;
+        } catch (NumberFormatException e) {
+            httpStatus = -1;
+        }
+        if (httpStatus >= 0) {
+            httpHeaders = map;
+            payloadOffset = pos;
+        }
+    }
+
+    private static byte[] dechunk(final byte[] data) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(
+                data.length);
+        int pos = 0;
+        while (pos < data.length) {
+            int end = pos;
+            while (end < data.length && data[end] != '\n') {
+                end++;
+            }
+            String size = new String(data, pos, end - pos,
+                    StandardCharsets.ISO_8859_1).trim();
+            final int semicolon = size.indexOf(';');
+            if (semicolon >= 0) {
+                size = size.substring(0, semicolon).trim();
+            }
+            final int n;
+            try {
+                n = Integer.parseInt(size, 16);
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid chunk size: " + size);
+            }
+            if (n < 0) {
+                throw new IOException("Invalid chunk size: " + size);
+            }
+            pos = end + 1;
+            if (n == 0) {
+                break;
+            }
+            // tolerate a truncated last chunk
+            final int len = Math.min(n, data.length - pos);
+            out.write(data, pos, len);
+            pos += len;
+            // skip the CRLF after the chunk
+            while (pos < data.length && (data[pos] == '\r' || data[pos] == '\n')) {
+                pos++;
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] readAll(final InputStream in, final int max)
+            throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buf = new byte[8192];
+        try {
+            int r;
+            while ((r = in.read(buf)) != -1) {
+                if (r > max - out.size()) {
+                    // a small record may inflate to gigabytes
+                    throw new IOException("Decoded payload exceeds the maximum of "
+                            + max + " bytes");
+                }
+                out.write(buf, 0, r);
+            }
+        } finally {
+            in.close();
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] copy(final byte[] data, final int offset,
+            final int length) {
+        final byte[] result = new byte[length];
+        System.arraycopy(data, offset, result, 0, length);
+        return result;
+    }
+}
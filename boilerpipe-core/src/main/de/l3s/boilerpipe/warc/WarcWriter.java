@@ -0,0 +1,195 @@
+package de.l3s.boilerpipe.warc;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.FilterOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes WARC/1.0 records, e.g. the text extracted from the records of another
+ * WARC file as conversion or metadata records.
+ *
+ * When compressing, each record is written as a gzip member of its own, so
+ * that the records can be read from any record offset.
+ *
+ * The writer is not thread-safe.
+ */
+public final class WarcWriter implements Closeable, Flushable {
+
+    private static final byte[] CRLF = { '\r', '\n' };
+
+    private final OutputStream out;
+    private final boolean gzip;
+    private final ByteArrayOutputStream buf = new ByteArrayOutputStream();
+
+    /**
+     * Creates a writer.
+     *
+     * @param out
+     *            The output.
+     * @param gzip
+     *            Whether to compress each record as a gzip member.
+     */
+    public WarcWriter(final OutputStream out, final boolean gzip) {
+        this.out = out;
+        this.gzip = gzip;
+    }
+
+    /**
+     * Writes a warcinfo record that describes this file.
+     *
+     * @param fields
+     *            The fields of the record, e.g. "software".
+     * @return The ID of the record.
+     * @throws IOException
+     */
+    public String writeWarcinfo(final Map<String, String> fields)
+            throws IOException {
+        final Map<String, String> headers = new LinkedHashMap<String, String>();
+        headers.put("Content-Type", "application/warc-fields");
+        return write("warcinfo", headers, fields(fields));
+    }
+
+    /**
+     * Writes a conversion record with the given text, which has been derived
+     * from the given record.
+     *
+     * @param source
+     *            The original record.
+     * @param text
+     *            The text.
+     * @return The ID of the record.
+     * @throws IOException
+     */
+    public String writeConversion(final WarcRecord source,
+            final CharSequence text) throws IOException {
+        final Map<String, String> headers = refersTo(source);
+        headers.put("Content-Type", "text/plain; charset=UTF-8");
+        return write("conversion", headers, text.toString().getBytes(
+                StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Writes a metadata record with the given fields about the given record.
+     *
+     * @param source
+     *            The described record.
+     * @param fields
+     *            The fields. Line breaks in values are replaced by spaces.
+     * @return The ID of the record.
+     * @throws IOException
+     */
+    public String writeMetadata(final WarcRecord source,
+            final Map<String, String> fields) throws IOException {
+        final Map<String, String> headers = refersTo(source);
+        headers.put("Content-Type", "application/warc-fields");
+        return write("metadata", headers, fields(fields));
+    }
+
+    /**
+     * Writes a record.
+     *
+     * @param type
+     *            The record type.
+     * @param headers
+     *            Additional headers, including Content-Type. WARC-Record-ID and
+     *            WARC-Date are added if missing; Content-Length is set.
+     * @param block
+     *            The content block.
+     * @return The ID of the record.
+     * @throws IOException
+     */
+    public String write(final String type, final Map<String, String> headers,
+            final byte[] block) throws IOException {
+        String id = headers.get("WARC-Record-ID");
+        if (id == null) {
+            id = "<urn:uuid:" + UUID.randomUUID() + ">";
+        }
+
+        buf.reset();
+        writeLine("WARC/1.0");
+        writeLine("WARC-Type: " + type);
+        writeLine("WARC-Record-ID: " + id);
+        if (!headers.containsKey("WARC-Date")) {
+            writeLine("WARC-Date: "
+                    + Instant.now().truncatedTo(ChronoUnit.SECONDS));
+        }
+        for (Map.Entry<String, String> e : headers.entrySet()) {
+            final String name = e.getKey();
+            if (!"WARC-Type".equalsIgnoreCase(name)
+                    && !"WARC-Record-ID".equalsIgnoreCase(name)
+                    && !"Content-Length".equalsIgnoreCase(name)) {
+                writeLine(name + ": " + e.getValue());
+            }
+        }
+        writeLine("Content-Length: " + block.length);
+        buf.write(CRLF);
+        buf.write(block);
+        buf.write(CRLF);
+        buf.write(CRLF);
+
+        if (gzip) {
+            final GZIPOutputStream gz = new GZIPOutputStream(
+                    new FilterOutputStream(out) {
+                        @Override
+                        public void write(final byte[] b, final int off,
+                                final int len) throws IOException {
+                            out.write(b, off, len);
+                        }
+
+                        @Override
+                        public void close() throws IOException {
+                            // end the member, but not the file
+                            flush();
+                        }
+                    }, 8192);
+            buf.writeTo(gz);
+            gz.close();
+        } else {
+            buf.writeTo(out);
+        }
+        return id;
+    }
+
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private static Map<String, String> refersTo(final WarcRecord source) {
+        final Map<String, String> headers = new LinkedHashMap<String, String>();
+        if (source.getTargetURI() != null) {
+            headers.put("WARC-Target-URI", source.getTargetURI());
+        }
+        if (source.getRecordId() != null) {
+            headers.put("WARC-Refers-To", source.getRecordId());
+        }
+        return headers;
+    }
+
+    private static byte[] fields(final Map<String, String> fields) {
+        final StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, String> e : fields.entrySet()) {
+            sb.append(e.getKey()).append(": ");
+            sb.append(e.getValue().replaceAll("[\r\n]+", " ")).append("\r\n");
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void writeLine(final String line) throws IOException {
+        buf.write(line.getBytes(StandardCharsets.UTF_8));
+        buf.write(CRLF);
+    }
+}